@@ -0,0 +1,121 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.set.aie.base.CompiledProgram;
+import de.set.aie.base.Distributions;
+import de.set.aie.base.Model;
+import de.set.aie.base.Model.Instance;
+import de.set.aie.base.QUnit;
+import de.set.aie.base.RandomSource;
+import de.set.aie.base.RandomVariable;
+import de.set.aie.base.SimulationBatch;
+import de.set.aie.base.SimulationRun;
+import de.set.aie.base.VarId;
+
+/**
+ * Compares the ways to sample a model with mostly arithmetic expressions: observing sample by sample,
+ * observing whole batches, the interpreted {@link CompiledProgram} and the program with generated code.
+ * Run with "gradle jmh".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModelEvaluationBenchmark {
+
+    private static final VarId RESULT = VarId.of("result");
+
+    /**
+     * Number of arithmetic steps in the model.
+     */
+    @Param({"10", "100"})
+    public int depth;
+
+    private RandomVariable result;
+    private CompiledProgram interpreted;
+    private CompiledProgram generated;
+    private double[][] registers;
+    private double[] buffer;
+    private RandomSource random;
+
+    @Setup
+    public void setUp() {
+        final Model m = new Model();
+        m.add(VarId.of("hoursSaved"), Distributions.normal(10, 50, QUnit.of("h")));
+        m.add(VarId.of("hourlyRate"), Distributions.normal(60, 90, QUnit.of("EUR").div(QUnit.of("h"))));
+        m.add(VarId.of("cost"), Distributions.normal(100, 2000, QUnit.of("EUR")));
+        m.addRaw(RESULT, (final Instance i) -> {
+            final RandomVariable gain = i.get(VarId.of("hoursSaved")).times(i.get(VarId.of("hourlyRate")));
+            RandomVariable v = gain;
+            for (int k = 0; k < this.depth; k++) {
+                v = v.times(0.99).plus(gain).minus(i.get(VarId.of("cost")).times(1.0 / this.depth));
+            }
+            return v;
+        });
+        final Instance instance = m.instantiate();
+        this.result = instance.get(RESULT);
+        this.interpreted = instance.compile(RESULT);
+        this.generated = this.interpreted.withGeneratedCode();
+        this.registers = this.interpreted.newRegisters(SimulationBatch.DEFAULT_SIZE);
+        this.buffer = new double[SimulationBatch.DEFAULT_SIZE];
+        this.random = RandomSource.wrap(new Random(42));
+    }
+
+    @Benchmark
+    public void observe(final Blackhole bh) {
+        for (int i = 0; i < SimulationBatch.DEFAULT_SIZE; i++) {
+            bh.consume(this.result.observe(this.random, new SimulationRun()).getNumber());
+        }
+    }
+
+    @Benchmark
+    public void observeBatch(final Blackhole bh) {
+        this.result.observeBatch(this.random, new SimulationBatch(SimulationBatch.DEFAULT_SIZE), this.buffer);
+        bh.consume(this.buffer);
+    }
+
+    @Benchmark
+    public void interpreted(final Blackhole bh) {
+        this.interpreted.execute(this.random, new SimulationBatch(SimulationBatch.DEFAULT_SIZE), this.registers);
+        bh.consume(this.registers[this.interpreted.getOutputRegister(0)]);
+    }
+
+    @Benchmark
+    public void generated(final Blackhole bh) {
+        this.generated.execute(this.random, new SimulationBatch(SimulationBatch.DEFAULT_SIZE), this.registers);
+        bh.consume(this.registers[this.generated.getOutputRegister(0)]);
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.set.aie.base.RandomSource;
+
+/**
+ * Compares the polar method ({@link RandomSource#nextGaussian()}) with the ziggurat method
+ * ({@link RandomSource#nextNormal()}, {@link RandomSource#nextNormals(double[], int)}) for 256 numbers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NormalSamplingBenchmark {
+
+    private static final int COUNT = 256;
+
+    private RandomSource javaUtilRandom;
+    private RandomSource splittable;
+    private double[] buffer;
+
+    @Setup
+    public void setUp() {
+        this.javaUtilRandom = RandomSource.wrap(new Random(42));
+        this.splittable = RandomSource.splittable(42);
+        this.buffer = new double[COUNT];
+    }
+
+    @Benchmark
+    public void polarJavaUtilRandom(final Blackhole bh) {
+        for (int i = 0; i < COUNT; i++) {
+            bh.consume(this.javaUtilRandom.nextGaussian());
+        }
+    }
+
+    @Benchmark
+    public void polarSplittable(final Blackhole bh) {
+        for (int i = 0; i < COUNT; i++) {
+            bh.consume(this.splittable.nextGaussian());
+        }
+    }
+
+    @Benchmark
+    public void zigguratSplittable(final Blackhole bh) {
+        for (int i = 0; i < COUNT; i++) {
+            bh.consume(this.splittable.nextNormal());
+        }
+    }
+
+    @Benchmark
+    public void zigguratBatch(final Blackhole bh) {
+        this.splittable.nextNormals(this.buffer, COUNT);
+        bh.consume(this.buffer);
+    }
+
+}
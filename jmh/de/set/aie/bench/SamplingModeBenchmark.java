@@ -0,0 +1,113 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.bench;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.set.aie.base.Distributions;
+import de.set.aie.base.Mean;
+import de.set.aie.base.Model;
+import de.set.aie.base.Model.Instance;
+import de.set.aie.base.QUnit;
+import de.set.aie.base.SamplingMode;
+import de.set.aie.base.VarId;
+
+/**
+ * Compares the {@link SamplingMode}s for the estimation of the mean of a small business case. The benchmark
+ * measures the time for one estimate, the main method prints the root mean square error of the estimates over
+ * many seeds, so that the sample counts with equal error can be compared. Run with "gradle jmh".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SamplingModeBenchmark {
+
+    private static final VarId RESULT = VarId.of("result");
+
+    @Param({"MONTE_CARLO", "LATIN_HYPERCUBE", "SOBOL"})
+    public SamplingMode mode;
+
+    @Param({"1024", "10000"})
+    public int sampleCount;
+
+    private Model model;
+    private long seed;
+
+    @Setup
+    public void setUp() {
+        this.model = createModel();
+    }
+
+    private static Model createModel() {
+        final QUnit eur = QUnit.of("EUR");
+        final Model m = new Model();
+        m.add(VarId.of("hoursSaved"), Distributions.normal(10, 50, QUnit.of("h")).nonNegative());
+        m.add(VarId.of("hourlyRate"), Distributions.normal(60, 90, eur.div(QUnit.of("h"))));
+        m.add(VarId.of("cost"), Distributions.logNormal(100, 2000, eur));
+        m.add(VarId.of("users"), Distributions.triangleAbsolute(Distributions.singleMode(5, 20, 40), QUnit.scalar()));
+        m.addRaw(RESULT, (final Instance i) -> i.get(VarId.of("hoursSaved"))
+                .times(i.get(VarId.of("hourlyRate")))
+                .times(i.get(VarId.of("users")))
+                .minus(i.get(VarId.of("cost"))));
+        return m;
+    }
+
+    private static double estimate(final Model m, final SamplingMode mode, final long seed, final int sampleCount)
+        throws InterruptedException, ExecutionException {
+        return Mean.of(m.instantiate(mode).createSamples(seed, sampleCount, RESULT).get(RESULT)).get();
+    }
+
+    @Benchmark
+    public double estimateMean() throws InterruptedException, ExecutionException {
+        return estimate(this.model, this.mode, this.seed++, this.sampleCount);
+    }
+
+    /**
+     * Prints the root mean square error of the estimated mean for each mode and sample count.
+     */
+    public static void main(final String[] args) throws InterruptedException, ExecutionException {
+        final Model m = createModel();
+        final double expected = m.instantiate().get(RESULT).mean(0, 10_000_000).get();
+        final int seeds = 200;
+        for (final SamplingMode mode : SamplingMode.values()) {
+            for (final int count : new int[] {256, 1024, 2048, 10_000}) {
+                double sum = 0.0;
+                for (int seed = 1; seed <= seeds; seed++) {
+                    final double error = estimate(m, mode, seed, count) - expected;
+                    sum += error * error;
+                }
+                System.out.println(String.format("%-16s %6d samples: RMSE %.3f", mode, count, Math.sqrt(sum / seeds)));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.bench;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.set.aie.base.Distributions;
+import de.set.aie.base.ExponentialGrowthSeries;
+import de.set.aie.base.Model;
+import de.set.aie.base.QUnit;
+import de.set.aie.base.RandomVariable;
+import de.set.aie.base.TimeSeries;
+import de.set.aie.base.VarId;
+
+/**
+ * Builds and samples the sum over a recursive time series (exponential growth that shrinks after some years, and
+ * its differential). Each time point is built once per instance, so the graph grows linearly with the number of
+ * periods. sampleTrajectories simulates all periods of a run in one loop instead (see
+ * {@link TimeSeries#sampleTrajectories(Model.Instance, long, int, int)}). Run with "gradle jmh".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimeSeriesBenchmark {
+
+    private static final VarId TOTAL = VarId.of("total");
+
+    @Param({"30", "50", "100"})
+    public int periods;
+
+    private Model model;
+    private TimeSeries total;
+
+    @Setup
+    public void setUp() {
+        final VarId base = VarId.of("base");
+        final VarId growth = VarId.of("growth");
+        final VarId yearsUntil = VarId.of("yearsUntil");
+        final VarId shrinkRate = VarId.of("shrinkRate");
+        this.model = new Model();
+        this.model.add(base, Distributions.normal(100, 200, QUnit.of("EUR")));
+        this.model.add(growth, Distributions.normal(1.0, 1.1, QUnit.scalar()));
+        this.model.add(yearsUntil, Distributions.normal(5, 20, QUnit.scalar()));
+        this.model.add(shrinkRate, Distributions.normal(0.7, 0.95, QUnit.scalar()));
+        final TimeSeries series = new ExponentialGrowthSeries(base, growth).shrinkAfter(yearsUntil, shrinkRate);
+        this.total = series.plus(series.differential());
+        this.model.addRaw(TOTAL, this.total.collapse(0, this.periods - 1));
+    }
+
+    @Benchmark
+    public RandomVariable build() {
+        return this.model.instantiate().get(TOTAL);
+    }
+
+    @Benchmark
+    public double[] buildAndSample() throws InterruptedException, ExecutionException {
+        return this.model.instantiate().createSamples(42, 10_000, TOTAL).get(TOTAL);
+    }
+
+    @Benchmark
+    public double[][] sampleTrajectories() {
+        return this.total.sampleTrajectories(this.model.instantiate(), 42, 10_000, this.periods);
+    }
+
+}
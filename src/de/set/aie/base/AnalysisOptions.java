@@ -0,0 +1,169 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings for {@link Model#analyze(long, AnalysisOptions, Model.AnalysisResultHandler, VarId...)}.
+ * Instances are immutable, the with-methods return changed copies.
+ */
+public final class AnalysisOptions {
+
+    /**
+     * Level of the confidence intervals that are used to decide when to stop in adaptive mode.
+     */
+    public static final double CONFIDENCE_LEVEL = 0.95;
+
+    /**
+     * The method used to estimate the value of information.
+     */
+    public static enum VoiEngine {
+        /**
+         * Fixes a sampled value of each variable and samples the model again, many times. Works for all variables,
+         * but needs a lot of time for big models.
+         */
+        NESTED,
+        /**
+         * Estimates the value of information for all persistent variables from one joint sample, see
+         * {@link SingleLoopVoiEstimator}. Variables that are not persistent are not contained in the result.
+         */
+        SINGLE_LOOP
+    }
+
+    private final ExecutorService executor;
+    private final int iterations;
+    private final double targetAbsoluteError;
+    private final double targetRelativeError;
+    private final VoiEngine engine;
+    private final int singleLoopSampleCount;
+    private final SamplingMode samplingMode;
+
+    private AnalysisOptions(
+            final ExecutorService executor,
+            final int iterations,
+            final double targetAbsoluteError,
+            final double targetRelativeError,
+            final VoiEngine engine,
+            final int singleLoopSampleCount,
+            final SamplingMode samplingMode) {
+        this.executor = executor;
+        this.iterations = iterations;
+        this.targetAbsoluteError = targetAbsoluteError;
+        this.targetRelativeError = targetRelativeError;
+        this.engine = engine;
+        this.singleLoopSampleCount = singleLoopSampleCount;
+        this.samplingMode = samplingMode;
+    }
+
+    /**
+     * Returns the default options: the nested engine with 10,000 iterations, Monte Carlo sampling, and work is done
+     * on the common fork join pool.
+     */
+    public static AnalysisOptions defaults() {
+        return new AnalysisOptions(ForkJoinPool.commonPool(), 10_000, Double.NaN, Double.NaN, VoiEngine.NESTED, 100_000,
+                SamplingMode.MONTE_CARLO);
+    }
+
+    /**
+     * Returns options that do the work of the analysis on the given executor. The results do not depend on the
+     * executor or its number of threads.
+     */
+    public AnalysisOptions withExecutor(final ExecutorService executor) {
+        return new AnalysisOptions(executor, this.iterations, this.targetAbsoluteError, this.targetRelativeError,
+                this.engine, this.singleLoopSampleCount, this.samplingMode);
+    }
+
+    /**
+     * Returns options with the given number of outer iterations for the value of information. Every iteration
+     * samples each variable ten times.
+     */
+    public AnalysisOptions withIterations(final int iterations) {
+        assert iterations > 0;
+        return new AnalysisOptions(this.executor, iterations, this.targetAbsoluteError, this.targetRelativeError,
+                this.engine, this.singleLoopSampleCount, this.samplingMode);
+    }
+
+    /**
+     * Returns options for adaptive mode: the value of information of a variable is no longer sampled when half
+     * the width of its confidence interval is below the absolute error or below the relative error times the
+     * estimate. The number of iterations times the number of sampled variables is a shared budget: iterations that a
+     * stopped variable does not need are spent on the others, which can therefore get more than the number of
+     * iterations. Most of the budget goes to variables whose rank is still uncertain, i.e. whose confidence interval
+     * overlaps with the interval of another variable. Variables with fixed values are not sampled at all, their value
+     * of information is reported as exactly 0. NaN disables the respective target.
+     */
+    public AnalysisOptions withTargetError(final double absoluteError, final double relativeError) {
+        return new AnalysisOptions(this.executor, this.iterations, absoluteError, relativeError,
+                this.engine, this.singleLoopSampleCount, this.samplingMode);
+    }
+
+    public AnalysisOptions withEngine(final VoiEngine engine) {
+        return new AnalysisOptions(this.executor, this.iterations, this.targetAbsoluteError, this.targetRelativeError,
+                engine, this.singleLoopSampleCount, this.samplingMode);
+    }
+
+    /**
+     * Returns options with the given size of the joint sample for {@link VoiEngine#SINGLE_LOOP}.
+     */
+    public AnalysisOptions withSingleLoopSampleCount(final int sampleCount) {
+        return new AnalysisOptions(this.executor, this.iterations, this.targetAbsoluteError, this.targetRelativeError,
+                this.engine, sampleCount, this.samplingMode);
+    }
+
+    /**
+     * Returns options that sample the model with the given {@link SamplingMode}. The stratified modes give the
+     * same precision of the estimates with fewer samples for models with mostly continuous distributions.
+     */
+    public AnalysisOptions withSamplingMode(final SamplingMode samplingMode) {
+        return new AnalysisOptions(this.executor, this.iterations, this.targetAbsoluteError, this.targetRelativeError,
+                this.engine, this.singleLoopSampleCount, samplingMode);
+    }
+
+    public ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    public VoiEngine getEngine() {
+        return this.engine;
+    }
+
+    public int getSingleLoopSampleCount() {
+        return this.singleLoopSampleCount;
+    }
+
+    public SamplingMode getSamplingMode() {
+        return this.samplingMode;
+    }
+
+    public boolean isAdaptive() {
+        return !Double.isNaN(this.targetAbsoluteError) || !Double.isNaN(this.targetRelativeError);
+    }
+
+    /**
+     * Returns true iff the given estimate satisfies the target error.
+     */
+    boolean isPreciseEnough(final Mean m) {
+        final double halfWidth = m.getConfidenceHalfWidth(CONFIDENCE_LEVEL);
+        return halfWidth <= this.targetAbsoluteError || halfWidth <= this.targetRelativeError * Math.abs(m.get());
+    }
+
+}
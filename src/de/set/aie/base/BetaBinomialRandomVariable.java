@@ -15,9 +15,7 @@
  */
 package de.set.aie.base;
 
-import org.apache.commons.math3.distribution.BetaDistribution;
-import org.apache.commons.math3.distribution.BinomialDistribution;
-import org.apache.commons.math3.random.RandomGenerator;
+import java.util.Arrays;
 
 /**
  * Zufallsvariable mit Beta-Binomialverteilung.
@@ -25,78 +23,97 @@ import org.apache.commons.math3.random.RandomGenerator;
  * Die Beta-Binomialverteilung ist "conjugate prior" zur hypergeometrischen Verteilung und deshalb von Nutzen,
  * wenn über eine Stichprobe aus einer Grundgesamtheit fester Größe Wissen gewonnen wurde (z.B. von insgesamt 100
  * Kunden wurden 10 befragt, davon traf die Bedingung auf 4 zu).
+ *
+ * Zum Ziehen wird ein Beta-verteilter Anteil aus zwei Gamma-verteilten Zahlen bestimmt und damit die
+ * Binomialverteilung gezogen. Alternativ kann eine vorberechnete Tabelle der Verteilungsfunktion genutzt
+ * werden (siehe {@link #withInverseCdfTable()}).
  */
 public class BetaBinomialRandomVariable extends RandomVariable {
 
+    /**
+     * Obergrenze für n bei der Tabelle der Verteilungsfunktion (8 MB).
+     */
+    static final int MAX_TABLE_N = 1 << 20;
+
     private final int n;
     private final double a;
     private final double b;
     private final double shift;
     private final QUnit unit;
+    private final GammaSampler gammaA;
+    private final GammaSampler gammaB;
+    private final double[] cdf;
 
     public BetaBinomialRandomVariable(int n, double a, double b, double shift, QUnit unit) {
+        this(n, a, b, shift, unit, null);
+    }
+
+    private BetaBinomialRandomVariable(int n, double a, double b, double shift, QUnit unit, double[] cdf) {
         this.n = n;
         this.a = a;
         this.b = b;
         this.shift = shift;
         this.unit = unit;
+        this.gammaA = new GammaSampler(a);
+        this.gammaB = new GammaSampler(b);
+        this.cdf = cdf;
+    }
+
+    /**
+     * Liefert eine Variable mit gleicher Verteilung, die mit einer vorberechneten Tabelle der
+     * Verteilungsfunktion zieht (eine gleichverteilte Zufallszahl und eine binäre Suche pro Wert).
+     * Die Tabelle hat n + 1 Einträge, n darf deshalb höchstens {@link #MAX_TABLE_N} sein.
+     */
+    public BetaBinomialRandomVariable withInverseCdfTable() {
+        if (this.n > MAX_TABLE_N) {
+            throw new IllegalArgumentException("n too large for a table: " + this.n);
+        }
+        return new BetaBinomialRandomVariable(this.n, this.a, this.b, this.shift, this.unit, this.computeCdf());
+    }
+
+    private double[] computeCdf() {
+        // Gewichte logarithmisch über das Verhältnis benachbarter Wahrscheinlichkeiten, dann normieren
+        final double[] ret = new double[this.n + 1];
+        double max = 0.0;
+        for (int k = 0; k < this.n; k++) {
+            ret[k + 1] = ret[k]
+                + Math.log((double) (this.n - k) / (k + 1))
+                + Math.log((k + this.a) / (this.n - k - 1 + this.b));
+            max = Math.max(max, ret[k + 1]);
+        }
+        double sum = 0.0;
+        for (int k = 0; k <= this.n; k++) {
+            sum += Math.exp(ret[k] - max);
+            ret[k] = sum;
+        }
+        for (int k = 0; k <= this.n; k++) {
+            ret[k] /= sum;
+        }
+        ret[this.n] = 1.0;
+        return ret;
     }
 
     @Override
     public Quantity observe(RandomSource r, SimulationRun run) {
-        final RandomGenerator rng = randomAdapter(r);
-        final BetaDistribution beta = new BetaDistribution(rng, this.a, this.b);
-        final BinomialDistribution binom = new BinomialDistribution(rng, this.n, beta.sample());
-        return Quantity.of(binom.sample() + this.shift, this.unit);
+        return Quantity.of(this.sample(r), this.unit);
+    }
+
+    @Override
+    public void observeBatch(RandomSource r, SimulationBatch batch, double[] out) {
+        for (int i = 0; i < batch.size(); i++) {
+            out[i] = this.sample(r);
+        }
     }
 
-    private static RandomGenerator randomAdapter(RandomSource r) {
-        return new RandomGenerator() {
-            @Override
-            public void setSeed(long seed) {
-                throw new AssertionError();
-            }
-            @Override
-            public void setSeed(int[] seed) {
-                throw new AssertionError();
-            }
-            @Override
-            public void setSeed(int seed) {
-                throw new AssertionError();
-            }
-            @Override
-            public long nextLong() {
-                throw new AssertionError();
-            }
-            @Override
-            public int nextInt(int n) {
-                return r.nextInt(n);
-            }
-            @Override
-            public int nextInt() {
-                throw new AssertionError();
-            }
-            @Override
-            public double nextGaussian() {
-                return r.nextGaussian();
-            }
-            @Override
-            public float nextFloat() {
-                throw new AssertionError();
-            }
-            @Override
-            public double nextDouble() {
-                return r.nextDouble();
-            }
-            @Override
-            public void nextBytes(byte[] bytes) {
-                throw new AssertionError();
-            }
-            @Override
-            public boolean nextBoolean() {
-                throw new AssertionError();
-            }
-        };
+    private double sample(RandomSource r) {
+        if (this.cdf != null) {
+            final int pos = Arrays.binarySearch(this.cdf, r.nextDouble());
+            // bei einem Treffer liegt der Wert noch im Intervall, sonst ist pos = -(Einfügeposition) - 1
+            return (pos >= 0 ? pos + 1 : -pos - 1) + this.shift;
+        }
+        final double x = this.gammaA.sample(r);
+        final double y = this.gammaB.sample(r);
+        return r.nextBinomial(this.n, x / (x + y)) + this.shift;
     }
 
     @Override
@@ -19,29 +19,45 @@ public class BinomRandomVariable extends RandomVariable {
 
     private final RandomVariable count;
     private final RandomVariable probability;
+    private final QUnit unit;
 
     public BinomRandomVariable(final RandomVariable count, final RandomVariable prop) {
         assert prop.getUnit().equals(QUnit.scalar());
         this.count = count;
         this.probability = prop;
+        this.unit = count.getUnit();
     }
 
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
         final long cnt = Math.round(this.count.observe(r, run).getNumber());
         final double p = this.probability.observe(r, run).getNumber();
-        long sum = 0;
-        for (long i = 0; i < cnt; i++) {
-            if (r.nextDouble() < p) {
-                sum++;
-            }
+        return Quantity.of(r.nextBinomial(cnt, p), this.unit);
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final int size = batch.size();
+        final double[] p = new double[size];
+        this.count.observeBatch(r, batch, out);
+        this.probability.observeBatch(r, batch, p);
+        for (int row = 0; row < size; row++) {
+            out[row] = r.nextBinomial(Math.round(out[row]), p[row]);
         }
-        return Quantity.of(sum, this.getUnit());
+    }
+
+    @Override
+    int compile(final ProgramBuilder b) {
+        final int cnt = b.compile(this.count);
+        final int prop = b.compile(this.probability);
+        final int target = b.newRegister(b.getUnit(cnt));
+        b.emit(new Instructions.Binom(cnt, prop, target));
+        return target;
     }
 
     @Override
     public QUnit getUnit() {
-        return this.count.getUnit();
+        return this.unit;
     }
 
     @Override
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * Binomially distributed numbers in constant expected time. For small expected values inversion is used, for
+ * larger ones the BTPE algorithm (Kachitvichyanukul and Schmeiser, "Binomial random variate generation",
+ * Communications of the ACM 31, 1988).
+ */
+final class BinomialSampler {
+
+    /**
+     * Below this expected value (for p <= 0.5), inversion is faster than BTPE.
+     */
+    private static final double INVERSION_LIMIT = 30.0;
+
+    private BinomialSampler() {
+    }
+
+    /**
+     * Returns the number of successes in n trials with success probability p. Probabilities outside of [0, 1]
+     * are treated like the nearest bound, i.e. like a loop with {@code r.nextDouble() < p}.
+     */
+    public static long sample(final RandomSource r, final long n, final double p) {
+        if (n <= 0 || !(p > 0.0)) {
+            return 0;
+        }
+        if (p >= 1.0) {
+            return n;
+        }
+        if (p > 0.5) {
+            return n - sampleLowerHalf(r, n, 1.0 - p);
+        }
+        return sampleLowerHalf(r, n, p);
+    }
+
+    private static long sampleLowerHalf(final RandomSource r, final long n, final double p) {
+        if (n * p < INVERSION_LIMIT) {
+            return inversion(r, n, p);
+        } else {
+            return btpe(r, n, p);
+        }
+    }
+
+    private static long inversion(final RandomSource r, final long n, final double p) {
+        final double q = 1.0 - p;
+        final double qn = Math.exp(n * Math.log1p(-p));
+        final double np = n * p;
+        final double bound = Math.min(n, np + 10.0 * Math.sqrt(np * q + 1));
+        long x = 0;
+        double px = qn;
+        double u = r.nextDouble();
+        while (u > px) {
+            x++;
+            if (x > bound) {
+                x = 0;
+                px = qn;
+                u = r.nextDouble();
+            } else {
+                u -= px;
+                px = ((n - x + 1) * p * px) / (x * q);
+            }
+        }
+        return x;
+    }
+
+    private static long btpe(final RandomSource r, final long n, final double p) {
+        final double q = 1.0 - p;
+        final double fm = n * p + p;
+        final long m = (long) Math.floor(fm);
+        final double nrq = n * p * q;
+        final double p1 = Math.floor(2.195 * Math.sqrt(nrq) - 4.6 * q) + 0.5;
+        final double xm = m + 0.5;
+        final double xl = xm - p1;
+        final double xr = xm + p1;
+        final double c = 0.134 + 20.5 / (15.3 + m);
+        double a = (fm - xl) / (fm - xl * p);
+        final double laml = a * (1.0 + a / 2.0);
+        a = (xr - fm) / (xr * q);
+        final double lamr = a * (1.0 + a / 2.0);
+        final double p2 = p1 * (1.0 + 2.0 * c);
+        final double p3 = p2 + c / laml;
+        final double p4 = p3 + c / lamr;
+
+        while (true) {
+            final double u = r.nextDouble() * p4;
+            double v = r.nextDouble();
+            final long y;
+            if (u <= p1) {
+                // triangular region, accepted immediately
+                return (long) Math.floor(xm - p1 * v + u);
+            } else if (u <= p2) {
+                // parallelograms
+                final double x = xl + (u - p1) / c;
+                v = v * c + 1.0 - Math.abs(m - x + 0.5) / p1;
+                if (v > 1.0) {
+                    continue;
+                }
+                y = (long) Math.floor(x);
+            } else if (u <= p3) {
+                // left exponential tail
+                y = (long) Math.floor(xl + Math.log(v) / laml);
+                if (y < 0 || v == 0.0) {
+                    continue;
+                }
+                v = v * (u - p2) * laml;
+            } else {
+                // right exponential tail
+                y = (long) Math.floor(xr - Math.log(v) / lamr);
+                if (y > n || v == 0.0) {
+                    continue;
+                }
+                v = v * (u - p3) * lamr;
+            }
+
+            final long k = Math.abs(y - m);
+            if (k <= 20 || k >= nrq / 2.0 - 1) {
+                // explicit evaluation of f(y) / f(m)
+                final double s = p / q;
+                final double aa = s * (n + 1);
+                double f = 1.0;
+                if (m < y) {
+                    for (long i = m + 1; i <= y; i++) {
+                        f *= aa / i - s;
+                    }
+                } else if (m > y) {
+                    for (long i = y + 1; i <= m; i++) {
+                        f /= aa / i - s;
+                    }
+                }
+                if (v <= f) {
+                    return y;
+                }
+                continue;
+            }
+
+            // squeeze with the normal approximation, then Stirling's formula for the final test
+            final double rho = (k / nrq) * ((k * (k / 3.0 + 0.625) + 0.1666666666666666) / nrq + 0.5);
+            final double t = -k * k / (2.0 * nrq);
+            final double logV = Math.log(v);
+            if (logV < t - rho) {
+                return y;
+            }
+            if (logV > t + rho) {
+                continue;
+            }
+            final double x1 = y + 1;
+            final double f1 = m + 1;
+            final double z = n + 1 - m;
+            final double w = n - y + 1;
+            final double bound = xm * Math.log(f1 / x1)
+                + (n - m + 0.5) * Math.log(z / w)
+                + (y - m) * Math.log(w * p / (x1 * q))
+                + stirlingCorrection(f1) + stirlingCorrection(z) + stirlingCorrection(x1) + stirlingCorrection(w);
+            if (logV <= bound) {
+                return y;
+            }
+        }
+    }
+
+    private static double stirlingCorrection(final double x) {
+        final double x2 = x * x;
+        return (13680. - (462. - (132. - (99. - 140. / x2) / x2) / x2) / x2) / x / 166320.;
+    }
+
+}
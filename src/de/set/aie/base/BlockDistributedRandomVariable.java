@@ -15,7 +15,7 @@
  */
 package de.set.aie.base;
 
-public class BlockDistributedRandomVariable extends RandomVariable {
+public class BlockDistributedRandomVariable extends RandomVariable implements ContinuousDistribution {
 
     private final double lower;
     private final double upper;
@@ -29,17 +29,64 @@ public class BlockDistributedRandomVariable extends RandomVariable {
 
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
+        return Quantity.of(this.sample(r), this.unit);
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        for (int i = 0; i < batch.size(); i++) {
+            out[i] = this.sample(r);
+        }
+    }
+
+    private double sample(final RandomSource r) {
         final double type = r.nextDouble();
         final double diff = this.upper - this.lower;
         if (type < 0.05) {
-            return Quantity.of(this.lower - diff + diff * r.nextDouble(), this.unit);
+            return this.lower - diff + diff * r.nextDouble();
         } else if (type < 0.95) {
-            return Quantity.of(this.lower + diff * r.nextDouble(), this.unit);
+            return this.lower + diff * r.nextDouble();
+        } else {
+            return this.upper + diff * r.nextDouble();
+        }
+    }
+
+    @Override
+    public double cdf(final double x) {
+        final double diff = this.upper - this.lower;
+        if (diff == 0.0) {
+            return x < this.lower ? 0.0 : 1.0;
+        }
+        if (x < this.lower - diff) {
+            return 0.0;
+        } else if (x < this.lower) {
+            return 0.05 * (x - (this.lower - diff)) / diff;
+        } else if (x < this.upper) {
+            return 0.05 + 0.9 * (x - this.lower) / diff;
+        } else if (x < this.upper + diff) {
+            return 0.95 + 0.05 * (x - this.upper) / diff;
         } else {
-            return Quantity.of(this.upper + diff * r.nextDouble(), this.unit);
+            return 1.0;
         }
     }
 
+    @Override
+    public double quantile(final double p) {
+        final double diff = this.upper - this.lower;
+        if (p < 0.05) {
+            return this.lower - diff + diff * p / 0.05;
+        } else if (p < 0.95) {
+            return this.lower + diff * (p - 0.05) / 0.9;
+        } else {
+            return this.upper + diff * (p - 0.95) / 0.05;
+        }
+    }
+
+    @Override
+    public RandomVariable bound(final double lowerBound, final double upperBound) {
+        return new TruncatedRandomVariable(this, this, lowerBound, upperBound);
+    }
+
     @Override
     public QUnit getUnit() {
         return this.unit;
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Distributes the blocks of a sampling run to an executor. The first block is run in the calling thread and timed,
+ * and the number of blocks per task is chosen so that a task takes about {@link #TARGET_TASK_NANOS}. On a
+ * {@link ForkJoinPool}, the range of blocks is split recursively, on other executors (e.g. one virtual thread per
+ * task) one task per range is submitted. Every block is independent of the others, so the split does not change
+ * the results.
+ */
+final class BlockSplitter {
+
+    static final long TARGET_TASK_NANOS = 1_000_000L;
+
+    private BlockSplitter() {
+    }
+
+    private static final class SplitAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int blocksPerTask;
+        private final Supplier<IntConsumer> task;
+
+        SplitAction(final int from, final int to, final int blocksPerTask, final Supplier<IntConsumer> task) {
+            this.from = from;
+            this.to = to;
+            this.blocksPerTask = blocksPerTask;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.blocksPerTask) {
+                runRange(this.from, this.to, this.task);
+                return;
+            }
+            final int mid = (this.from + this.to) >>> 1;
+            invokeAll(
+                    new SplitAction(this.from, mid, this.blocksPerTask, this.task),
+                    new SplitAction(mid, this.to, this.blocksPerTask, this.task));
+        }
+    }
+
+    /**
+     * Runs the given action for all blocks from 0 (inclusive) to blockCount (exclusive).
+     *
+     * @param executor The executor, or null to run everything in the calling thread.
+     */
+    public static void run(final int blockCount, final ExecutorService executor, final IntConsumer block)
+        throws InterruptedException, ExecutionException {
+        runTasks(blockCount, executor, () -> block);
+    }
+
+    /**
+     * Runs the blocks from 0 (inclusive) to blockCount (exclusive). Every task gets its own action for its range of
+     * blocks from the given factory, so that state like working memory can be allocated once per task and reused
+     * for all its blocks.
+     *
+     * @param executor The executor, or null to run everything in the calling thread.
+     */
+    public static void runTasks(final int blockCount, final ExecutorService executor, final Supplier<IntConsumer> task)
+        throws InterruptedException, ExecutionException {
+
+        if (blockCount == 0) {
+            return;
+        }
+        if (executor == null) {
+            runRange(0, blockCount, task);
+            return;
+        }
+        final long start = System.nanoTime();
+        task.get().accept(0);
+        final int blocksPerTask = blocksPerTask(System.nanoTime() - start);
+        if (executor instanceof ForkJoinPool) {
+            try {
+                ((ForkJoinPool) executor).invoke(new SplitAction(1, blockCount, blocksPerTask, task));
+            } catch (final RuntimeException | Error e) {
+                throw new ExecutionException(e);
+            }
+            return;
+        }
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int from = 1; from < blockCount; from += blocksPerTask) {
+            final int rangeStart = from;
+            final int rangeEnd = Math.min(blockCount, from + blocksPerTask);
+            futures.add(executor.submit(() -> runRange(rangeStart, rangeEnd, task)));
+        }
+        for (final Future<?> f : futures) {
+            f.get();
+        }
+    }
+
+    static int blocksPerTask(final long nanosPerBlock) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, TARGET_TASK_NANOS / Math.max(1, nanosPerBlock)));
+    }
+
+    private static void runRange(final int from, final int to, final Supplier<IntConsumer> task) {
+        final IntConsumer block = task.get();
+        for (int b = from; b < to; b++) {
+            block.accept(b);
+        }
+    }
+
+}
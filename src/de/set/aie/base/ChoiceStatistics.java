@@ -0,0 +1,129 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * Statistics for a decision between several value variables, computed while sampling: the mean of every choice,
+ * and the mean difference of every choice to a reference choice. The loss of the reference choice compared to the
+ * best choice can be determined from this without keeping the samples.
+ */
+public final class ChoiceStatistics implements SampleAccumulator<ChoiceStatistics> {
+
+    private final int reference;
+    private final long[] counts;
+    private final double[] means;
+    private final double[] m2s;
+    private final double[] differenceMeans;
+    private final double[] differenceM2s;
+
+    /**
+     * @param choiceCount The number of value variables.
+     * @param reference The index of the reference choice, e.g. the best choice without further information.
+     */
+    public ChoiceStatistics(final int choiceCount, final int reference) {
+        assert reference >= 0 && reference < choiceCount;
+        this.reference = reference;
+        this.counts = new long[choiceCount];
+        this.means = new double[choiceCount];
+        this.m2s = new double[choiceCount];
+        this.differenceMeans = new double[choiceCount];
+        this.differenceM2s = new double[choiceCount];
+    }
+
+    @Override
+    public void addBlock(final double[][] columns, final int rows) {
+        final double[] ref = columns[this.reference];
+        for (int c = 0; c < this.counts.length; c++) {
+            final double[] values = columns[c];
+            long n = this.counts[c];
+            double mean = this.means[c];
+            double m2 = this.m2s[c];
+            double dMean = this.differenceMeans[c];
+            double dM2 = this.differenceM2s[c];
+            for (int i = 0; i < rows; i++) {
+                n++;
+                final double v = values[i];
+                final double delta = v - mean;
+                mean += delta / n;
+                m2 += delta * (v - mean);
+                final double d = v - ref[i];
+                final double dDelta = d - dMean;
+                dMean += dDelta / n;
+                dM2 += dDelta * (d - dMean);
+            }
+            this.counts[c] = n;
+            this.means[c] = mean;
+            this.m2s[c] = m2;
+            this.differenceMeans[c] = dMean;
+            this.differenceM2s[c] = dM2;
+        }
+    }
+
+    @Override
+    public void merge(final ChoiceStatistics other) {
+        for (int c = 0; c < this.counts.length; c++) {
+            if (other.counts[c] == 0) {
+                continue;
+            }
+            final Mean value = this.getMean(c).add(other.getMean(c));
+            final Mean difference = this.getDifferenceToReference(c).add(other.getDifferenceToReference(c));
+            this.counts[c] = value.getCount();
+            this.means[c] = value.get();
+            this.m2s[c] = value.getSumOfSquaredDeviations();
+            this.differenceMeans[c] = difference.get();
+            this.differenceM2s[c] = difference.getSumOfSquaredDeviations();
+        }
+    }
+
+    /**
+     * Returns the mean of the given choice.
+     */
+    public Mean getMean(final int choice) {
+        return this.counts[choice] == 0
+            ? Mean.undefined() : new Mean(this.counts[choice], this.means[choice], this.m2s[choice]);
+    }
+
+    /**
+     * Returns the mean of the given choice minus the reference choice.
+     */
+    public Mean getDifferenceToReference(final int choice) {
+        return this.counts[choice] == 0
+            ? Mean.undefined()
+            : new Mean(this.counts[choice], this.differenceMeans[choice], this.differenceM2s[choice]);
+    }
+
+    /**
+     * Returns the index of the choice with the highest mean. When several are equal, the first is returned.
+     */
+    public int getBestChoice() {
+        int best = 0;
+        for (int c = 1; c < this.counts.length; c++) {
+            if (this.means[c] > this.means[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the loss of choosing the reference instead of the best choice, i.e. the difference of the best choice
+     * to the reference.
+     */
+    public Mean getLossOfReference() {
+        return this.getDifferenceToReference(this.getBestChoice());
+    }
+
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer for Java class files, just enough for the classes generated by {@link KernelGenerator}.
+ * Writes class file version 49, so that no stack map frames are needed.
+ */
+final class ClassFileWriter {
+
+    private static final int VERSION = 49;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(this.poolBytes);
+    private final Map<String, Integer> poolIndices = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+    private final DataOutputStream fields = new DataOutputStream(this.fieldBytes);
+    private int fieldCount;
+
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(this.methodBytes);
+    private int methodCount;
+
+    /**
+     * Bytecode of a single method, with support for simple forward and backward jumps.
+     */
+    static final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<int[]> patches = new ArrayList<>();
+        private byte[] finished;
+
+        public int position() {
+            return this.bytes.size();
+        }
+
+        public Code op(final int opcode) {
+            this.bytes.write(opcode);
+            return this;
+        }
+
+        public Code u1(final int value) {
+            this.bytes.write(value);
+            return this;
+        }
+
+        public Code u2(final int value) {
+            this.bytes.write(value >>> 8);
+            this.bytes.write(value);
+            return this;
+        }
+
+        /**
+         * Writes a jump instruction to the given (already known) position.
+         */
+        public Code jumpBack(final int opcode, final int target) {
+            final int offset = target - this.position();
+            return this.op(opcode).u2(offset);
+        }
+
+        /**
+         * Writes a jump instruction whose target is set later with {@link #bindHere(int)}.
+         * Returns the handle for the jump.
+         */
+        public int jumpForward(final int opcode) {
+            final int handle = this.patches.size();
+            this.patches.add(new int[] {this.position(), -1});
+            this.op(opcode).u2(0);
+            return handle;
+        }
+
+        public void bindHere(final int handle) {
+            this.patches.get(handle)[1] = this.position();
+        }
+
+        /**
+         * Pushes an int constant.
+         */
+        public Code pushInt(final ClassFileWriter w, final int value) {
+            if (value >= -1 && value <= 5) {
+                return this.op(Opcodes.ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                return this.op(Opcodes.BIPUSH).u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                return this.op(Opcodes.SIPUSH).u2(value);
+            } else {
+                return this.op(Opcodes.LDC_W).u2(w.integer(value));
+            }
+        }
+
+        byte[] toByteArray() {
+            if (this.finished == null) {
+                final byte[] b = this.bytes.toByteArray();
+                for (final int[] patch : this.patches) {
+                    assert patch[1] >= 0 : "unbound jump";
+                    final int offset = patch[1] - patch[0];
+                    b[patch[0] + 1] = (byte) (offset >>> 8);
+                    b[patch[0] + 2] = (byte) offset;
+                }
+                this.finished = b;
+            }
+            return this.finished;
+        }
+    }
+
+    /**
+     * The opcodes used by the generated code.
+     */
+    static final class Opcodes {
+        static final int ICONST_0 = 0x03;
+        static final int DCONST_0 = 0x0e;
+        static final int DCONST_1 = 0x0f;
+        static final int BIPUSH = 0x10;
+        static final int SIPUSH = 0x11;
+        static final int LDC_W = 0x13;
+        static final int ILOAD = 0x15;
+        static final int DLOAD = 0x18;
+        static final int ALOAD = 0x19;
+        static final int DALOAD = 0x31;
+        static final int AALOAD = 0x32;
+        static final int ISTORE = 0x36;
+        static final int DSTORE = 0x39;
+        static final int ASTORE = 0x3a;
+        static final int DASTORE = 0x52;
+        static final int DADD = 0x63;
+        static final int DSUB = 0x67;
+        static final int DMUL = 0x6b;
+        static final int DDIV = 0x6f;
+        static final int IINC = 0x84;
+        static final int DCMPG = 0x98;
+        static final int IFGE = 0x9c;
+        static final int IF_ICMPGE = 0xa2;
+        static final int GOTO = 0xa7;
+        static final int RETURN = 0xb1;
+        static final int GETFIELD = 0xb4;
+        static final int PUTFIELD = 0xb5;
+        static final int INVOKEVIRTUAL = 0xb6;
+        static final int INVOKESPECIAL = 0xb7;
+        static final int INVOKESTATIC = 0xb8;
+        static final int INVOKEINTERFACE = 0xb9;
+
+        static final int ACC_PUBLIC = 0x0001;
+        static final int ACC_PRIVATE = 0x0002;
+        static final int ACC_FINAL = 0x0010;
+        static final int ACC_SUPER = 0x0020;
+
+        private Opcodes() {
+        }
+    }
+
+    private int constant(final String key, final Constant c) {
+        final Integer existing = this.poolIndices.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            c.write(this.pool);
+        } catch (final IOException e) {
+            throw new AssertionError(e);
+        }
+        final int index = this.poolCount++;
+        this.poolIndices.put(key, index);
+        return index;
+    }
+
+    private interface Constant {
+        public abstract void write(DataOutputStream out) throws IOException;
+    }
+
+    public int utf8(final String value) {
+        return this.constant("U" + value, (final DataOutputStream out) -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    public int integer(final int value) {
+        return this.constant("I" + value, (final DataOutputStream out) -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    public int classRef(final String internalName) {
+        final int name = this.utf8(internalName);
+        return this.constant("C" + internalName, (final DataOutputStream out) -> {
+            out.writeByte(7);
+            out.writeShort(name);
+        });
+    }
+
+    private int nameAndType(final String name, final String descriptor) {
+        final int n = this.utf8(name);
+        final int d = this.utf8(descriptor);
+        return this.constant("N" + name + ":" + descriptor, (final DataOutputStream out) -> {
+            out.writeByte(12);
+            out.writeShort(n);
+            out.writeShort(d);
+        });
+    }
+
+    private int memberRef(final int tag, final String owner, final String name, final String descriptor) {
+        final int c = this.classRef(owner);
+        final int nt = this.nameAndType(name, descriptor);
+        return this.constant(tag + owner + "." + name + ":" + descriptor, (final DataOutputStream out) -> {
+            out.writeByte(tag);
+            out.writeShort(c);
+            out.writeShort(nt);
+        });
+    }
+
+    public int fieldRef(final String owner, final String name, final String descriptor) {
+        return this.memberRef(9, owner, name, descriptor);
+    }
+
+    public int methodRef(final String owner, final String name, final String descriptor) {
+        return this.memberRef(10, owner, name, descriptor);
+    }
+
+    public int interfaceMethodRef(final String owner, final String name, final String descriptor) {
+        return this.memberRef(11, owner, name, descriptor);
+    }
+
+    public void addField(final int access, final String name, final String descriptor) {
+        try {
+            this.fields.writeShort(access);
+            this.fields.writeShort(this.utf8(name));
+            this.fields.writeShort(this.utf8(descriptor));
+            this.fields.writeShort(0);
+        } catch (final IOException e) {
+            throw new AssertionError(e);
+        }
+        this.fieldCount++;
+    }
+
+    public void addMethod(
+            final int access, final String name, final String descriptor,
+            final Code code, final int maxStack, final int maxLocals) {
+        final byte[] bytecode = code.toByteArray();
+        try {
+            this.methods.writeShort(access);
+            this.methods.writeShort(this.utf8(name));
+            this.methods.writeShort(this.utf8(descriptor));
+            this.methods.writeShort(1);
+            this.methods.writeShort(this.utf8("Code"));
+            this.methods.writeInt(12 + bytecode.length);
+            this.methods.writeShort(maxStack);
+            this.methods.writeShort(maxLocals);
+            this.methods.writeInt(bytecode.length);
+            this.methods.write(bytecode);
+            this.methods.writeShort(0);
+            this.methods.writeShort(0);
+        } catch (final IOException e) {
+            throw new AssertionError(e);
+        }
+        this.methodCount++;
+    }
+
+    public byte[] toByteArray(
+            final int access, final String name, final String superName, final String... interfaces) {
+        final int thisClass = this.classRef(name);
+        final int superClass = this.classRef(superName);
+        final int[] interfaceIndices = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaceIndices[i] = this.classRef(interfaces[i]);
+        }
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(this.poolCount);
+            this.pool.flush();
+            this.poolBytes.writeTo(out);
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaceIndices.length);
+            for (final int i : interfaceIndices) {
+                out.writeShort(i);
+            }
+            out.writeShort(this.fieldCount);
+            this.fields.flush();
+            this.fieldBytes.writeTo(out);
+            out.writeShort(this.methodCount);
+            this.methods.flush();
+            this.methodBytes.writeTo(out);
+            out.writeShort(0);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
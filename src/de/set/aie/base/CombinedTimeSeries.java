@@ -1,6 +1,7 @@
 package de.set.aie.base;
 
 import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
 import java.util.function.Function;
 
 /**
@@ -10,19 +11,47 @@ public class CombinedTimeSeries extends TimeSeries {
     private BiFunction<RandomVariable, RandomVariable, RandomVariable> combiner;
     private TimeSeries s1;
     private TimeSeries s2;
+    private DoubleBinaryOperator primitiveCombiner;
 
     public CombinedTimeSeries(TimeSeries s1, TimeSeries s2,
                               BiFunction<RandomVariable, RandomVariable, RandomVariable> combiner) {
+        this(s1, s2, combiner, null);
+    }
+
+    /**
+     * Konstruktor mit zusätzlicher Verknüpfung der Zahlenwerte, die für Trajektorien genutzt wird.
+     */
+    public CombinedTimeSeries(TimeSeries s1, TimeSeries s2,
+                              BiFunction<RandomVariable, RandomVariable, RandomVariable> combiner,
+                              DoubleBinaryOperator primitiveCombiner) {
         this.combiner = combiner;
         this.s1 = s1;
         this.s2 = s2;
+        this.primitiveCombiner = primitiveCombiner;
     }
 
     @Override
     public Function<Model.Instance, RandomVariable> getFor(int time) {
-        return (Model.Instance inst) ->
+        return memoize(time, (Model.Instance inst) ->
                 combiner.apply(
                         s1.getFor(time).apply(inst),
-                        s2.getFor(time).apply(inst));
+                        s2.getFor(time).apply(inst)));
+    }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        if (primitiveCombiner == null) {
+            return super.createTrajectoryKernel(c);
+        }
+        TrajectoryKernel k1 = c.kernel(s1);
+        TrajectoryKernel k2 = c.kernel(s2);
+        double[] values2 = c.newBuffer();
+        return (TrajectoryContext ctx, double[] out) -> {
+            k1.fill(ctx, out);
+            k2.fill(ctx, values2);
+            for (int t = 0; t < out.length; t++) {
+                out[t] = primitiveCombiner.applyAsDouble(out[t], values2[t]);
+            }
+        };
     }
 }
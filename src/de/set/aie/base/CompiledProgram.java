@@ -0,0 +1,92 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * The dependency graph of some variables of a {@link Model.Instance}, lowered to a flat program over
+ * double registers. Each register holds the values for a whole {@link SimulationBatch}, so every instruction
+ * is a loop over primitive arrays. Units are checked once when the program is compiled.
+ * A program can be executed concurrently, as long as every thread uses its own registers.
+ */
+public final class CompiledProgram {
+
+    private final Instruction[] instructions;
+    private final int registerCount;
+    private final int[] outputs;
+    private final int dimensionCount;
+
+    CompiledProgram(
+            final Instruction[] instructions, final int registerCount, final int[] outputs, final int dimensionCount) {
+        this.instructions = instructions;
+        this.registerCount = registerCount;
+        this.outputs = outputs;
+        this.dimensionCount = dimensionCount;
+    }
+
+    /**
+     * Creates the registers needed to execute this program for batches up to the given size.
+     */
+    public double[][] newRegisters(final int batchSize) {
+        return new double[this.registerCount][batchSize];
+    }
+
+    public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+        for (final Instruction i : this.instructions) {
+            i.execute(r, batch, registers);
+        }
+    }
+
+    /**
+     * Returns a program that computes the same values, but uses classes generated at runtime for the arithmetic
+     * parts. Generating the code takes some time, so this pays off only for programs that are executed often.
+     * When code generation is not supported by the JVM (Java 8), the program itself is returned.
+     */
+    public CompiledProgram withGeneratedCode() {
+        if (!KernelGenerator.isAvailable()) {
+            return this;
+        }
+        return new CompiledProgram(
+                KernelGenerator.generate(this.instructions), this.registerCount, this.outputs, this.dimensionCount);
+    }
+
+    /**
+     * Returns the register that contains the values of the index-th variable the program was compiled for.
+     */
+    public int getOutputRegister(final int index) {
+        return this.outputs[index];
+    }
+
+    public int getOutputCount() {
+        return this.outputs.length;
+    }
+
+    /**
+     * Returns the number of dimensions of the point set that is needed for a stratified {@link SamplingMode}.
+     * The points are passed with the {@link SimulationBatch}.
+     */
+    int getDimensionCount() {
+        return this.dimensionCount;
+    }
+
+    Instruction[] getInstructions() {
+        return this.instructions;
+    }
+
+    int getRegisterCount() {
+        return this.registerCount;
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * Samples the sum of n independent draws of a {@link SummableDistribution} with one normal draw, instead of n
+ * draws of the distribution. This is exact for sums of normal (and fixed) values. For other distributions the
+ * normal distribution is only an approximation (central limit theorem), it is used when the Berry-Esseen bound
+ * for the maximal difference of the distribution functions is not larger than the allowed error. With an allowed
+ * error of 0, only the exact cases are aggregated.
+ */
+final class CompoundSum {
+
+    /**
+     * Constant of the Berry-Esseen theorem for identically distributed summands (Shevtsova 2011).
+     */
+    static final double BERRY_ESSEEN_CONSTANT = 0.4748;
+
+    private final double mean;
+    private final double variance;
+    private final long minCount;
+
+    private CompoundSum(final SummableDistribution d, final double maxError) {
+        this.mean = d.mean();
+        this.variance = d.variance();
+        this.minCount = minCount(d, maxError);
+    }
+
+    /**
+     * Returns the aggregated sampling for the given summand, or null if its moments are unknown (for example
+     * because it is persistent and therefore has the same value for every summand of a run).
+     */
+    static CompoundSum of(final RandomVariable summand, final double maxError) {
+        if (!(summand instanceof SummableDistribution)) {
+            return null;
+        }
+        return new CompoundSum((SummableDistribution) summand, maxError);
+    }
+
+    private static long minCount(final SummableDistribution d, final double maxError) {
+        if (d.isSumNormal() || d.variance() == 0.0) {
+            return 0;
+        }
+        if (!(maxError > 0.0)) {
+            return Long.MAX_VALUE;
+        }
+        // error <= C * rho / (sd^3 * sqrt(n)) <= maxError
+        final double root = BERRY_ESSEEN_CONSTANT * d.standardizedThirdMomentBound() / maxError;
+        final double n = Math.ceil(root * root);
+        return n >= Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(1, (long) n);
+    }
+
+    /**
+     * Returns the smallest number of summands that is sampled in aggregate.
+     */
+    long getMinCount() {
+        return this.minCount;
+    }
+
+    boolean canAggregate(final long count) {
+        return count >= this.minCount;
+    }
+
+    /**
+     * Samples the sum of the given number of draws, the number has to be large enough for {@link #canAggregate}.
+     */
+    double sample(final RandomSource r, final long count) {
+        assert this.canAggregate(count);
+        if (count <= 0) {
+            return 0.0;
+        }
+        final double sum = count * this.mean;
+        if (this.variance == 0.0) {
+            return sum;
+        }
+        return sum + Math.sqrt(count * this.variance) * r.nextNormal();
+    }
+
+}
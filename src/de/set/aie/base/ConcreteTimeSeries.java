@@ -43,4 +43,20 @@ public class ConcreteTimeSeries extends TimeSeries {
             return (Model.Instance inst) -> inst.get(vars.get(time));
         }
     }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        if (c.getPeriods() > vars.size() && repeat == Repeat.NONE) {
+            throw new AssertionError("invalid time: " + vars.size() + ", max is " + (vars.size() - 1));
+        }
+        TrajectoryInput[] inputs = new TrajectoryInput[c.getPeriods()];
+        for (int t = 0; t < inputs.length; t++) {
+            inputs[t] = c.input(vars.get(Math.min(t, vars.size() - 1)));
+        }
+        return (TrajectoryContext ctx, double[] out) -> {
+            for (int t = 0; t < out.length; t++) {
+                out[t] = inputs[t].get(ctx);
+            }
+        };
+    }
 }
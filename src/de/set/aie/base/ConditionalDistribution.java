@@ -42,6 +42,32 @@ public class ConditionalDistribution extends RandomVariable {
         }
     }
 
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        // both alternatives are observed for all rows and the result is selected afterwards
+        final int size = batch.size();
+        final double[] prop = new double[size];
+        final double[] other = new double[size];
+        this.v1Prop.observeBatch(r, batch, prop);
+        this.v1.observeBatch(r, batch, out);
+        this.v2.observeBatch(r, batch, other);
+        for (int i = 0; i < size; i++) {
+            if (!(r.nextDouble() < prop[i])) {
+                out[i] = other[i];
+            }
+        }
+    }
+
+    @Override
+    int compile(final ProgramBuilder b) {
+        final int prop = b.compile(this.v1Prop);
+        final int in1 = b.compile(this.v1);
+        final int in2 = b.compile(this.v2);
+        final int target = b.newRegister(b.getUnit(in1));
+        b.emit(new Instructions.Select(prop, in1, in2, target));
+        return target;
+    }
+
     @Override
     public QUnit getUnit() {
         return this.v1.getUnit();
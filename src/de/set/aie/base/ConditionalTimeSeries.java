@@ -29,11 +29,28 @@ public class ConditionalTimeSeries extends TimeSeries {
 
     @Override
     public Function<Model.Instance, RandomVariable> getFor(int time) {
-        return (Model.Instance inst) ->
+        return memoize(time, (Model.Instance inst) ->
                 Distributions.conditional(
                     inst.get(decision),
                     v1.getFor(time).apply(inst),
                     v2.getFor(time).apply(inst)
-                );
+                ));
+    }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        TrajectoryInput d = c.input(decision);
+        TrajectoryKernel k1 = c.kernel(v1);
+        TrajectoryKernel k2 = c.kernel(v2);
+        double[] values2 = c.newBuffer();
+        return (TrajectoryContext ctx, double[] out) -> {
+            k1.fill(ctx, out);
+            k2.fill(ctx, values2);
+            for (int t = 0; t < out.length; t++) {
+                if (!(ctx.random().nextDouble() < d.get(ctx))) {
+                    out[t] = values2[t];
+                }
+            }
+        };
     }
 }
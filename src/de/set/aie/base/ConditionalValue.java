@@ -41,6 +41,15 @@ public class ConditionalValue extends RandomVariable {
         }
     }
 
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final double n1 = this.v1.getNumber();
+        final double n2 = this.v2.getNumber();
+        for (int i = 0; i < batch.size(); i++) {
+            out[i] = r.nextDouble() < this.v1Prop ? n1 : n2;
+        }
+    }
+
     @Override
     public QUnit getUnit() {
         return this.v1.getUnit();
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * A continuous distribution with known distribution function and quantile function. For such distributions,
+ * {@link RandomVariable#bound(double, double)} samples the truncated distribution directly
+ * (see {@link TruncatedRandomVariable}) instead of resampling values outside of the range.
+ */
+interface ContinuousDistribution {
+
+    /**
+     * Returns the probability of a value less than or equal to x.
+     */
+    public abstract double cdf(double x);
+
+    /**
+     * Returns the smallest value x with cdf(x) >= p.
+     */
+    public abstract double quantile(double p);
+
+    /**
+     * Returns the probability of a value greater than x. Distributions with an unbounded upper tail override this,
+     * because 1 - cdf(x) is rounded to 0 far in the tail.
+     */
+    public default double survival(final double x) {
+        return 1.0 - this.cdf(x);
+    }
+
+    /**
+     * Returns the value x with survival(x) = p, i.e. the quantile function seen from the upper tail.
+     */
+    public default double inverseSurvival(final double p) {
+        return this.quantile(1.0 - p);
+    }
+
+}
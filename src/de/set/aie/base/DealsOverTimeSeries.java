@@ -1,11 +1,10 @@
 package de.set.aie.base;
 
-import java.util.List;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
 import java.util.function.Function;
 import java.util.function.IntFunction;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * Eine Zeitreihe, die es einfach ermöglicht, "Deals im Zeitverlauf" (also z.B. Verkäufe von Lizenz+Wartung, ...)
@@ -17,8 +16,10 @@ public class DealsOverTimeSeries extends TimeSeries {
     private final VarId dealSizeInitial;
     private final VarId dealSizeFactorRestYears;
     private final VarId dealDuration;
+    private final double maxApproximationError;
 
     private final ConcurrentHashMap<Integer, UniqueId> idForTime = new ConcurrentHashMap<>();
+    private final UniqueId accumulatorId = new UniqueId();
 
     /**
      * Konstruktor.
@@ -33,33 +34,206 @@ public class DealsOverTimeSeries extends TimeSeries {
             VarId dealSizeInitial,
             VarId dealSizeFactorRestYears,
             VarId dealDuration) {
+        this(dealCounts, dealSizeInitial, dealSizeFactorRestYears, dealDuration, 0.0);
+    }
+
+    /**
+     * Konstruktor.
+     * @param dealCounts Anzahl der Deals pro Jahr / Wahrscheinlichkeit, einen Deal pro Jahr zu machen.
+     * @param dealSizeInitial Betrag je Deal im ersten Jahr des Deals.
+     * @param dealSizeFactorRestYears
+     *          Faktor für den Betrag je Deal abhängig vom Ursprungsbetrag für Folgejahre (z. B. Wartung).
+     * @param dealDuration Laufzeit eines Deals (zusätzlich zum initialen Jahr, d.h. 0 = nur initiales Jahr).
+     * @param maxApproximationError
+     *          Maximaler Fehler (Abstand der Verteilungsfunktionen), mit dem die Summe der Beträge vieler Deals
+     *          durch eine Normalverteilung angenähert werden darf, siehe {@link CompoundSum}. Bei 0 wird nur exakt
+     *          zusammengefasst.
+     */
+    public DealsOverTimeSeries(
+            TimeSeries dealCounts,
+            VarId dealSizeInitial,
+            VarId dealSizeFactorRestYears,
+            VarId dealDuration,
+            double maxApproximationError) {
         this.dealCounts = dealCounts;
         this.dealSizeInitial = dealSizeInitial;
         this.dealSizeFactorRestYears = dealSizeFactorRestYears;
         this.dealDuration = dealDuration;
+        this.maxApproximationError = maxApproximationError;
+    }
+
+    /**
+     * Ziel für die Beträge der Deals je Jahr.
+     */
+    private interface YearSink {
+        void add(int time, double value);
+    }
+
+    /**
+     * Die Beträge je Jahr für einen Simulationslauf, solange die Deals noch simuliert werden. Jeder Deal addiert
+     * direkt in das Array, statt für jedes Jahr eine neue Quantity abzulegen.
+     */
+    private static final class DealAccumulator implements YearSink {
+        private double[] values = new double[8];
+        private int simulatedUntil = -1;
+
+        @Override
+        public void add(int time, double value) {
+            if (time >= values.length) {
+                values = Arrays.copyOf(values, Math.max(time + 1, 2 * values.length));
+            }
+            values[time] += value;
+        }
+
+        private double get(int time) {
+            return time < values.length ? values[time] : 0.0;
+        }
+    }
+
+    /**
+     * Die Knoten der Anzahl der Deals je Jahr, gemeinsam für alle Zeitpunkte einer Instanz. Die ersten Einträge
+     * eines gelieferten Arrays ändern sich nicht mehr, deshalb kann jeder Zeitpunkt sein Array ohne Kopie behalten.
+     */
+    private static final class DealCountNodes {
+        private final TimeSeries dealCounts;
+        private final Model.Instance inst;
+        private RandomVariable[] nodes = new RandomVariable[8];
+        private int size;
+
+        private DealCountNodes(TimeSeries dealCounts, Model.Instance inst) {
+            this.dealCounts = dealCounts;
+            this.inst = inst;
+        }
+
+        private synchronized RandomVariable[] upTo(int time) {
+            while (size <= time) {
+                if (size >= nodes.length) {
+                    nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                }
+                nodes[size] = dealCounts.getFor(size).apply(inst);
+                size++;
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Simuliert alle Deals eines Jahres gemeinsam, wenn der Faktor für die Folgejahre im ganzen Simulationslauf
+     * gleich ist. Dann hängen die Beträge eines Deals nur von seinem Betrag und seiner Laufzeit ab: die Deals werden
+     * nach Laufzeit gruppiert, und je Gruppe wird die Summe der Beträge auf einmal bestimmt (bei festem Betrag exakt,
+     * sonst mit {@link CompoundSum}). Ist auch die Laufzeit im Simulationslauf fest, hängt der Aufwand nicht mehr
+     * von der Anzahl der Deals ab, sonst wird nur noch die Laufzeit je Deal gezogen.
+     */
+    private static final class DealAggregation {
+        private final boolean sizeConstant;
+        private final CompoundSum sizeSum;
+        private final boolean durationConstant;
+
+        private DealAggregation(
+                boolean sizeConstant, RandomVariable size, boolean durationConstant, double maxApproximationError) {
+            this.sizeConstant = sizeConstant;
+            this.sizeSum = sizeConstant ? null : CompoundSum.of(size, maxApproximationError);
+            this.durationConstant = durationConstant;
+        }
+
+        private void addDeals(
+                RandomSource r,
+                int time,
+                long count,
+                DoubleSupplier size,
+                DoubleSupplier factor,
+                DoubleSupplier duration,
+                YearSink sink) {
+            if (count <= 0) {
+                return;
+            }
+            double constantSize = sizeConstant ? size.getAsDouble() : 0.0;
+            double factorValue = factor.getAsDouble();
+            if (durationConstant) {
+                // alle Deals haben die gleiche Laufzeit, nur die Rundung unterscheidet sich
+                double years = duration.getAsDouble();
+                double floor = Math.floor(years);
+                long roundedUp = r.nextBinomial(count, years - floor);
+                addGroup(r, time, count - roundedUp, (long) floor, size, constantSize, factorValue, sink);
+                addGroup(r, time, roundedUp, (long) floor + 1, size, constantSize, factorValue, sink);
+            } else {
+                long[] countPerDuration = new long[8];
+                for (long deal = 0; deal < count; deal++) {
+                    int years = (int) Math.max(0, r.round(duration.getAsDouble()));
+                    if (years >= countPerDuration.length) {
+                        countPerDuration = Arrays.copyOf(
+                                countPerDuration, Math.max(years + 1, 2 * countPerDuration.length));
+                    }
+                    countPerDuration[years]++;
+                }
+                for (int years = 0; years < countPerDuration.length; years++) {
+                    addGroup(r, time, countPerDuration[years], years, size, constantSize, factorValue, sink);
+                }
+            }
+        }
+
+        private void addGroup(
+                RandomSource r,
+                int time,
+                long count,
+                long years,
+                DoubleSupplier size,
+                double constantSize,
+                double factor,
+                YearSink sink) {
+            if (count <= 0) {
+                return;
+            }
+            double sum;
+            if (sizeConstant) {
+                sum = count * constantSize;
+            } else if (sizeSum != null && sizeSum.canAggregate(count)) {
+                sum = sizeSum.sample(r, count);
+            } else {
+                sum = 0.0;
+                for (long deal = 0; deal < count; deal++) {
+                    sum += size.getAsDouble();
+                }
+            }
+            sink.add(time, sum);
+            double maintenance = sum * factor;
+            for (int i = 1; i <= years; i++) {
+                sink.add(time + i, maintenance);
+            }
+        }
     }
 
     private static final class DealsOverTimeVariable extends RandomVariable {
         private final int myTime;
         private final IntFunction<UniqueId> idFunction;
-        private final List<RandomVariable> dealCounts;
+        private final UniqueId accumulatorId;
+        private final DealCountNodes dealCountNodes;
+        private final RandomVariable[] dealCounts;
         private final RandomVariable dealSizeInitial;
         private final RandomVariable dealSizeFactorRestYears;
         private final RandomVariable dealDuration;
+        private final DealAggregation aggregation;
+        private final QUnit unit;
 
         public DealsOverTimeVariable(
                 int myTime,
                 IntFunction<UniqueId> idFunction,
-                List<RandomVariable> dealCounts,
+                UniqueId accumulatorId,
+                DealCountNodes dealCountNodes,
                 RandomVariable dealSizeInitial,
                 RandomVariable dealSizeFactorRestYears,
-                RandomVariable dealDuration) {
+                RandomVariable dealDuration,
+                DealAggregation aggregation) {
             this.myTime = myTime;
             this.idFunction = idFunction;
-            this.dealCounts = dealCounts;
+            this.accumulatorId = accumulatorId;
+            this.dealCountNodes = dealCountNodes;
+            this.dealCounts = dealCountNodes.upTo(myTime);
             this.dealSizeInitial = dealSizeInitial;
             this.dealSizeFactorRestYears = dealSizeFactorRestYears;
             this.dealDuration = dealDuration;
+            this.aggregation = aggregation;
+            this.unit = dealSizeInitial.getUnit().times(dealCounts[0].getUnit());
         }
 
         @Override
@@ -72,42 +246,47 @@ public class DealsOverTimeSeries extends TimeSeries {
         }
 
         private void fillValuesUntilMyself(RandomSource r, SimulationRun run) {
-            // Zeitreihe von Anfang an bis zu diesem Zeitpunkt vollständig simulieren
-            for (int time = 0; time <= myTime; time++) {
-                UniqueId id = idFunction.apply(time);
-                // wenn ein Wert für das Jahr vorliegt, dann wurde es bereits vollständig simuliert
-                if (run.hasPersistentValue(id)) {
-                    continue;
-                }
-                Quantity dealCount = dealCounts.get(time).observe(r, run);
-                long count = r.round(dealCount.getNumber());
-                for (int deal = 0; deal < count; deal++) {
-                    Quantity dealSize = dealSizeInitial.observe(r, run);
-                    Quantity factor = dealSizeFactorRestYears.observe(r, run);
-                    Quantity maintenance = dealSize.times(factor);
-                    long duration = r.round(dealDuration.observe(r, run).getNumber());
-                    addToYear(run, id, dealSize);
-                    for (int i = 1; i <= duration; i++) {
-                        addToYear(run, idFunction.apply(time + i), maintenance);
+            DealAccumulator acc;
+            if (run.hasPersistentObject(accumulatorId)) {
+                acc = (DealAccumulator) run.getPersistentObject(accumulatorId);
+            } else {
+                acc = new DealAccumulator();
+                run.persistObject(accumulatorId, acc);
+            }
+            // Zeitreihe von Anfang an bis zu diesem Zeitpunkt vollständig simulieren, bereits simulierte Jahre
+            // werden übersprungen
+            for (int time = acc.simulatedUntil + 1; time <= myTime; time++) {
+                long count = r.round(dealCounts[time].observe(r, run).getNumber());
+                if (aggregation != null) {
+                    aggregation.addDeals(
+                            r,
+                            time,
+                            count,
+                            () -> dealSizeInitial.observe(r, run).getNumber(),
+                            () -> dealSizeFactorRestYears.observe(r, run).getNumber(),
+                            () -> dealDuration.observe(r, run).getNumber(),
+                            acc);
+                } else {
+                    for (int deal = 0; deal < count; deal++) {
+                        double dealSize = dealSizeInitial.observe(r, run).getNumber();
+                        double factor = dealSizeFactorRestYears.observe(r, run).getNumber();
+                        double maintenance = dealSize * factor;
+                        long duration = r.round(dealDuration.observe(r, run).getNumber());
+                        acc.add(time, dealSize);
+                        for (int i = 1; i <= duration; i++) {
+                            acc.add(time + i, maintenance);
+                        }
                     }
                 }
                 // da alle Vorjahre schon simuliert wurden, ist jetzt auch dieses Jahr vollständig simuliert
-                run.persist(id, getForYear(run, id));
+                run.persist(idFunction.apply(time), Quantity.of(acc.get(time), this.unit));
+                acc.simulatedUntil = time;
             }
         }
 
-        private void addToYear(SimulationRun run, UniqueId id, Quantity toAdd) {
-            run.persistObject(id, getForYear(run, id).plus(toAdd));
-        }
-
-        private Quantity getForYear(SimulationRun run, UniqueId id) {
-            return run.hasPersistentObject(id) ?
-                    (Quantity) run.getPersistentObject(id) : Quantity.of(0, this.getUnit());
-        }
-
         @Override
         public QUnit getUnit() {
-            return dealSizeInitial.getUnit().times(dealCounts.get(0).getUnit());
+            return this.unit;
         }
 
         @Override
@@ -118,16 +297,80 @@ public class DealsOverTimeSeries extends TimeSeries {
 
     @Override
     public Function<Model.Instance, RandomVariable> getFor(int time) {
-        return (Model.Instance inst) -> new DealsOverTimeVariable(
-                time,
-                this::getId,
-                IntStream.rangeClosed(0, time)
-                        .mapToObj((int i) -> dealCounts.getFor(i).apply(inst))
-                        .collect(Collectors.toList()),
-                inst.get(dealSizeInitial),
-                inst.get(dealSizeFactorRestYears),
-                inst.get(dealDuration)
-        );
+        return (Model.Instance inst) -> inst.getTimeSeriesPoint(this, time, (Model.Instance i) -> {
+            // die Liste der Deal-Anzahlen wird vom vorigen Zeitpunkt übernommen und nur um diesen verlängert
+            DealCountNodes nodes = time == 0
+                    ? new DealCountNodes(dealCounts, i)
+                    : ((DealsOverTimeVariable) getFor(time - 1).apply(i)).dealCountNodes;
+            RandomVariable size = i.get(dealSizeInitial);
+            RandomVariable factor = i.get(dealSizeFactorRestYears);
+            RandomVariable duration = i.get(dealDuration);
+            return new DealsOverTimeVariable(
+                    time,
+                    this::getId,
+                    accumulatorId,
+                    nodes,
+                    size,
+                    factor,
+                    duration,
+                    TrajectoryInput.isConstantPerRun(factor)
+                            ? new DealAggregation(
+                                    TrajectoryInput.isConstantPerRun(size),
+                                    size,
+                                    TrajectoryInput.isConstantPerRun(duration),
+                                    maxApproximationError)
+                            : null);
+        });
+    }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        TrajectoryKernel counts = c.kernel(dealCounts);
+        TrajectoryInput sizeInitial = c.input(dealSizeInitial);
+        TrajectoryInput factorRestYears = c.input(dealSizeFactorRestYears);
+        TrajectoryInput duration = c.input(dealDuration);
+        double[] countValues = c.newBuffer();
+        DealAggregation aggregation = factorRestYears.isConstantPerRun()
+                ? new DealAggregation(
+                        sizeInitial.isConstantPerRun(),
+                        sizeInitial.getVariable(),
+                        duration.isConstantPerRun(),
+                        maxApproximationError)
+                : null;
+        return (TrajectoryContext ctx, double[] out) -> {
+            counts.fill(ctx, countValues);
+            Arrays.fill(out, 0.0);
+            RandomSource r = ctx.random();
+            YearSink sink = (int time, double value) -> {
+                if (time < out.length) {
+                    out[time] += value;
+                }
+            };
+            // jeder Deal schreibt direkt in die Jahre seiner Laufzeit
+            for (int time = 0; time < out.length; time++) {
+                long count = r.round(countValues[time]);
+                if (aggregation != null) {
+                    aggregation.addDeals(
+                            r,
+                            time,
+                            count,
+                            () -> sizeInitial.get(ctx),
+                            () -> factorRestYears.get(ctx),
+                            () -> duration.get(ctx),
+                            sink);
+                    continue;
+                }
+                for (int deal = 0; deal < count; deal++) {
+                    double dealSize = sizeInitial.get(ctx);
+                    double maintenance = dealSize * factorRestYears.get(ctx);
+                    long years = r.round(duration.get(ctx));
+                    out[time] += dealSize;
+                    for (int i = 1; i <= years && time + i < out.length; i++) {
+                        out[time + i] += maintenance;
+                    }
+                }
+            }
+        };
     }
 
     private UniqueId getId(int time) {
@@ -23,4 +23,16 @@ public class DelayedTimeSeries extends TimeSeries {
             return base.getFor(time - delay);
         }
     }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        TrajectoryKernel b = c.kernel(base);
+        double[] values = c.newBuffer();
+        return (TrajectoryContext ctx, double[] out) -> {
+            b.fill(ctx, values);
+            for (int t = 0; t < out.length; t++) {
+                out[t] = t < delay ? 0.0 : values[t - delay];
+            }
+        };
+    }
 }
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The dependencies between the variables and objects of a {@link Model.Instance}, as recorded while they were
+ * created. A node depends on another one when the definition of the first asked the instance for the second.
+ */
+final class DependencyGraph {
+
+    private final Map<Object, Set<Object>> dependencies;
+    private final Map<Object, Set<Object>> dependents = new HashMap<>();
+
+    DependencyGraph(final Map<Object, Set<Object>> dependencies) {
+        this.dependencies = dependencies;
+        for (final Entry<Object, Set<Object>> e : dependencies.entrySet()) {
+            for (final Object dependency : e.getValue()) {
+                this.dependents.computeIfAbsent(dependency, (final Object k) -> new HashSet<>()).add(e.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the nodes that the given node asked for directly.
+     */
+    public Set<Object> getDependencies(final Object node) {
+        return this.dependencies.getOrDefault(node, Collections.emptySet());
+    }
+
+    /**
+     * Returns true iff some other node asked for the given node.
+     */
+    public boolean isUsed(final Object node) {
+        return this.dependents.containsKey(node);
+    }
+
+    /**
+     * Returns the nodes that have to be created anew when the given variable changes, including the variable
+     * itself. These are all nodes that depend on it directly or transitively. Only nodes that have one value per
+     * sample can be reused with their old values, as given by the predicate. Other nodes, like objects that keep
+     * state for all their users, are created anew when an affected node uses them, and so all their users are
+     * affected, too.
+     */
+    public Set<Object> getAffectedBy(final VarId changed, final Predicate<Object> reusable) {
+        final Set<Object> affected = new LinkedHashSet<>();
+        final Deque<Object> todo = new ArrayDeque<>();
+        todo.add(changed);
+        while (!todo.isEmpty()) {
+            final Object cur = todo.removeFirst();
+            if (!affected.add(cur)) {
+                continue;
+            }
+            todo.addAll(this.dependents.getOrDefault(cur, Collections.emptySet()));
+            for (final Object dependency : this.getDependencies(cur)) {
+                if (!reusable.test(dependency)) {
+                    todo.add(dependency);
+                }
+            }
+        }
+        return affected;
+    }
+
+}
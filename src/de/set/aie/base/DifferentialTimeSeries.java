@@ -14,7 +14,7 @@ public class DifferentialTimeSeries extends TimeSeries {
 
     @Override
     public Function<Model.Instance, RandomVariable> getFor(int time) {
-        return (Model.Instance inst) -> {
+        return memoize(time, (Model.Instance inst) -> {
             if (time == 0) {
                 // zum Zeitpunkt 0 wird aktuell immer fest Steigung 0 zurückgegeben
                 return base.getFor(0).apply(inst).times(0);
@@ -23,6 +23,19 @@ public class DifferentialTimeSeries extends TimeSeries {
                 RandomVariable prev = base.getFor(time - 1).apply(inst);
                 return cur.minus(prev);
             }
+        });
+    }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        TrajectoryKernel b = c.kernel(base);
+        double[] values = c.newBuffer();
+        return (TrajectoryContext ctx, double[] out) -> {
+            b.fill(ctx, values);
+            out[0] = values[0] * 0;
+            for (int t = 1; t < out.length; t++) {
+                out[t] = values[t] - values[t - 1];
+            }
         };
     }
 }
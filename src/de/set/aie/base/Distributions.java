@@ -24,6 +24,11 @@ public class Distributions {
 
     static final double NORMAL_TAIL_FACTOR = 1.645;
 
+    /**
+     * Ab dieser Größe nutzt {@link #extrapolateFromSample} eine Tabelle der Verteilungsfunktion.
+     */
+    static final int BETA_BINOMIAL_TABLE_MIN_N = 1000;
+
     public enum StdDist {
         NORMAL {
             @Override
@@ -278,11 +283,16 @@ public class Distributions {
         assert sampleSize <= populationSize;
         assert positiveInSample <= sampleSize;
         assert positiveInSample >= 0;
-        return new BetaBinomialRandomVariable(
-                populationSize - sampleSize,
+        final int n = populationSize - sampleSize;
+        final BetaBinomialRandomVariable ret = new BetaBinomialRandomVariable(
+                n,
                 1 + positiveInSample,
                 1 + sampleSize - positiveInSample,
                 positiveInSample,
                 unit);
+        // die Parameter ändern sich nicht mehr, bei großen Grundgesamtheiten lohnt sich deshalb die Tabelle
+        return n >= BETA_BINOMIAL_TABLE_MIN_N && n <= BetaBinomialRandomVariable.MAX_TABLE_N
+            ? ret.withInverseCdfTable()
+            : ret;
     }
 }
@@ -15,7 +15,7 @@
  */
 package de.set.aie.base;
 
-public class EmpiricalRandomVariable extends RandomVariable {
+public class EmpiricalRandomVariable extends RandomVariable implements SummableDistribution {
 
     private final double[] values;
     private final QUnit unit;
@@ -32,6 +32,45 @@ public class EmpiricalRandomVariable extends RandomVariable {
         return Quantity.of(this.values[index], this.getUnit());
     }
 
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        for (int i = 0; i < batch.size(); i++) {
+            out[i] = this.values[r.nextInt(this.values.length)];
+        }
+    }
+
+    @Override
+    public double mean() {
+        double sum = 0.0;
+        for (final double v : this.values) {
+            sum += v;
+        }
+        return sum / this.values.length;
+    }
+
+    @Override
+    public double variance() {
+        return this.centralMoment(2);
+    }
+
+    @Override
+    public double standardizedThirdMomentBound() {
+        final double variance = this.variance();
+        return variance == 0.0 ? 0.0 : this.centralMoment(3) / (variance * Math.sqrt(variance));
+    }
+
+    /**
+     * Returns the central moment of the given order, with absolute deviations.
+     */
+    private double centralMoment(final int order) {
+        final double mean = this.mean();
+        double sum = 0.0;
+        for (final double v : this.values) {
+            sum += Math.pow(Math.abs(v - mean), order);
+        }
+        return sum / this.values.length;
+    }
+
     @Override
     public QUnit getUnit() {
         return this.unit;
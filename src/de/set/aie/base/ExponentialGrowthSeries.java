@@ -20,7 +20,19 @@ public class ExponentialGrowthSeries extends TimeSeries {
         if (time <= 0) {
             return (Model.Instance inst) -> inst.get(base);
         } else {
-            return (Model.Instance inst) -> getFor(time - 1).apply(inst).times(inst.get(growthRate));
+            return memoize(time, (Model.Instance inst) -> getFor(time - 1).apply(inst).times(inst.get(growthRate)));
         }
     }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        TrajectoryInput b = c.input(base);
+        TrajectoryInput g = c.input(growthRate);
+        return (TrajectoryContext ctx, double[] out) -> {
+            out[0] = b.get(ctx);
+            for (int t = 1; t < out.length; t++) {
+                out[t] = out[t - 1] * g.get(ctx);
+            }
+        };
+    }
 }
@@ -15,7 +15,10 @@
  */
 package de.set.aie.base;
 
-public class FixedRandomVariable extends RandomVariable {
+import java.util.Arrays;
+
+
+public class FixedRandomVariable extends RandomVariable implements SummableDistribution {
 
     private final Quantity q;
 
@@ -28,6 +31,47 @@ public class FixedRandomVariable extends RandomVariable {
         return this.q;
     }
 
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        Arrays.fill(out, 0, batch.size(), this.q.getNumber());
+    }
+
+    @Override
+    int compile(final ProgramBuilder b) {
+        final int target = b.newRegister(this.q.getUnit());
+        b.emit(new Instructions.Constant(this.q.getNumber(), target));
+        return target;
+    }
+
+    @Override
+    public RandomVariable bound(final double lowerBound, final double upperBound) {
+        if (lowerBound > upperBound) {
+            return super.bound(lowerBound, upperBound);
+        }
+        final double n = Math.min(Math.max(this.q.getNumber(), lowerBound), upperBound);
+        return n == this.q.getNumber() ? this : new FixedRandomVariable(Quantity.of(n, this.q.getUnit()));
+    }
+
+    @Override
+    public double mean() {
+        return this.q.getNumber();
+    }
+
+    @Override
+    public double variance() {
+        return 0.0;
+    }
+
+    @Override
+    public double standardizedThirdMomentBound() {
+        return 0.0;
+    }
+
+    @Override
+    public boolean isSumNormal() {
+        return true;
+    }
+
     @Override
     public QUnit getUnit() {
         return this.q.getUnit();
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * Gamma distributed numbers with scale 1 for a fixed shape, with the method of Marsaglia and Tsang
+ * ("A simple method for generating gamma variables", ACM TOMS 26, 2000). The constants are computed once, so
+ * that sampling allocates nothing.
+ */
+final class GammaSampler {
+
+    private final double shape;
+    private final double d;
+    private final double c;
+
+    GammaSampler(final double shape) {
+        assert shape > 0.0;
+        this.shape = shape;
+        // for shape < 1, a number for shape + 1 is drawn and scaled with U^(1/shape)
+        final double boostedShape = shape < 1.0 ? shape + 1.0 : shape;
+        this.d = boostedShape - 1.0 / 3.0;
+        this.c = 1.0 / Math.sqrt(9.0 * this.d);
+    }
+
+    public double sample(final RandomSource r) {
+        final double x = this.sampleAtLeastOne(r);
+        if (this.shape < 1.0) {
+            return x * Math.pow(1.0 - r.nextDouble(), 1.0 / this.shape);
+        }
+        return x;
+    }
+
+    private double sampleAtLeastOne(final RandomSource r) {
+        while (true) {
+            final double x = r.nextNormal();
+            double v = 1.0 + this.c * x;
+            if (v <= 0.0) {
+                continue;
+            }
+            v = v * v * v;
+            final double u = r.nextDouble();
+            final double x2 = x * x;
+            if (u < 1.0 - 0.0331 * x2 * x2) {
+                return this.d * v;
+            }
+            if (Math.log(u) < 0.5 * x2 + this.d * (1.0 - v + Math.log(v))) {
+                return this.d * v;
+            }
+        }
+    }
+
+}
@@ -15,29 +15,11 @@
  */
 package de.set.aie.base;
 
-public class RandomVariableSum extends RandomVariable {
-
-    private final RandomVariable r1;
-    private final RandomVariable r2;
-
-    public RandomVariableSum(final RandomVariable r1, final RandomVariable r2) {
-        this.r1 = r1;
-        this.r2 = r2;
-    }
-
-    @Override
-    public Quantity observe(final RandomSource r, final SimulationRun run) {
-        return this.r1.observe(r, run).plus(this.r2.observe(r, run));
-    }
-
-    @Override
-    public QUnit getUnit() {
-        return this.r1.getUnit();
-    }
+/**
+ * A single step of a {@link CompiledProgram}. Reads and writes whole columns of the register file.
+ */
+interface Instruction {
 
-    @Override
-    public VarKind getType() {
-        return VarKind.C;
-    }
+    public abstract void execute(RandomSource r, SimulationBatch batch, double[][] registers);
 
 }
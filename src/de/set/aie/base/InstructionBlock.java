@@ -0,0 +1,47 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * A sequence of instructions that computes a single register. Used for parts of a program that have to be
+ * executed repeatedly, e.g. when resampling a bounded variable.
+ */
+final class InstructionBlock implements Instruction {
+
+    private final Instruction[] instructions;
+    private final int result;
+
+    InstructionBlock(final Instruction[] instructions, final int result) {
+        this.instructions = instructions;
+        this.result = result;
+    }
+
+    @Override
+    public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+        for (final Instruction i : this.instructions) {
+            i.execute(r, batch, registers);
+        }
+    }
+
+    Instruction[] getInstructions() {
+        return this.instructions;
+    }
+
+    int getResult() {
+        return this.result;
+    }
+
+}
@@ -0,0 +1,426 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.Arrays;
+
+/**
+ * The instructions for {@link CompiledProgram}s.
+ */
+final class Instructions {
+
+    private Instructions() {
+    }
+
+    /**
+     * Fallback for variables without a special instruction: uses the variable's batch implementation.
+     */
+    static final class Observe implements Instruction {
+        private final RandomVariable variable;
+        private final int target;
+
+        Observe(final RandomVariable variable, final int target) {
+            this.variable = variable;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            this.variable.observeBatch(r, batch, registers[this.target]);
+        }
+    }
+
+    /**
+     * Samples a continuous distribution at the points of a stratified design, see {@link SamplingMode}.
+     */
+    static final class Quantile implements Instruction {
+        private final ContinuousDistribution distribution;
+        private final int dimension;
+        private final int target;
+
+        Quantile(final ContinuousDistribution distribution, final int dimension, final int target) {
+            this.distribution = distribution;
+            this.dimension = dimension;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            final double[] t = registers[this.target];
+            final int size = batch.size();
+            batch.getPoints().fill(this.dimension, batch.getFirstRow(), t, size);
+            for (int i = 0; i < size; i++) {
+                t[i] = this.distribution.quantile(t[i]);
+            }
+        }
+    }
+
+    static final class Constant implements Instruction {
+        private final double value;
+        private final int target;
+
+        Constant(final double value, final int target) {
+            this.value = value;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            Arrays.fill(registers[this.target], 0, batch.size(), this.value);
+        }
+
+        double getValue() {
+            return this.value;
+        }
+
+        int getTarget() {
+            return this.target;
+        }
+    }
+
+    enum Operator {
+        PLUS, MINUS, TIMES, DIV, MAX, LESS_THAN
+    }
+
+    /**
+     * Combines any number of registers with an operator, see {@link RandomVariableNarySum}.
+     */
+    static final class Accumulate implements Instruction {
+        private final Operator operator;
+        private final int[] inputs;
+        private final int target;
+
+        Accumulate(final Operator operator, final int[] inputs, final int target) {
+            assert operator == Operator.PLUS || operator == Operator.TIMES;
+            this.operator = operator;
+            this.inputs = inputs;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            final double[] t = registers[this.target];
+            final int size = batch.size();
+            System.arraycopy(registers[this.inputs[0]], 0, t, 0, size);
+            for (int k = 1; k < this.inputs.length; k++) {
+                final double[] in = registers[this.inputs[k]];
+                if (this.operator == Operator.PLUS) {
+                    for (int i = 0; i < size; i++) {
+                        t[i] += in[i];
+                    }
+                } else {
+                    for (int i = 0; i < size; i++) {
+                        t[i] *= in[i];
+                    }
+                }
+            }
+        }
+    }
+
+    static final class Binary implements Instruction {
+        private final Operator operator;
+        private final int in1;
+        private final int in2;
+        private final int target;
+
+        Binary(final Operator operator, final int in1, final int in2, final int target) {
+            this.operator = operator;
+            this.in1 = in1;
+            this.in2 = in2;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            final double[] a = registers[this.in1];
+            final double[] b = registers[this.in2];
+            final double[] t = registers[this.target];
+            final int size = batch.size();
+            switch (this.operator) {
+            case PLUS:
+                for (int i = 0; i < size; i++) {
+                    t[i] = a[i] + b[i];
+                }
+                break;
+            case MINUS:
+                for (int i = 0; i < size; i++) {
+                    t[i] = a[i] - b[i];
+                }
+                break;
+            case TIMES:
+                for (int i = 0; i < size; i++) {
+                    t[i] = a[i] * b[i];
+                }
+                break;
+            case DIV:
+                for (int i = 0; i < size; i++) {
+                    t[i] = a[i] / b[i];
+                }
+                break;
+            case MAX:
+                for (int i = 0; i < size; i++) {
+                    t[i] = Math.max(a[i], b[i]);
+                }
+                break;
+            case LESS_THAN:
+                for (int i = 0; i < size; i++) {
+                    t[i] = a[i] < b[i] ? 1.0 : 0.0;
+                }
+                break;
+            default:
+                throw new AssertionError("unknown operator " + this.operator);
+            }
+        }
+
+        Operator getOperator() {
+            return this.operator;
+        }
+
+        int getIn1() {
+            return this.in1;
+        }
+
+        int getIn2() {
+            return this.in2;
+        }
+
+        int getTarget() {
+            return this.target;
+        }
+    }
+
+    /**
+     * Stores the register as persistent column in the batch. If the variable has already been persisted in the
+     * batch (e.g. by a variable that is evaluated by its own batch implementation), that value is used instead.
+     */
+    static final class Persist implements Instruction {
+        private final VarId name;
+        private final int register;
+        private final QUnit unit;
+
+        Persist(final VarId name, final int register, final QUnit unit) {
+            this.name = name;
+            this.register = register;
+            this.unit = unit;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            final double[] values = registers[this.register];
+            final double[] column = batch.getPersistentColumn(this.name);
+            if (column == null) {
+                final double[] newColumn = Arrays.copyOf(values, batch.size());
+                batch.persist(this.name, newColumn, this.unit);
+                // persisting can replace values that were already observed sample by sample
+                System.arraycopy(newColumn, 0, values, 0, batch.size());
+            } else {
+                System.arraycopy(column, 0, values, 0, batch.size());
+            }
+        }
+    }
+
+    /**
+     * Selects between two registers with the probability from a third, see {@link ConditionalDistribution}.
+     */
+    static final class Select implements Instruction {
+        private final int prop;
+        private final int v1;
+        private final int v2;
+        private final int target;
+
+        Select(final int prop, final int v1, final int v2, final int target) {
+            this.prop = prop;
+            this.v1 = v1;
+            this.v2 = v2;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            final double[] p = registers[this.prop];
+            final double[] a = registers[this.v1];
+            final double[] b = registers[this.v2];
+            final double[] t = registers[this.target];
+            for (int i = 0; i < batch.size(); i++) {
+                t[i] = r.nextDouble() < p[i] ? a[i] : b[i];
+            }
+        }
+    }
+
+    /**
+     * Picks one of several registers based on an index register, see {@link UncertainDistributionVariable}.
+     */
+    static final class Pick implements Instruction {
+        private final int index;
+        private final int[] choices;
+        private final int target;
+
+        Pick(final int index, final int[] choices, final int target) {
+            this.index = index;
+            this.choices = choices;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            final double[] idx = registers[this.index];
+            final double[] t = registers[this.target];
+            for (int i = 0; i < batch.size(); i++) {
+                t[i] = registers[this.choices[(int) Math.round(idx[i])]][i];
+            }
+        }
+    }
+
+    /**
+     * Resamples values outside of the range, see {@link RangeBoundRandomVariable}.
+     */
+    static final class Bound implements Instruction {
+        private final InstructionBlock base;
+        private final double lower;
+        private final double upper;
+        private final int target;
+
+        Bound(final InstructionBlock base, final double lower, final double upper, final int target) {
+            this.base = base;
+            this.lower = lower;
+            this.upper = upper;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            final int size = batch.size();
+            final double[] t = registers[this.target];
+            final double[] sampled = registers[this.base.getResult()];
+            this.base.execute(r, batch, registers);
+            System.arraycopy(sampled, 0, t, 0, size);
+            int outOfRange = this.countOutOfRange(t, size);
+            for (int count = 0; count <= 10 && outOfRange > 0; count++) {
+                this.base.execute(r, batch, registers);
+                for (int i = 0; i < size; i++) {
+                    if (this.isOutOfRange(t[i]) && !this.isOutOfRange(sampled[i])) {
+                        t[i] = sampled[i];
+                        outOfRange--;
+                    }
+                }
+            }
+            for (int i = 0; i < size && outOfRange > 0; i++) {
+                t[i] = Math.min(Math.max(t[i], this.lower), this.upper);
+            }
+        }
+
+        private int countOutOfRange(final double[] values, final int size) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (this.isOutOfRange(values[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private boolean isOutOfRange(final double value) {
+            return value < this.lower || value > this.upper;
+        }
+
+        InstructionBlock getBase() {
+            return this.base;
+        }
+
+        Bound withBase(final InstructionBlock newBase) {
+            return new Bound(newBase, this.lower, this.upper, this.target);
+        }
+    }
+
+    /**
+     * Sums up a varying number of values per row, see {@link RandomVariableSumOfN}. Rows with a count that can be
+     * aggregated (see {@link CompoundSum}) are sampled directly, the block is only executed for the other rows.
+     */
+    static final class SumOfN implements Instruction {
+        private final int count;
+        private final InstructionBlock toSum;
+        private final CompoundSum compound;
+        private final int target;
+
+        SumOfN(final int count, final InstructionBlock toSum, final CompoundSum compound, final int target) {
+            this.count = count;
+            this.toSum = toSum;
+            this.compound = compound;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            final int size = batch.size();
+            final double[] c = registers[this.count];
+            final double[] t = registers[this.target];
+            final double[] summand = registers[this.toSum.getResult()];
+            long maxCount = 0;
+            for (int i = 0; i < size; i++) {
+                final long n = Math.round(c[i]);
+                if (this.compound != null && this.compound.canAggregate(n)) {
+                    t[i] = this.compound.sample(r, n);
+                } else {
+                    maxCount = Math.max(maxCount, n);
+                    t[i] = 0.0;
+                }
+            }
+            for (long round = 0; round < maxCount; round++) {
+                this.toSum.execute(r, batch, registers);
+                for (int i = 0; i < size; i++) {
+                    final long n = Math.round(c[i]);
+                    if (round < n && (this.compound == null || !this.compound.canAggregate(n))) {
+                        t[i] += summand[i];
+                    }
+                }
+            }
+        }
+
+        InstructionBlock getToSum() {
+            return this.toSum;
+        }
+
+        SumOfN withToSum(final InstructionBlock newToSum) {
+            return new SumOfN(this.count, newToSum, this.compound, this.target);
+        }
+    }
+
+    /**
+     * Counts successes per row, see {@link BinomRandomVariable}.
+     */
+    static final class Binom implements Instruction {
+        private final int count;
+        private final int probability;
+        private final int target;
+
+        Binom(final int count, final int probability, final int target) {
+            this.count = count;
+            this.probability = probability;
+            this.target = target;
+        }
+
+        @Override
+        public void execute(final RandomSource r, final SimulationBatch batch, final double[][] registers) {
+            final double[] c = registers[this.count];
+            final double[] p = registers[this.probability];
+            final double[] t = registers[this.target];
+            for (int row = 0; row < batch.size(); row++) {
+                t[row] = r.nextBinomial(Math.round(c[row]), p[row]);
+            }
+        }
+    }
+
+}
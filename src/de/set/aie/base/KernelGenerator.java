@@ -0,0 +1,430 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.set.aie.base.ClassFileWriter.Code;
+import de.set.aie.base.ClassFileWriter.Opcodes;
+
+/**
+ * Generates a JVM class for the instructions of a {@link CompiledProgram}. Runs of arithmetic instructions
+ * become a single loop with straight-line code for each row, that the JIT can inline and vectorize. All other
+ * instructions (e.g. for custom random variables) are called from the generated code as before.
+ *
+ * <p>The classes are defined as hidden classes when running on Java 15 or newer, and with
+ * {@code Lookup.defineClass} on Java 9 to 14. On Java 8 code generation is not available and the interpreted
+ * instructions are used. Classes are cached by the structure of the instructions, so that programs that differ
+ * only in constants (like the reduced instances in the value of information analysis) share their class.
+ */
+final class KernelGenerator {
+
+    private static final String INSTRUCTION = "de/set/aie/base/Instruction";
+    private static final String EXECUTE = "execute";
+    private static final String EXECUTE_DESC =
+            "(Lde/set/aie/base/RandomSource;Lde/set/aie/base/SimulationBatch;[[D)V";
+    private static final String FALLBACKS = "fallbacks";
+    private static final String FALLBACKS_DESC = "[Lde/set/aie/base/Instruction;";
+    private static final String CONSTANTS = "constants";
+    private static final String CONSTANTS_DESC = "[D";
+
+    private static final int SIZE_LOCAL = 4;
+    private static final int ROW_LOCAL = 5;
+    private static final int FIRST_FREE_LOCAL = 6;
+    private static final int MAX_STACK = 8;
+
+    /**
+     * Upper bound for the instructions in a single loop, keeps the number of local variables small.
+     */
+    private static final int MAX_SEGMENT_LENGTH = 32;
+
+    /**
+     * A new method is started when a method gets larger, so that all methods stay below the size limit for
+     * JIT compilation (8000 bytes).
+     */
+    private static final int MAX_METHOD_SIZE = 4000;
+
+    private static final Definer DEFINER = Definer.create();
+    private static final Map<String, Constructor<?>> GENERATED = new ConcurrentHashMap<>();
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private KernelGenerator() {
+    }
+
+    /**
+     * Defines classes from bytecode in this package.
+     */
+    private abstract static class Definer {
+
+        public abstract Class<?> define(byte[] bytecode) throws ReflectiveOperationException;
+
+        static Definer create() {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                final Class<?> optionType = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+                final Object noOptions = Array.newInstance(optionType, 0);
+                final Method defineHidden = MethodHandles.Lookup.class.getMethod(
+                        "defineHiddenClass", byte[].class, boolean.class, noOptions.getClass());
+                return new Definer() {
+                    @Override
+                    public Class<?> define(final byte[] bytecode) throws ReflectiveOperationException {
+                        final Object l = defineHidden.invoke(lookup, bytecode, true, noOptions);
+                        return ((MethodHandles.Lookup) l).lookupClass();
+                    }
+                };
+            } catch (final ClassNotFoundException | NoSuchMethodException e) {
+                // no hidden classes before Java 15
+            }
+            try {
+                final Method defineClass = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+                return new Definer() {
+                    @Override
+                    public Class<?> define(final byte[] bytecode) throws ReflectiveOperationException {
+                        return (Class<?>) defineClass.invoke(lookup, bytecode);
+                    }
+                };
+            } catch (final NoSuchMethodException e) {
+                // Java 8
+                return null;
+            }
+        }
+    }
+
+    static boolean isAvailable() {
+        return DEFINER != null;
+    }
+
+    /**
+     * Returns instructions that do the same as the given ones, using generated code where possible.
+     */
+    static Instruction[] generate(final Instruction[] instructions) {
+        if (!isAvailable()) {
+            return instructions;
+        }
+        final Instruction[] rewritten = new Instruction[instructions.length];
+        boolean hasArithmetic = false;
+        for (int i = 0; i < instructions.length; i++) {
+            rewritten[i] = generateBlocks(instructions[i]);
+            hasArithmetic |= isArithmetic(rewritten[i]);
+        }
+        if (!hasArithmetic) {
+            return rewritten;
+        }
+        final Shape shape = new Shape(rewritten);
+        final Constructor<?> constructor = GENERATED.computeIfAbsent(shape.key, (String k) -> define(shape));
+        try {
+            return new Instruction[] {(Instruction) constructor.newInstance(shape.fallbacks(), shape.constants())};
+        } catch (final InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("could not instantiate generated code", e);
+        }
+    }
+
+    private static Instruction generateBlocks(final Instruction i) {
+        if (i instanceof Instructions.Bound) {
+            final Instructions.Bound b = (Instructions.Bound) i;
+            return b.withBase(generateBlock(b.getBase()));
+        } else if (i instanceof Instructions.SumOfN) {
+            final Instructions.SumOfN s = (Instructions.SumOfN) i;
+            return s.withToSum(generateBlock(s.getToSum()));
+        } else {
+            return i;
+        }
+    }
+
+    private static InstructionBlock generateBlock(final InstructionBlock block) {
+        return new InstructionBlock(generate(block.getInstructions()), block.getResult());
+    }
+
+    private static boolean isArithmetic(final Instruction i) {
+        return i instanceof Instructions.Binary || i instanceof Instructions.Constant;
+    }
+
+    /**
+     * The structure of a list of instructions: runs of arithmetic instructions ("segments") and other
+     * instructions, that are called from the generated code.
+     */
+    private static final class Shape {
+        private final List<Object> items = new ArrayList<>();
+        private final List<Instruction> fallbacks = new ArrayList<>();
+        private final List<Double> constants = new ArrayList<>();
+        private final String key;
+
+        Shape(final Instruction[] instructions) {
+            final StringBuilder k = new StringBuilder();
+            List<Instruction> segment = null;
+            for (final Instruction i : instructions) {
+                if (isArithmetic(i)) {
+                    if (segment == null || segment.size() >= MAX_SEGMENT_LENGTH) {
+                        segment = new ArrayList<>();
+                        this.items.add(segment);
+                        k.append('|');
+                    }
+                    segment.add(i);
+                    if (i instanceof Instructions.Binary) {
+                        final Instructions.Binary b = (Instructions.Binary) i;
+                        k.append(b.getOperator().ordinal()).append(',').append(b.getIn1()).append(',')
+                            .append(b.getIn2()).append(',').append(b.getTarget()).append(';');
+                    } else {
+                        final Instructions.Constant c = (Instructions.Constant) i;
+                        this.constants.add(c.getValue());
+                        k.append('C').append(c.getTarget()).append(';');
+                    }
+                } else {
+                    segment = null;
+                    this.items.add(this.fallbacks.size());
+                    this.fallbacks.add(i);
+                    k.append("|F");
+                }
+            }
+            this.key = k.toString();
+        }
+
+        Instruction[] fallbacks() {
+            return this.fallbacks.toArray(new Instruction[this.fallbacks.size()]);
+        }
+
+        double[] constants() {
+            final double[] ret = new double[this.constants.size()];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = this.constants.get(i);
+            }
+            return ret;
+        }
+    }
+
+    private static Constructor<?> define(final Shape shape) {
+        final String name = "de/set/aie/base/GeneratedKernel" + COUNTER.incrementAndGet();
+        final ClassFileWriter w = new ClassFileWriter();
+        w.addField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, FALLBACKS, FALLBACKS_DESC);
+        w.addField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, CONSTANTS, CONSTANTS_DESC);
+        writeConstructor(w, name);
+
+        final List<String> parts = new ArrayList<>();
+        Code code = null;
+        int maxLocals = FIRST_FREE_LOCAL;
+        int constantIndex = 0;
+        for (final Object item : shape.items) {
+            if (code == null) {
+                code = new Code();
+                code.op(Opcodes.ALOAD).u1(2);
+                code.op(Opcodes.INVOKEVIRTUAL).u2(w.methodRef("de/set/aie/base/SimulationBatch", "size", "()I"));
+                code.op(Opcodes.ISTORE).u1(SIZE_LOCAL);
+            }
+            if (item instanceof Integer) {
+                writeFallbackCall(w, name, code, (Integer) item);
+            } else {
+                @SuppressWarnings("unchecked")
+                final List<Instruction> segment = (List<Instruction>) item;
+                maxLocals = Math.max(maxLocals, writeSegment(w, name, code, segment, constantIndex));
+                for (final Instruction i : segment) {
+                    if (i instanceof Instructions.Constant) {
+                        constantIndex++;
+                    }
+                }
+            }
+            if (code.position() > MAX_METHOD_SIZE) {
+                parts.add(finishPart(w, code, parts.size(), maxLocals));
+                code = null;
+                maxLocals = FIRST_FREE_LOCAL;
+            }
+        }
+        if (code != null) {
+            parts.add(finishPart(w, code, parts.size(), maxLocals));
+        }
+
+        final Code execute = new Code();
+        for (final String part : parts) {
+            execute.op(Opcodes.ALOAD).u1(0).op(Opcodes.ALOAD).u1(1).op(Opcodes.ALOAD).u1(2).op(Opcodes.ALOAD).u1(3);
+            execute.op(Opcodes.INVOKESPECIAL).u2(w.methodRef(name, part, EXECUTE_DESC));
+        }
+        execute.op(Opcodes.RETURN);
+        w.addMethod(Opcodes.ACC_PUBLIC, EXECUTE, EXECUTE_DESC, execute, 4, 4);
+
+        final byte[] bytecode = w.toByteArray(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, name, "java/lang/Object", INSTRUCTION);
+        try {
+            return DEFINER.define(bytecode).getDeclaredConstructor(Instruction[].class, double[].class);
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("could not define generated code", e);
+        }
+    }
+
+    private static void writeConstructor(final ClassFileWriter w, final String name) {
+        final Code c = new Code();
+        c.op(Opcodes.ALOAD).u1(0);
+        c.op(Opcodes.INVOKESPECIAL).u2(w.methodRef("java/lang/Object", "<init>", "()V"));
+        c.op(Opcodes.ALOAD).u1(0).op(Opcodes.ALOAD).u1(1);
+        c.op(Opcodes.PUTFIELD).u2(w.fieldRef(name, FALLBACKS, FALLBACKS_DESC));
+        c.op(Opcodes.ALOAD).u1(0).op(Opcodes.ALOAD).u1(2);
+        c.op(Opcodes.PUTFIELD).u2(w.fieldRef(name, CONSTANTS, CONSTANTS_DESC));
+        c.op(Opcodes.RETURN);
+        w.addMethod(Opcodes.ACC_PUBLIC, "<init>", "(" + FALLBACKS_DESC + CONSTANTS_DESC + ")V", c, 2, 3);
+    }
+
+    private static String finishPart(final ClassFileWriter w, final Code code, final int index, final int maxLocals) {
+        final String partName = "part" + index;
+        code.op(Opcodes.RETURN);
+        w.addMethod(Opcodes.ACC_PRIVATE, partName, EXECUTE_DESC, code, MAX_STACK, maxLocals);
+        return partName;
+    }
+
+    private static void writeFallbackCall(
+            final ClassFileWriter w, final String name, final Code code, final int index) {
+        code.op(Opcodes.ALOAD).u1(0);
+        code.op(Opcodes.GETFIELD).u2(w.fieldRef(name, FALLBACKS, FALLBACKS_DESC));
+        code.pushInt(w, index);
+        code.op(Opcodes.AALOAD);
+        code.op(Opcodes.ALOAD).u1(1).op(Opcodes.ALOAD).u1(2).op(Opcodes.ALOAD).u1(3);
+        code.op(Opcodes.INVOKEINTERFACE).u2(w.interfaceMethodRef(INSTRUCTION, EXECUTE, EXECUTE_DESC)).u1(4).u1(0);
+    }
+
+    /**
+     * Writes a loop over all rows that executes the instructions of the segment one after another for each row.
+     * Intermediate results are kept in local variables and also stored in their registers.
+     * Returns the number of local variables needed.
+     */
+    private static int writeSegment(
+            final ClassFileWriter w, final String name, final Code code,
+            final List<Instruction> segment, final int firstConstant) {
+        final Map<Integer, Integer> arrayLocals = new HashMap<>();
+        final Map<Integer, Integer> valueLocals = new HashMap<>();
+        int nextLocal = FIRST_FREE_LOCAL;
+
+        // load the needed registers and constants before the loop
+        final List<Integer> defined = new ArrayList<>();
+        for (final Instruction i : segment) {
+            if (i instanceof Instructions.Binary) {
+                final Instructions.Binary b = (Instructions.Binary) i;
+                for (final int in : new int[] {b.getIn1(), b.getIn2()}) {
+                    if (!defined.contains(in) && !arrayLocals.containsKey(in)) {
+                        nextLocal = loadRegister(w, code, in, arrayLocals, nextLocal);
+                    }
+                }
+                nextLocal = loadRegister(w, code, b.getTarget(), arrayLocals, nextLocal);
+                defined.add(b.getTarget());
+            } else {
+                nextLocal = loadRegister(w, code, ((Instructions.Constant) i).getTarget(), arrayLocals, nextLocal);
+                defined.add(((Instructions.Constant) i).getTarget());
+            }
+        }
+        int constantIndex = firstConstant;
+        for (final int target : defined) {
+            valueLocals.put(target, nextLocal);
+            nextLocal += 2;
+        }
+        for (final Instruction i : segment) {
+            if (i instanceof Instructions.Constant) {
+                code.op(Opcodes.ALOAD).u1(0);
+                code.op(Opcodes.GETFIELD).u2(w.fieldRef(name, CONSTANTS, CONSTANTS_DESC));
+                code.pushInt(w, constantIndex++);
+                code.op(Opcodes.DALOAD);
+                code.op(Opcodes.DSTORE).u1(valueLocals.get(((Instructions.Constant) i).getTarget()));
+            }
+        }
+
+        // for (int row = 0; row < size; row++)
+        code.op(Opcodes.ICONST_0).op(Opcodes.ISTORE).u1(ROW_LOCAL);
+        final int loopStart = code.position();
+        code.op(Opcodes.ILOAD).u1(ROW_LOCAL).op(Opcodes.ILOAD).u1(SIZE_LOCAL);
+        final int exit = code.jumpForward(Opcodes.IF_ICMPGE);
+        final List<Integer> computed = new ArrayList<>();
+        for (final Instruction i : segment) {
+            final int target;
+            if (i instanceof Instructions.Binary) {
+                final Instructions.Binary b = (Instructions.Binary) i;
+                target = b.getTarget();
+                loadValue(code, b.getIn1(), computed, arrayLocals, valueLocals);
+                loadValue(code, b.getIn2(), computed, arrayLocals, valueLocals);
+                writeOperator(w, code, b.getOperator());
+                code.op(Opcodes.DSTORE).u1(valueLocals.get(target));
+            } else {
+                target = ((Instructions.Constant) i).getTarget();
+            }
+            computed.add(target);
+            code.op(Opcodes.ALOAD).u1(arrayLocals.get(target)).op(Opcodes.ILOAD).u1(ROW_LOCAL);
+            code.op(Opcodes.DLOAD).u1(valueLocals.get(target)).op(Opcodes.DASTORE);
+        }
+        code.op(Opcodes.IINC).u1(ROW_LOCAL).u1(1);
+        code.jumpBack(Opcodes.GOTO, loopStart);
+        code.bindHere(exit);
+        return nextLocal;
+    }
+
+    private static int loadRegister(
+            final ClassFileWriter w, final Code code, final int register,
+            final Map<Integer, Integer> arrayLocals, final int nextLocal) {
+        code.op(Opcodes.ALOAD).u1(3);
+        code.pushInt(w, register);
+        code.op(Opcodes.AALOAD);
+        code.op(Opcodes.ASTORE).u1(nextLocal);
+        arrayLocals.put(register, nextLocal);
+        return nextLocal + 1;
+    }
+
+    private static void loadValue(
+            final Code code, final int register, final List<Integer> computed,
+            final Map<Integer, Integer> arrayLocals, final Map<Integer, Integer> valueLocals) {
+        if (computed.contains(register)) {
+            code.op(Opcodes.DLOAD).u1(valueLocals.get(register));
+        } else {
+            code.op(Opcodes.ALOAD).u1(arrayLocals.get(register)).op(Opcodes.ILOAD).u1(ROW_LOCAL);
+            code.op(Opcodes.DALOAD);
+        }
+    }
+
+    private static void writeOperator(final ClassFileWriter w, final Code code, final Instructions.Operator op) {
+        switch (op) {
+        case PLUS:
+            code.op(Opcodes.DADD);
+            break;
+        case MINUS:
+            code.op(Opcodes.DSUB);
+            break;
+        case TIMES:
+            code.op(Opcodes.DMUL);
+            break;
+        case DIV:
+            code.op(Opcodes.DDIV);
+            break;
+        case MAX:
+            code.op(Opcodes.INVOKESTATIC).u2(w.methodRef("java/lang/Math", "max", "(DD)D"));
+            break;
+        case LESS_THAN:
+            // a < b ? 1.0 : 0.0 (dcmpg yields 1 for NaN, so NaN gives 0.0 like in Java)
+            code.op(Opcodes.DCMPG);
+            final int notLess = code.jumpForward(Opcodes.IFGE);
+            code.op(Opcodes.DCONST_1);
+            final int end = code.jumpForward(Opcodes.GOTO);
+            code.bindHere(notLess);
+            code.op(Opcodes.DCONST_0);
+            code.bindHere(end);
+            break;
+        default:
+            throw new AssertionError("unknown operator " + op);
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * Latin hypercube design, see {@link SamplingMode#LATIN_HYPERCUBE}. The points are created up front, one random
+ * permutation of the strata per dimension.
+ */
+final class LatinHypercubePoints extends UniformPoints {
+
+    private final double[][] points;
+
+    LatinHypercubePoints(final long seed, final int dimensions, final int count) {
+        this.points = new double[dimensions][];
+        final int[] strata = new int[count];
+        for (int d = 0; d < dimensions; d++) {
+            // negative stream indices, so that the streams differ from those of the sample blocks
+            final RandomSource r = RandomSource.forStream(seed, -1L - d);
+            for (int i = 0; i < count; i++) {
+                strata[i] = i;
+            }
+            for (int i = count - 1; i > 0; i--) {
+                final int j = r.nextInt(i + 1);
+                final int tmp = strata[i];
+                strata[i] = strata[j];
+                strata[j] = tmp;
+            }
+            final double[] p = new double[count];
+            for (int i = 0; i < count; i++) {
+                p[i] = belowOne((strata[i] + openUnit(r)) / count);
+            }
+            this.points[d] = p;
+        }
+    }
+
+    @Override
+    void fill(final int dimension, final int firstRow, final double[] out, final int size) {
+        final double[] p = this.points[dimension];
+        for (int i = 0; i < size; i++) {
+            final int row = firstRow + i;
+            // rows beyond the sample count only fill up the last block and are never used
+            out[i] = row < p.length ? p[row] : 0.5;
+        }
+    }
+
+}
@@ -16,6 +16,17 @@ public class LinearGrowthSeries extends TimeSeries {
 
     @Override
     public Function<Model.Instance, RandomVariable> getFor(int time) {
-        return (Model.Instance inst) -> inst.get(base).plus(inst.get(growth).times(time));
+        return memoize(time, (Model.Instance inst) -> inst.get(base).plus(inst.get(growth).times(time)));
+    }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        TrajectoryInput b = c.input(base);
+        TrajectoryInput g = c.input(growth);
+        return (TrajectoryContext ctx, double[] out) -> {
+            for (int t = 0; t < out.length; t++) {
+                out[t] = b.get(ctx) + g.get(ctx) * t;
+            }
+        };
     }
 }
@@ -15,7 +15,7 @@
  */
 package de.set.aie.base;
 
-public class LogNormalRandomVariable extends RandomVariable {
+public class LogNormalRandomVariable extends RandomVariable implements ContinuousDistribution, SummableDistribution {
 
     private final double normalMean;
     private final double normalSd;
@@ -29,7 +29,78 @@ public class LogNormalRandomVariable extends RandomVariable {
 
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
-        return Quantity.of(Math.exp(r.nextGaussian() * this.normalSd + this.normalMean), this.unit);
+        return Quantity.of(Math.exp(r.nextNormal() * this.normalSd + this.normalMean), this.unit);
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final int size = batch.size();
+        r.nextNormals(out, size);
+        for (int i = 0; i < size; i++) {
+            out[i] = Math.exp(out[i] * this.normalSd + this.normalMean);
+        }
+    }
+
+    @Override
+    public double cdf(final double x) {
+        if (x <= 0.0) {
+            return 0.0;
+        }
+        if (this.normalSd == 0.0) {
+            return Math.log(x) < this.normalMean ? 0.0 : 1.0;
+        }
+        return NormalRandomVariable.standardCdf((Math.log(x) - this.normalMean) / this.normalSd);
+    }
+
+    @Override
+    public double quantile(final double p) {
+        if (this.normalSd == 0.0) {
+            return Math.exp(this.normalMean);
+        }
+        return Math.exp(this.normalMean + this.normalSd * NormalRandomVariable.standardQuantile(p));
+    }
+
+    @Override
+    public double survival(final double x) {
+        if (x <= 0.0) {
+            return 1.0;
+        }
+        if (this.normalSd == 0.0) {
+            return Math.log(x) < this.normalMean ? 1.0 : 0.0;
+        }
+        return NormalRandomVariable.standardCdf((this.normalMean - Math.log(x)) / this.normalSd);
+    }
+
+    @Override
+    public double inverseSurvival(final double p) {
+        if (this.normalSd == 0.0) {
+            return Math.exp(this.normalMean);
+        }
+        return Math.exp(this.normalMean - this.normalSd * NormalRandomVariable.standardQuantile(p));
+    }
+
+    @Override
+    public RandomVariable bound(final double lowerBound, final double upperBound) {
+        return new TruncatedRandomVariable(this, this, lowerBound, upperBound);
+    }
+
+    @Override
+    public double mean() {
+        return Math.exp(this.normalMean + this.normalSd * this.normalSd / 2.0);
+    }
+
+    @Override
+    public double variance() {
+        final double s2 = this.normalSd * this.normalSd;
+        return Math.expm1(s2) * Math.exp(2.0 * this.normalMean + s2);
+    }
+
+    @Override
+    public double standardizedThirdMomentBound() {
+        // E|X - mean|^3 <= sd * sqrt(E(X - mean)^4), i.e. the bound is the square root of the kurtosis
+        final double s2 = this.normalSd * this.normalSd;
+        final double kurtosis = Math.exp(4.0 * s2) + 2.0 * Math.exp(3.0 * s2) + 3.0 * Math.exp(2.0 * s2) - 3.0;
+        return Math.sqrt(kurtosis);
     }
 
     @Override
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Builds the values of a {@link Model.Instance} on demand. Every key is built by exactly one thread, other threads
+ * asking for the same key wait for that result. Definitions that depend on themselves, directly or across threads,
+ * are reported with the chain of keys instead of running into a stack overflow or a deadlock.
+ */
+final class Materializer {
+
+    /**
+     * A key that is currently being built.
+     */
+    private static final class Pending {
+        private final Object key;
+        private final Thread owner;
+        private final Pending parent;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Object value;
+        private volatile Throwable failure;
+
+        Pending(final Object key, final Thread owner, final Pending parent) {
+            this.key = key;
+            this.owner = owner;
+            this.parent = parent;
+        }
+
+        void await() {
+            try {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                    @Override
+                    public boolean block() throws InterruptedException {
+                        Pending.this.done.await();
+                        return true;
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        return Pending.this.done.getCount() == 0;
+                    }
+                });
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for " + this.key, e);
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<Object, Pending> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Thread, Pending> building = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Thread, Pending> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the key that the current thread is building at the moment, or null if it builds none.
+     */
+    public Object current() {
+        final Pending p = this.building.get(Thread.currentThread());
+        return p == null ? null : p.key;
+    }
+
+    /**
+     * Returns the value for the key from the given map, and builds it with the producer if it is not contained yet.
+     * A producer returning null is allowed, the result is then not stored.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> V get(final ConcurrentHashMap<K, V> values, final K key, final Function<K, V> producer) {
+        final V existing = values.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        final Thread current = Thread.currentThread();
+        final Pending mine = new Pending(key, current, this.building.get(current));
+        final Pending other = this.pending.putIfAbsent(key, mine);
+        if (other != null) {
+            return (V) this.waitFor(other, current);
+        }
+        // another thread could have finished the key between the first lookup and the registration
+        final V finished = values.get(key);
+        if (finished != null) {
+            this.pending.remove(key, mine);
+            mine.value = finished;
+            mine.done.countDown();
+            return finished;
+        }
+        return this.build(values, key, producer, mine, current);
+    }
+
+    private <K, V> V build(
+            final ConcurrentHashMap<K, V> values,
+            final K key,
+            final Function<K, V> producer,
+            final Pending mine,
+            final Thread current) {
+        this.building.put(current, mine);
+        try {
+            final V v = producer.apply(key);
+            if (v != null) {
+                values.putIfAbsent(key, v);
+            }
+            mine.value = v;
+            return v;
+        } catch (final RuntimeException | Error e) {
+            mine.failure = e;
+            throw e;
+        } finally {
+            if (mine.parent == null) {
+                this.building.remove(current);
+            } else {
+                this.building.put(current, mine.parent);
+            }
+            this.pending.remove(key, mine);
+            mine.done.countDown();
+        }
+    }
+
+    private Object waitFor(final Pending other, final Thread current) {
+        if (other.owner == current) {
+            throw new IllegalStateException("cyclic definition: " + this.chainInThread(other, current));
+        }
+        this.waiting.put(current, other);
+        try {
+            this.checkWaitCycle(other, current);
+            other.await();
+        } finally {
+            this.waiting.remove(current);
+        }
+        if (other.failure instanceof RuntimeException) {
+            throw (RuntimeException) other.failure;
+        }
+        if (other.failure instanceof Error) {
+            throw (Error) other.failure;
+        }
+        return other.value;
+    }
+
+    /**
+     * Returns the keys from the given one to the innermost key currently built by the thread, followed by the given
+     * key again.
+     */
+    private String chainInThread(final Pending start, final Thread current) {
+        final List<Object> chain = new ArrayList<>();
+        chain.add(start.key);
+        for (Pending p = this.building.get(current); p != null && p != start; p = p.parent) {
+            chain.add(p.key);
+        }
+        Collections.reverse(chain);
+        chain.add(0, start.key);
+        return format(chain);
+    }
+
+    /**
+     * Follows the threads that wait for each other, starting with the owner of the given key. When this leads back
+     * to the current thread, waiting would never end.
+     */
+    private void checkWaitCycle(final Pending target, final Thread current) {
+        final List<Object> chain = new ArrayList<>();
+        final Pending own = this.building.get(current);
+        if (own != null) {
+            chain.add(own.key);
+        }
+        Pending p = target;
+        for (int steps = 0; p != null && steps <= this.waiting.size(); steps++) {
+            chain.add(p.key);
+            if (p.owner == current) {
+                throw new IllegalStateException("cyclic definition: " + format(chain));
+            }
+            p = this.waiting.get(p.owner);
+        }
+    }
+
+    private static String format(final List<Object> chain) {
+        final StringBuilder ret = new StringBuilder();
+        for (final Object key : chain) {
+            if (ret.length() > 0) {
+                ret.append(" -> ");
+            }
+            ret.append(key);
+        }
+        return ret.toString();
+    }
+
+}
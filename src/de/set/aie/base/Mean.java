@@ -15,38 +15,126 @@
  */
 package de.set.aie.base;
 
+/**
+ * Running mean and variance of a number of observations, using Welford's method. Means are immutable and can be
+ * combined, so that partial results of several threads can be merged.
+ */
 public class Mean {
 
-    private final double sum;
     private final long count;
+    private final double mean;
+    private final double m2;
 
-    Mean(final double sum, final long count) {
-        this.sum = sum;
+    Mean(final long count, final double mean, final double m2) {
         this.count = count;
+        this.mean = mean;
+        this.m2 = m2;
     }
 
     public static Mean of(final double[] numbers) {
-        double sum = 0.0;
-        for (final double d : numbers) {
-            sum += d;
+        return of(numbers, 0, numbers.length);
+    }
+
+    /**
+     * Returns the mean of the numbers in the given range of the array.
+     */
+    static Mean of(final double[] numbers, final int from, final int to) {
+        long n = 0;
+        double mean = 0.0;
+        double m2 = 0.0;
+        for (int i = from; i < to; i++) {
+            n++;
+            final double delta = numbers[i] - mean;
+            mean += delta / n;
+            m2 += delta * (numbers[i] - mean);
         }
-        return new Mean(sum, numbers.length);
+        return n == 0 ? undefined() : new Mean(n, mean, m2);
     }
 
     public static Mean undefined() {
-        return new Mean(0.0, 0);
+        return new Mean(0, Double.NaN, 0.0);
+    }
+
+    /**
+     * Returns a value that is known exactly instead of being estimated from observations, e.g. the value of
+     * information of a constant. It has no observations, and its standard error and confidence interval are 0.
+     * No observations can be added to it.
+     */
+    public static Mean exact(final double value) {
+        assert !Double.isNaN(value);
+        return new Mean(0, value, 0.0);
+    }
+
+    /**
+     * Returns true iff this value is known exactly, see {@link #exact(double)}.
+     */
+    public boolean isExact() {
+        return this.count == 0 && !Double.isNaN(this.mean);
     }
 
     public double get() {
-        return this.sum / this.count;
+        return this.mean;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the sample variance of the observations, or NaN if there are less than two.
+     */
+    public double getVariance() {
+        return this.count < 2 ? Double.NaN : this.m2 / (this.count - 1);
+    }
+
+    double getSumOfSquaredDeviations() {
+        return this.m2;
+    }
+
+    /**
+     * Returns the estimated standard error of the mean.
+     */
+    public double getStandardError() {
+        if (this.isExact()) {
+            return 0.0;
+        }
+        return Math.sqrt(this.getVariance() / this.count);
+    }
+
+    /**
+     * Returns half the width of the confidence interval for the mean with the given level (e.g. 0.95), based on
+     * the normal approximation.
+     */
+    public double getConfidenceHalfWidth(final double level) {
+        return NormalRandomVariable.standardQuantile(0.5 + level / 2) * this.getStandardError();
     }
 
     public Mean add(final Mean other) {
-        return new Mean(this.sum + other.sum, this.count + other.count);
+        assert !this.isExact() && !other.isExact();
+        if (other.count == 0) {
+            return this;
+        }
+        if (this.count == 0) {
+            return other;
+        }
+        final long n = this.count + other.count;
+        final double delta = other.mean - this.mean;
+        return new Mean(
+                n,
+                this.mean + delta * other.count / n,
+                this.m2 + other.m2 + delta * delta * ((double) this.count * other.count / n));
     }
 
-    Mean add(final double sumToAdd, final int countToAdd) {
-        return new Mean(this.sum + sumToAdd, this.count + countToAdd);
+    /**
+     * Adds a single observation.
+     */
+    public Mean add(final double value) {
+        assert !this.isExact();
+        final long n = this.count + 1;
+        final double base = this.count == 0 ? 0.0 : this.mean;
+        final double delta = value - base;
+        final double newMean = base + delta / n;
+        return new Mean(n, newMean, this.m2 + delta * (value - newMean));
     }
 
     @Override
@@ -26,79 +26,380 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class Model {
 
+    /**
+     * Keeps one {@link QuantileSketch} per variable.
+     */
+    private static final class SketchAccumulator implements SampleAccumulator<SketchAccumulator> {
+        private final QuantileSketch[] sketches;
+
+        SketchAccumulator(final int variableCount) {
+            this.sketches = new QuantileSketch[variableCount];
+            for (int k = 0; k < variableCount; k++) {
+                this.sketches[k] = new QuantileSketch();
+            }
+        }
+
+        @Override
+        public void addBlock(final double[][] columns, final int rows) {
+            for (int k = 0; k < this.sketches.length; k++) {
+                this.sketches[k].addAll(columns[k], 0, rows);
+            }
+        }
+
+        @Override
+        public void merge(final SketchAccumulator other) {
+            for (int k = 0; k < this.sketches.length; k++) {
+                this.sketches[k].merge(other.sketches[k]);
+            }
+        }
+    }
+
+    /**
+     * Key for the node of a {@link TimeSeries} at a time point.
+     */
+    private static final class SeriesPoint {
+        private final TimeSeries series;
+        private final int time;
+
+        SeriesPoint(final TimeSeries series, final int time) {
+            this.series = series;
+            this.time = time;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.series) * 31 + this.time;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof SeriesPoint)) {
+                return false;
+            }
+            final SeriesPoint p = (SeriesPoint) o;
+            return p.series == this.series && p.time == this.time;
+        }
+
+        @Override
+        public String toString() {
+            return this.series.getClass().getSimpleName() + "@" + this.time;
+        }
+    }
+
+    /**
+     * Receives the blocks of {@link Instance#executeBlocks(CompiledProgram, long, int, BlockConsumer)}.
+     */
+    interface BlockConsumer {
+        public abstract void accept(RandomSource r, SimulationBatch batch, double[][] registers, int rows);
+    }
+
     public class Instance {
         private final ConcurrentHashMap<VarId, RandomVariable> vars = new ConcurrentHashMap<>();
         private final ConcurrentHashMap<String, Object> objects = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<SeriesPoint, RandomVariable> seriesPoints = new ConcurrentHashMap<>();
+        private final VarSlots slots = new VarSlots();
+        private final Materializer materializer = new Materializer();
+        private final ConcurrentHashMap<Object, Set<Object>> dependencies = new ConcurrentHashMap<>();
+        private final SamplingMode samplingMode;
+
+        Instance(final SamplingMode samplingMode) {
+            this.samplingMode = samplingMode;
+        }
 
+        /**
+         * Returns the way the leaf distributions are sampled by the programs of this instance.
+         */
+        public SamplingMode getSamplingMode() {
+            return this.samplingMode;
+        }
+
+        /**
+         * Returns the variable with the given name, and creates it if needed. When several threads ask for the
+         * same variable, only one of them runs the definition. A definition that depends on itself leads to an
+         * {@link IllegalStateException} with the chain of names.
+         */
         public RandomVariable get(final VarId name) {
-            final RandomVariable v = this.vars.get(name);
-            if (v != null) {
-                return v;
-            }
-            final Function<Instance, RandomVariable> f = Model.this.map.get(name);
-            if (f == null) {
-                throw new IllegalStateException("no definition for " + name);
-            }
-            final RandomVariable newV = f.apply(this);
-            return this.vars.computeIfAbsent(name, (VarId n) -> newV);
+            this.recordDependency(name);
+            return this.materializer.get(this.vars, name, (final VarId n) -> {
+                final Function<Instance, RandomVariable> f = Model.this.map.get(n);
+                if (f == null) {
+                    throw new IllegalStateException("no definition for " + n);
+                }
+                return f.apply(this);
+            });
         }
 
         public<T> T getObject(String name) {
-            final T t = (T) this.objects.get(name);
-            if (t != null) {
-                return t;
+            this.recordDependency(name);
+            return (T) this.materializer.get(this.objects, name, (final String n) -> {
+                final Function<Instance, Object> f = Model.this.objectMap.get(n);
+                if (f == null) {
+                    throw new IllegalStateException("no definition for object " + n);
+                }
+                return f.apply(this);
+            });
+        }
+
+        /**
+         * Returns the node of the time series at the given time, and builds it with the given function if needed.
+         * Like variables, every node is built only once per instance, see {@link TimeSeries#memoize}.
+         */
+        RandomVariable getTimeSeriesPoint(
+                final TimeSeries series, final int time, final Function<Instance, RandomVariable> builder) {
+            final SeriesPoint key = new SeriesPoint(series, time);
+            this.recordDependency(key);
+            return this.materializer.get(this.seriesPoints, key, (final SeriesPoint k) -> builder.apply(this));
+        }
+
+        private void recordDependency(final Object node) {
+            final Object user = this.materializer.current();
+            if (user != null) {
+                this.dependencies.computeIfAbsent(user, (final Object k) -> ConcurrentHashMap.newKeySet()).add(node);
             }
-            final Function<Instance, Object> f = Model.this.objectMap.get(name);
-            if (f == null) {
-                throw new IllegalStateException("no definition for object " + name);
+        }
+
+        /**
+         * Returns the dependencies between the variables and objects that have been created so far.
+         */
+        DependencyGraph getDependencyGraph() {
+            return new DependencyGraph(new HashMap<>(this.dependencies));
+        }
+
+        /**
+         * Creates all variables of the model up front. The variables are started in parallel, so that independent
+         * parts of big models are built concurrently. Shared parts are still only built once.
+         */
+        public Instance materializeAll() throws InterruptedException, ExecutionException {
+            return this.materializeAll(ForkJoinPool.commonPool());
+        }
+
+        /**
+         * Creates all variables of the model up front like {@link #materializeAll()}, with the variables started on
+         * the given executor, or one after the other in the calling thread if the executor is null.
+         */
+        public Instance materializeAll(final ExecutorService executor)
+            throws InterruptedException, ExecutionException {
+            if (executor == null) {
+                for (final VarId name : Model.this.map.keySet()) {
+                    this.get(name);
+                }
+                return this;
             }
-            final T newT = (T) f.apply(this);
-            return (T) this.objects.computeIfAbsent(name, (String n) -> newT);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final VarId name : Model.this.map.keySet()) {
+                futures.add(executor.submit(() -> this.get(name)));
+            }
+            for (final Future<?> f : futures) {
+                f.get();
+            }
+            return this;
+        }
+
+        /**
+         * Creates a run that shares the slot table of this instance.
+         */
+        SimulationRun newRun() {
+            return new SimulationRun(this.slots);
+        }
+
+        /**
+         * Compiles the dependency graph of the given variables to a {@link CompiledProgram}.
+         */
+        public CompiledProgram compile(final VarId... variables) {
+            final ProgramBuilder b = new ProgramBuilder(this.samplingMode);
+            final int[] outputs = new int[variables.length];
+            for (int i = 0; i < variables.length; i++) {
+                outputs[i] = b.compile(this.get(variables[i]));
+            }
+            return b.build(outputs);
         }
 
         public Map<VarId, double[]> createSamples(final long seed, final int sampleCount, final VarId... valueVariables)
             throws InterruptedException, ExecutionException {
+            return this.createSamples(seed, sampleCount, ForkJoinPool.commonPool(), valueVariables);
+        }
+
+        /**
+         * Creates the samples with the blocks distributed over the given executor, or in the calling thread if the
+         * executor is null. Any executor can be used, e.g. a separate {@link ForkJoinPool} or an executor that starts
+         * a virtual thread per task. The number of blocks per task is adapted to the time needed for a block
+         * (see {@link BlockSplitter}). Each block has its own random stream, so the samples depend neither on the
+         * executor nor on the split.
+         */
+        public Map<VarId, double[]> createSamples(
+                final long seed,
+                final int sampleCount,
+                final ExecutorService executor,
+                final VarId[] valueVariables) throws InterruptedException, ExecutionException {
 
             final Map<VarId, double[]> samples = new LinkedHashMap<>();
             for (final VarId v : valueVariables) {
                 samples.put(v, new double[sampleCount]);
             }
-            final RandomSource r1 = RandomSource.wrap(new Random(seed));
-            final List<Future<?>> futures = new ArrayList<>();
+            final CompiledProgram program = this.compileForSampling(valueVariables);
+            final UniformPoints points = UniformPoints.create(
+                    this.samplingMode, seed, program.getDimensionCount(), sampleCount);
+            final int blockCount = (sampleCount + SimulationBatch.DEFAULT_SIZE - 1) / SimulationBatch.DEFAULT_SIZE;
+            BlockSplitter.runTasks(blockCount, executor, () -> {
+                final double[][] registers = program.newRegisters(SimulationBatch.DEFAULT_SIZE);
+                return (final int b) -> {
+                    final int base = b * SimulationBatch.DEFAULT_SIZE;
+                    final int max = Math.min(SimulationBatch.DEFAULT_SIZE, sampleCount - base);
+                    this.executeBlock(program, RandomSource.forStream(seed, b), base, points, registers);
+                    for (int k = 0; k < valueVariables.length; k++) {
+                        final double[] values = registers[program.getOutputRegister(k)];
+                        System.arraycopy(values, 0, samples.get(valueVariables[k]), base, max);
+                    }
+                };
+            });
+            return samples;
+        }
+
+        /**
+         * Samples the given variables like {@link #createSamples(long, int, VarId...)}, but instead of keeping the
+         * numbers, every block of samples is passed to an accumulator as soon as it is complete, so that the memory
+         * needed does not grow with the sample count. The blocks are distributed to a fixed number of chunks with
+         * one accumulator each, and the accumulators are merged in chunk order, so that the result does not depend
+         * on the executor.
+         *
+         * @param executor The executor for the chunks, or null to sample in the calling thread.
+         */
+        public <A extends SampleAccumulator<A>> A accumulate(
+                final long seed,
+                final int sampleCount,
+                final ExecutorService executor,
+                final Supplier<A> accumulatorFactory,
+                final VarId... variables) throws InterruptedException, ExecutionException {
 
-            for (int i = 0; i < sampleCount; i += 100) {
-                final int base = i;
-                final int max = Math.min(100, sampleCount - base);
-                final RandomSource rChild = r1.spawnChild();
-
-                final Future<?> f = ForkJoinPool.commonPool().submit(() -> {
-                    for (int j = 0; j < max; j++) {
-                        final SimulationRun run = new SimulationRun();
-                        for (final VarId v : valueVariables) {
-                            final RandomVariable r = this.get(v);
-                            final double[] numbers = samples.get(v);
-                            numbers[base + j] = r.observe(rChild, run).getNumber();
+            final CompiledProgram program = this.compileForSampling(variables);
+            final UniformPoints points = UniformPoints.create(
+                    this.samplingMode, seed, program.getDimensionCount(), sampleCount);
+            final int blockCount = (sampleCount + SimulationBatch.DEFAULT_SIZE - 1) / SimulationBatch.DEFAULT_SIZE;
+            final int chunkCount = Math.max(1, Math.min(ACCUMULATOR_CHUNKS, blockCount));
+            final List<A> accumulators = new ArrayList<>();
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < chunkCount; c++) {
+                final int chunk = c;
+                final A accumulator = accumulatorFactory.get();
+                accumulators.add(accumulator);
+                final Runnable task = () -> {
+                    final double[][] columns = new double[variables.length][];
+                    final double[][] registers = program.newRegisters(SimulationBatch.DEFAULT_SIZE);
+                    for (int b = chunk; b < blockCount; b += chunkCount) {
+                        final int base = b * SimulationBatch.DEFAULT_SIZE;
+                        final int max = Math.min(SimulationBatch.DEFAULT_SIZE, sampleCount - base);
+                        this.executeBlock(program, RandomSource.forStream(seed, b), base, points, registers);
+                        for (int k = 0; k < columns.length; k++) {
+                            columns[k] = registers[program.getOutputRegister(k)];
                         }
+                        accumulator.addBlock(columns, max);
                     }
-                });
-                futures.add(f);
+                };
+                if (executor == null) {
+                    task.run();
+                } else {
+                    futures.add(executor.submit(task));
+                }
             }
             for (final Future<?> f : futures) {
                 f.get();
             }
-            return samples;
+            final A ret = accumulators.get(0);
+            for (int c = 1; c < chunkCount; c++) {
+                ret.merge(accumulators.get(c));
+            }
+            return ret;
+        }
+
+        /**
+         * Samples the given variables and summarizes each of them in a {@link QuantileSketch} while sampling.
+         */
+        public Map<VarId, Sample> summarize(
+                final long seed,
+                final int sampleCount,
+                final ExecutorService executor,
+                final VarId... variables) throws InterruptedException, ExecutionException {
+
+            final SketchAccumulator sketches = this.accumulate(
+                    seed, sampleCount, executor, () -> new SketchAccumulator(variables.length), variables);
+            final Map<VarId, Sample> ret = new LinkedHashMap<>();
+            for (int k = 0; k < variables.length; k++) {
+                ret.put(variables[k], new Sample(sketches.sketches[k], this.get(variables[k]).getUnit()));
+            }
+            return ret;
+        }
+
+        /**
+         * Executes the program for all blocks of the given sample count in the calling thread and passes every
+         * block to the consumer. The random source is the one of the block, so that the consumer can continue
+         * to draw from it.
+         */
+        void executeBlocks(
+                final CompiledProgram program, final long seed, final int sampleCount, final BlockConsumer consumer) {
+            final UniformPoints points = UniformPoints.create(
+                    this.samplingMode, seed, program.getDimensionCount(), sampleCount);
+            final double[][] registers = program.newRegisters(SimulationBatch.DEFAULT_SIZE);
+            for (int base = 0; base < sampleCount; base += SimulationBatch.DEFAULT_SIZE) {
+                final RandomSource r = RandomSource.forStream(seed, base / SimulationBatch.DEFAULT_SIZE);
+                final SimulationBatch batch =
+                        new SimulationBatch(SimulationBatch.DEFAULT_SIZE, this.slots, base, points);
+                program.execute(r, batch, registers);
+                consumer.accept(r, batch, registers, Math.min(SimulationBatch.DEFAULT_SIZE, sampleCount - base));
+            }
+        }
+
+        private CompiledProgram compileForSampling(final VarId... variables) {
+            return Model.this.useGeneratedCode
+                ? this.compile(variables).withGeneratedCode()
+                : this.compile(variables);
+        }
+
+        /**
+         * Executes the program for the block starting at the given row. The registers are allocated once per task
+         * by the caller and overwritten by every block.
+         */
+        private void executeBlock(
+                final CompiledProgram program,
+                final RandomSource r,
+                final int firstRow,
+                final UniformPoints points,
+                final double[][] registers) {
+            // always a full block, so that the values do not depend on the sample count
+            program.execute(
+                    r, new SimulationBatch(SimulationBatch.DEFAULT_SIZE, this.slots, firstRow, points), registers);
         }
 
     }
 
+    /**
+     * Number of outer VOI iterations that are distributed as one round of work. The losses are summed up after
+     * each round in a fixed order.
+     */
+    private static final int VOI_ITERATIONS_PER_ROUND = 16;
+    private static final int VOI_REPETITIONS = 10;
+    private static final int VOI_SAMPLE_COUNT = 2_000;
+    private static final int VOI_MIN_ADAPTIVE_OBSERVATIONS = 100;
+    /**
+     * Iterations per round for variables whose rank is already known in adaptive mode. They still need samples to
+     * reach the target error, but the variables with uncertain rank get the full round.
+     */
+    private static final int VOI_SETTLED_ITERATIONS_PER_ROUND = 4;
+    private static final int SINGLE_LOOP_GROUPS = 10;
+    private static final int ACCUMULATOR_CHUNKS = 16;
+    private static final int PRINTED_SAMPLE_COUNT = 10_000;
+
     private final Map<VarId, Function<Instance, RandomVariable>> map = new LinkedHashMap<>();
     private final Map<String, Function<Instance, Object>> objectMap = new LinkedHashMap<>();
+    private volatile boolean useGeneratedCode;
 
     public void addRaw(final VarId name, final RandomVariable var) {
         this.addRaw(name, (final Instance i) -> var);
@@ -138,8 +439,23 @@ public class Model {
         this.objectMap.put(name, producer);
     }
 
+    /**
+     * When set, the programs for sampling are turned into classes generated at runtime, see
+     * {@link CompiledProgram#withGeneratedCode()}. Off by default.
+     */
+    public void setUseGeneratedCode(final boolean useGeneratedCode) {
+        this.useGeneratedCode = useGeneratedCode;
+    }
+
     public Instance instantiate() {
-        return new Instance();
+        return this.instantiate(SamplingMode.MONTE_CARLO);
+    }
+
+    /**
+     * Returns an instance whose samples are created with the given {@link SamplingMode}.
+     */
+    public Instance instantiate(final SamplingMode samplingMode) {
+        return new Instance(samplingMode);
     }
 
     public void analyze(final long seed, final VarId... valueVariables)
@@ -178,7 +494,16 @@ public class Model {
                         (final VarId n1, final VarId n2) -> Double.compare(means.get(n2).get(), means.get(n1).get()));
                 System.out.println("=== Value of information (iter=" + iter + ")");
                 for (final VarId name : sorted) {
-                    System.out.println("value of information for " + types.get(name) + " " + name + ": " + means.get(name));
+                    final Mean m = means.get(name);
+                    if (m.isExact()) {
+                        System.out.println("value of information for " + types.get(name) + " " + name + ": " + m
+                                + " (exact)");
+                        continue;
+                    }
+                    final double halfWidth = m.getConfidenceHalfWidth(AnalysisOptions.CONFIDENCE_LEVEL);
+                    System.out.println("value of information for " + types.get(name) + " " + name + ": " + m
+                            + " (95% CI " + Quantity.of(m.get() - halfWidth, "") + " .. "
+                            + Quantity.of(m.get() + halfWidth, "") + ")");
                 }
                 System.out.println(new Date());
                 System.out.println();
@@ -193,16 +518,39 @@ public class Model {
 
         public abstract void handleVariableOverview(Map<VarId, Sample> samples);
 
+        /**
+         * Called with the current estimates of the value of information. Every observation in the means is the
+         * mean loss of one iteration, so that their standard error gives confidence intervals for the estimates.
+         * In adaptive mode, constants ({@link VarKind#F}) are not sampled; their value of information is reported
+         * as {@link Mean#exact(double) exactly} 0, without observations.
+         *
+         * @param iter The progress of the estimation: for the nested engine the number of outer iterations completed
+         *      so far, for the {@link AnalysisOptions.VoiEngine#SINGLE_LOOP single-loop} engine the number of joint
+         *      samples the estimates are based on.
+         */
         public abstract void handleVOI(int iter, Map<VarId, Mean> means, Map<VarId, VarKind> types);
 
     }
 
     public void analyze(final long seed, AnalysisResultHandler rh, final VarId... valueVariables)
         throws InterruptedException, ExecutionException {
+        this.analyze(seed, AnalysisOptions.defaults(), rh, valueVariables);
+    }
+
+    /**
+     * Analyzes the model. The value of information is estimated in independent units of work, one per outer
+     * iteration and repetition, which are executed on the executor from the options. Every unit has its own
+     * random streams and writes its losses to its own slot, so that the result for a seed does not depend on the
+     * parallelism.
+     */
+    public void analyze(final long seed, final AnalysisOptions options, AnalysisResultHandler rh, final VarId... valueVariables)
+        throws InterruptedException, ExecutionException {
 
         assert valueVariables.length >= 2;
-        final Instance fullInstance = this.instantiate();
-        final Map<VarId, double[]> originalSamples = fullInstance.createSamples(seed, 10_000, valueVariables);
+        final Instance fullInstance =
+                this.instantiate(options.getSamplingMode()).materializeAll(options.getExecutor());
+        final Map<VarId, double[]> originalSamples =
+                fullInstance.createSamples(seed, 10_000, options.getExecutor(), valueVariables);
         final Map<VarId, Sample> originalSamplesWithUnits = new LinkedHashMap<>();
         for (final Entry<VarId, double[]> e : originalSamples.entrySet()) {
             originalSamplesWithUnits.put(e.getKey(), new Sample(e.getValue(), fullInstance.get(e.getKey()).getUnit()));
@@ -212,13 +560,10 @@ public class Model {
         rh.handleValueVariables(originalSamplesWithUnits, bestChoice);
 
         final Map<VarId, Sample> otherVarSamples = new TreeMap<>(Comparator.comparing(VarId::toString));
-        final Set<VarId> vvSet = new HashSet<>(Arrays.asList(valueVariables));
-        for (final VarId var : this.map.keySet()) {
-            if (!vvSet.contains(var)) {
-                final double[] sample = fullInstance.createSamples(seed, 10_000, var).get(var);
-                otherVarSamples.put(var, new Sample(sample, fullInstance.get(var).getUnit()));
-            }
-        }
+        final Set<VarId> otherVars = new LinkedHashSet<>(this.map.keySet());
+        otherVars.removeAll(Arrays.asList(valueVariables));
+        otherVarSamples.putAll(fullInstance.summarize(
+                seed, 10_000, options.getExecutor(), otherVars.toArray(new VarId[otherVars.size()])));
         rh.handleVariableOverview(otherVarSamples);
 
         final Map<VarId, VarKind> types = new LinkedHashMap<>();
@@ -226,41 +571,308 @@ public class Model {
             types.put(name, fullInstance.get(name).getType());
         }
 
-        final RandomSource sampleRandom = RandomSource.wrap(new Random(seed));
-        final Map<VarId, Mean> meanLosses = new LinkedHashMap<>();
+        if (options.getEngine() == AnalysisOptions.VoiEngine.SINGLE_LOOP) {
+            rh.handleVOI(options.getSingleLoopSampleCount(),
+                    this.estimateVoiSingleLoop(fullInstance, seed, options, bestChoice, valueVariables), types);
+            return;
+        }
+
+        // the samples of variables that do not depend on the reduced variable are shared by all reduced instances
+        // with the same seed, only the affected part of the model is sampled again
+        final DependencyGraph graph = fullInstance.getDependencyGraph();
+        final Predicate<Object> reusable = (final Object node) ->
+            node instanceof VarId && fullInstance.get((VarId) node) instanceof PersistentRandomVariable;
+        final Map<VarId, Set<Object>> affected = new LinkedHashMap<>();
         for (final VarId name : this.map.keySet()) {
-            meanLosses.put(name, Mean.undefined());
+            affected.put(name, graph.getAffectedBy(name, reusable));
+        }
+        final VarId[] sharedVariables = this.determineSharedVariables(graph, reusable, valueVariables);
+
+        final VarId[] names = this.map.keySet().toArray(new VarId[this.map.size()]);
+        final int bestChoiceIndex = Arrays.asList(valueVariables).indexOf(bestChoice);
+        final long sampleSeed = RandomSource.splittable(seed).nextLong();
+        final Mean[] meanLosses = new Mean[names.length];
+        Arrays.fill(meanLosses, Mean.undefined());
+        final boolean[] active = new boolean[names.length];
+        Arrays.fill(active, true);
+        if (options.isAdaptive()) {
+            // fixing a constant gives no information
+            for (int n = 0; n < names.length; n++) {
+                if (types.get(names[n]) == VarKind.F) {
+                    active[n] = false;
+                    meanLosses[n] = Mean.exact(0.0);
+                }
+            }
         }
+        // the budget is shared by all variables: the iterations that a stopped variable does not need are spent on
+        // the variables that are still active, most of them on the variables whose rank is still uncertain
+        final boolean[] uncertain = active.clone();
+        final long budget = (long) options.getIterations() * countTrue(active);
+        long spent = 0;
         long lastPrintTime = 0;
-        for (int j = 0; j < 10_000; j++) {
-            for (final VarId name : this.map.keySet()) {
-                for (int i = 0; i < 10; i++) {
-                    final long iterSeed = seed + i + 100 * j;
-                    final Instance reducedInstance = this.createReducedInstance(name, sampleRandom);
-                    final Map<VarId, double[]> reducedSamples = reducedInstance.createSamples(iterSeed, 2_000, valueVariables);
-                    final VarId bestChoiceWithInformation = this.determineBestChoice(reducedSamples);
-                    final double[] loss = this.minus(reducedSamples.get(bestChoiceWithInformation), reducedSamples.get(bestChoice));
-                    meanLosses.compute(name, (final VarId k, final Mean v) -> v.add(Mean.of(loss)));
+        int round = 0;
+        while (spent < budget && anyTrue(active)) {
+            final int roundLength = roundLength(budget - spent, active, uncertain);
+            final int roundEnd = round + roundLength;
+            final boolean[][] activeInIteration = new boolean[roundLength][];
+            for (int k = 0; k < roundLength; k++) {
+                activeInIteration[k] = new boolean[names.length];
+                for (int n = 0; n < names.length; n++) {
+                    activeInIteration[k][n] = active[n] && (uncertain[n] || k < VOI_SETTLED_ITERATIONS_PER_ROUND);
+                }
+                spent += countTrue(activeInIteration[k]);
+            }
+            final double[][] losses = new double[roundLength * VOI_REPETITIONS][];
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int j = round; j < roundEnd; j++) {
+                for (int i = 0; i < VOI_REPETITIONS; i++) {
+                    final int iter = j;
+                    final int rep = i;
+                    final int slot = (j - round) * VOI_REPETITIONS + i;
+                    final boolean[] activeInUnit = activeInIteration[j - round];
+                    futures.add(options.getExecutor().submit(() -> {
+                        losses[slot] = this.estimateLosses(
+                                fullInstance, names, activeInUnit, affected, sharedVariables, types, seed, sampleSeed,
+                                iter, rep, bestChoiceIndex, valueVariables);
+                        return null;
+                    }));
                 }
             }
+            for (final Future<?> f : futures) {
+                f.get();
+            }
+            // every unit contributes the mean loss of its samples as one observation, in a fixed order
+            for (int slot = 0; slot < losses.length; slot++) {
+                final boolean[] activeInUnit = activeInIteration[slot / VOI_REPETITIONS];
+                for (int n = 0; n < names.length; n++) {
+                    if (activeInUnit[n]) {
+                        meanLosses[n] = meanLosses[n].add(losses[slot][n]);
+                    }
+                }
+            }
+            round = roundEnd;
+            if (options.isAdaptive()) {
+                updateAllocation(options, meanLosses, active, uncertain);
+            }
             final long curTime = System.currentTimeMillis();
-            if (curTime - lastPrintTime > 15_000) {
+            if (curTime - lastPrintTime > 15_000 && spent < budget) {
                 lastPrintTime = curTime;
-                rh.handleVOI(j, new LinkedHashMap<>(meanLosses), types);
+                rh.handleVOI(roundEnd - 1, toMap(names, meanLosses), types);
             }
         }
-        rh.handleVOI(10_000, meanLosses, types);
+        rh.handleVOI(round, toMap(names, meanLosses), types);
     }
 
-    private double[] minus(double[] ds1, double[] ds2) {
-        assert ds1.length == ds2.length;
-        final double[] ret = new double[ds1.length];
-        for (int i = 0; i < ds1.length; i++) {
-            ret[i] = ds1[i] - ds2[i];
+    private static int countTrue(final boolean[] flags) {
+        int count = 0;
+        for (final boolean b : flags) {
+            if (b) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean anyTrue(final boolean[] flags) {
+        for (final boolean b : flags) {
+            if (b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of iterations of the next round: a full round, or less when the remaining budget (in
+     * iterations of single variables) does not suffice for it.
+     */
+    private static int roundLength(final long remainingBudget, final boolean[] active, final boolean[] uncertain) {
+        int length = 1;
+        while (length < VOI_ITERATIONS_PER_ROUND) {
+            long cost = 0;
+            for (int n = 0; n < active.length; n++) {
+                if (active[n]) {
+                    cost += uncertain[n] ? length : Math.min(length, VOI_SETTLED_ITERATIONS_PER_ROUND);
+                }
+            }
+            if (cost >= remainingBudget) {
+                break;
+            }
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Stops sampling the variables whose estimate is precise enough. For the others, determines whether their rank
+     * is still uncertain, i.e. whether their confidence interval overlaps with the interval of another variable.
+     * Variables with a known rank get fewer iterations per round than those with an uncertain rank.
+     */
+    static void updateAllocation(
+            final AnalysisOptions options, final Mean[] means, final boolean[] active, final boolean[] uncertain) {
+        final double[] lower = new double[means.length];
+        final double[] upper = new double[means.length];
+        for (int n = 0; n < means.length; n++) {
+            final double halfWidth = means[n].getConfidenceHalfWidth(AnalysisOptions.CONFIDENCE_LEVEL);
+            lower[n] = means[n].get() - halfWidth;
+            upper[n] = means[n].get() + halfWidth;
+        }
+        for (int n = 0; n < means.length; n++) {
+            if (!active[n] || means[n].getCount() < VOI_MIN_ADAPTIVE_OBSERVATIONS) {
+                continue;
+            }
+            boolean overlaps = false;
+            for (int o = 0; o < means.length; o++) {
+                overlaps |= o != n && lower[n] <= upper[o] && lower[o] <= upper[n];
+            }
+            active[n] = !options.isPreciseEnough(means[n]);
+            uncertain[n] = overlaps;
+        }
+    }
+
+    /**
+     * Estimates the value of information of all persistent variables from one joint sample with the
+     * {@link SingleLoopVoiEstimator}.
+     */
+    private Map<VarId, Mean> estimateVoiSingleLoop(
+            final Instance fullInstance,
+            final long seed,
+            final AnalysisOptions options,
+            final VarId bestChoice,
+            final VarId... valueVariables) throws InterruptedException, ExecutionException {
+
+        final Set<VarId> sampled = new LinkedHashSet<>(Arrays.asList(valueVariables));
+        for (final VarId name : this.map.keySet()) {
+            if (fullInstance.get(name) instanceof PersistentRandomVariable) {
+                sampled.add(name);
+            }
+        }
+        final Map<VarId, double[]> samples = fullInstance.createSamples(
+                RandomSource.splittable(seed).nextLong(),
+                options.getSingleLoopSampleCount(),
+                options.getExecutor(),
+                sampled.toArray(new VarId[sampled.size()]));
+
+        final double[][] values = new double[valueVariables.length][];
+        int bestIndex = -1;
+        for (int i = 0; i < valueVariables.length; i++) {
+            values[i] = samples.get(valueVariables[i]);
+            if (valueVariables[i].equals(bestChoice)) {
+                bestIndex = i;
+            }
+        }
+        final SingleLoopVoiEstimator estimator = new SingleLoopVoiEstimator(SINGLE_LOOP_GROUPS);
+        final Map<VarId, Mean> ret = new LinkedHashMap<>();
+        for (final VarId name : this.map.keySet()) {
+            if (fullInstance.get(name) instanceof PersistentRandomVariable) {
+                ret.put(name, estimator.estimate(samples.get(name), values, bestIndex));
+            }
         }
         return ret;
     }
 
+    private static Map<VarId, Mean> toMap(final VarId[] names, final Mean[] means) {
+        final Map<VarId, Mean> ret = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            ret.put(names[i], means[i]);
+        }
+        return ret;
+    }
+
+    /**
+     * One unit of work of the VOI estimation: for every active variable, fixes a random value, samples the value variables
+     * and returns the mean loss compared to the choice without information. The losses are computed while sampling,
+     * without keeping the samples of the value variables.
+     */
+    private double[] estimateLosses(
+            final Instance fullInstance,
+            final VarId[] names,
+            final boolean[] active,
+            final Map<VarId, Set<Object>> affected,
+            final VarId[] sharedVariables,
+            final Map<VarId, VarKind> types,
+            final long seed,
+            final long sampleSeed,
+            final int iter,
+            final int rep,
+            final int bestChoice,
+            final VarId... valueVariables) throws InterruptedException, ExecutionException {
+
+        final long iterSeed = seed + rep + 100 * iter;
+        final RandomSource sampleRandom = RandomSource.forStream(sampleSeed, (long) iter * VOI_REPETITIONS + rep);
+        final Map<VarId, double[]> sharedSamples = fullInstance.createSamples(
+                iterSeed, VOI_SAMPLE_COUNT, null, sharedVariables);
+        final long affectedSeed = RandomSource.splittable(iterSeed).nextLong();
+        final double[] ret = new double[names.length];
+        for (int n = 0; n < names.length; n++) {
+            if (!active[n]) {
+                continue;
+            }
+            final ChoiceStatistics reduced = this.sampleReduced(
+                    fullInstance, names[n], affected.get(names[n]), sharedSamples, types, sampleRandom,
+                    affectedSeed, bestChoice, valueVariables);
+            ret[n] = reduced.getLossOfReference().get();
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the variables whose samples can be needed by a reduced instance: the value variables and all
+     * reusable variables that are used by another node.
+     */
+    private VarId[] determineSharedVariables(
+            final DependencyGraph graph, final Predicate<Object> reusable, final VarId... valueVariables) {
+        final Set<VarId> ret = new LinkedHashSet<>(Arrays.asList(valueVariables));
+        for (final VarId name : this.map.keySet()) {
+            if (graph.isUsed(name) && reusable.test(name)) {
+                ret.add(name);
+            }
+        }
+        return ret.toArray(new VarId[ret.size()]);
+    }
+
+    /**
+     * Samples the value variables for a randomly fixed value of the given variable. The shared samples are
+     * reused for all variables that are not affected by the fixed one. When no value variable is affected,
+     * nothing has to be sampled at all.
+     */
+    private ChoiceStatistics sampleReduced(
+            final Instance fullInstance,
+            final VarId toReduce,
+            final Set<Object> affected,
+            final Map<VarId, double[]> sharedSamples,
+            final Map<VarId, VarKind> types,
+            final RandomSource sampleRandom,
+            final long affectedSeed,
+            final int bestChoice,
+            final VarId... valueVariables) throws InterruptedException, ExecutionException {
+
+        final Quantity sample = fullInstance.get(toReduce).observe(sampleRandom, fullInstance.newRun());
+        boolean valueAffected = false;
+        for (final VarId v : valueVariables) {
+            valueAffected |= affected.contains(v);
+        }
+        if (!valueAffected) {
+            final double[][] columns = new double[valueVariables.length][];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = sharedSamples.get(valueVariables[i]);
+            }
+            final ChoiceStatistics ret = new ChoiceStatistics(valueVariables.length, bestChoice);
+            ret.addBlock(columns, VOI_SAMPLE_COUNT);
+            return ret;
+        }
+        final Instance reducedInstance = this.instantiate(fullInstance.getSamplingMode());
+        reducedInstance.vars.put(toReduce, Distributions.fixed(sample));
+        for (final Entry<VarId, double[]> e : sharedSamples.entrySet()) {
+            if (!affected.contains(e.getKey())) {
+                reducedInstance.vars.put(e.getKey(), new SampleColumnRandomVariable(
+                        e.getValue(), fullInstance.get(e.getKey()).getUnit(), types.get(e.getKey())));
+            }
+        }
+        return reducedInstance.accumulate(affectedSeed, VOI_SAMPLE_COUNT, null,
+                () -> new ChoiceStatistics(valueVariables.length, bestChoice), valueVariables);
+    }
+
     private VarId determineBestChoice(final Map<VarId, double[]> samples) {
         VarId bestName = null;
         double best = Double.NEGATIVE_INFINITY;
@@ -274,17 +886,6 @@ public class Model {
         return bestName;
     }
 
-    private Instance createReducedInstance(final VarId toReduce, final RandomSource sampleRandom) {
-        final Quantity sample = this.sampleValue(toReduce, sampleRandom);
-        final Instance reducedInstance = this.instantiate();
-        reducedInstance.vars.put(toReduce, Distributions.fixed(sample));
-        return reducedInstance;
-    }
-
-    private Quantity sampleValue(final VarId toReduce, final RandomSource sampleRandom) {
-        return this.instantiate().get(toReduce).observe(sampleRandom, new SimulationRun());
-    }
-
     public List<VarId> getAllPersistentVariables() throws AssertionError {
         final List<VarId> allPersistentVariables = new ArrayList<>();
         final Instance i = this.instantiate();
@@ -297,16 +898,21 @@ public class Model {
     }
 
     public void printDistributions(final File file, final long seed) throws IOException {
+        this.printDistributions(file, seed, SamplingMode.MONTE_CARLO);
+    }
+
+    public void printDistributions(final File file, final long seed, final SamplingMode samplingMode)
+        throws IOException {
         final List<VarId> cols = this.getAllPersistentVariables();
         cols.addAll(this.getAdditionalPersistedValues(seed, cols));
 
-        this.printDistributions(file, seed, cols);
+        this.printDistributions(file, seed, samplingMode, cols.toArray(new VarId[cols.size()]));
     }
 
     private Collection<? extends VarId> getAdditionalPersistedValues(long seed, List<VarId> cols) {
         final Instance inst = this.instantiate();
-        final SimulationRun run = new SimulationRun();
-        final RandomSource r = RandomSource.wrap(new Random(seed));
+        final SimulationRun run = inst.newRun();
+        final RandomSource r = RandomSource.splittable(seed);
 
         for (final VarId col : cols) {
             inst.get(col).observe(r, run);
@@ -323,15 +929,26 @@ public class Model {
     }
 
     public void printDistributions(final File file, final long seed, final VarId... columns) throws IOException {
-        final RandomSource r = RandomSource.wrap(new Random(seed));
+        this.printDistributions(file, seed, SamplingMode.MONTE_CARLO, columns);
+    }
+
+    /**
+     * Writes 10,000 samples of the given persisted variables to a CSV file. In the stratified sampling modes, the
+     * samples are created in blocks by a {@link CompiledProgram}, otherwise sample by sample.
+     */
+    public void printDistributions(
+            final File file, final long seed, final SamplingMode samplingMode, final VarId... columns)
+        throws IOException {
         try (FileOutputStream out = new FileOutputStream(file);
                 BufferedWriter w = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"))) {
-            final Instance inst = this.instantiate();
+            final Instance inst = this.instantiate(samplingMode);
+            final List<VarId> inMap = new ArrayList<>();
             final List<RandomVariable> v = new ArrayList<>();
             w.write("i");
             for (final VarId colName : columns) {
                 if (this.map.containsKey(colName)) {
                     final RandomVariable var = inst.get(colName);
+                    inMap.add(colName);
                     v.add(var);
                     w.write(";" + colName + " (" + var.getUnit() + ")");
                 } else {
@@ -341,16 +958,67 @@ public class Model {
             w.write('\n');
             final DecimalFormat df = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.GERMAN));
             df.setMaximumFractionDigits(5);
-            for (int i = 0; i < 10_000; i++) {
-                w.write(Integer.toString(i));
-                final SimulationRun run = new SimulationRun();
-                for (final RandomVariable var : v) {
-                    var.observe(r, run);
+            if (samplingMode == SamplingMode.MONTE_CARLO) {
+                this.printSampleBySample(w, df, inst, seed, v, columns);
+            } else {
+                this.printBlockwise(w, df, inst, seed, inMap, columns);
+            }
+        }
+    }
+
+    private void printSampleBySample(
+            final BufferedWriter w,
+            final DecimalFormat df,
+            final Instance inst,
+            final long seed,
+            final List<RandomVariable> v,
+            final VarId... columns) throws IOException {
+        final RandomSource r = RandomSource.splittable(seed);
+        final SimulationRun run = inst.newRun();
+        final int[] slots = new int[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            slots[c] = inst.slots.slotOf(columns[c]);
+        }
+        for (int i = 0; i < PRINTED_SAMPLE_COUNT; i++) {
+            w.write(Integer.toString(i));
+            run.reset();
+            for (final RandomVariable var : v) {
+                var.observe(r, run);
+            }
+            for (int c = 0; c < columns.length; c++) {
+                if (!run.hasPersistentValue(slots[c])) {
+                    throw new AssertionError("variable was not persisted: " + columns[c]);
                 }
-                for (final VarId colName : columns) {
-                    final Quantity q = run.getPersistentValue(colName);
+                w.write(';');
+                w.write(df.format(run.getPersistentNumber(slots[c])));
+            }
+            w.write('\n');
+        }
+    }
+
+    private void printBlockwise(
+            final BufferedWriter w,
+            final DecimalFormat df,
+            final Instance inst,
+            final long seed,
+            final List<VarId> inMap,
+            final VarId... columns) throws IOException {
+        final CompiledProgram program = inst.compile(inMap.toArray(new VarId[inMap.size()]));
+        final UniformPoints points = UniformPoints.create(
+                inst.getSamplingMode(), seed, program.getDimensionCount(), PRINTED_SAMPLE_COUNT);
+        final double[][] registers = program.newRegisters(SimulationBatch.DEFAULT_SIZE);
+        for (int base = 0; base < PRINTED_SAMPLE_COUNT; base += SimulationBatch.DEFAULT_SIZE) {
+            final SimulationBatch batch = new SimulationBatch(SimulationBatch.DEFAULT_SIZE, inst.slots, base, points);
+            program.execute(RandomSource.forStream(seed, base / SimulationBatch.DEFAULT_SIZE), batch, registers);
+            final int max = Math.min(SimulationBatch.DEFAULT_SIZE, PRINTED_SAMPLE_COUNT - base);
+            for (int row = 0; row < max; row++) {
+                w.write(Integer.toString(base + row));
+                for (final VarId col : columns) {
+                    if (!batch.hasPersistentValue(col, row)) {
+                        throw new AssertionError("variable was not persisted: " + col);
+                    }
                     w.write(';');
-                    w.write(df.format(q.getNumber()));
+                    w.write(df.format(batch.getPersistentNumber(col, row)));
                 }
                 w.write('\n');
             }
@@ -37,22 +37,31 @@ public class NormalCombRandomVariable extends RandomVariable {
 
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
+        return Quantity.of(this.sample(r), this.unit);
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        for (int i = 0; i < batch.size(); i++) {
+            out[i] = this.sample(r);
+        }
+    }
+
+    private double sample(final RandomSource r) {
         final boolean left = r.nextBool(0.5);
-        final double value;
         if (left) {
             if (this.sdLeft == 0.0) {
-                value = r.nextBool(0.95) ? this.mode : Math.nextDown(this.mode);
+                return r.nextBool(0.95) ? this.mode : Math.nextDown(this.mode);
             } else {
-                value = this.mode - Math.abs(r.nextGaussian() * this.sdLeft);
+                return this.mode - Math.abs(r.nextNormal() * this.sdLeft);
             }
         } else {
             if (this.sdRight == 0.0) {
-                value = r.nextBool(0.95) ? this.mode : Math.nextUp(this.mode);
+                return r.nextBool(0.95) ? this.mode : Math.nextUp(this.mode);
             } else {
-                value = this.mode + Math.abs(r.nextGaussian() * this.sdRight);
+                return this.mode + Math.abs(r.nextNormal() * this.sdRight);
             }
         }
-        return Quantity.of(value, this.unit);
     }
 
     @Override
@@ -15,7 +15,11 @@
  */
 package de.set.aie.base;
 
-public class NormalRandomVariable extends RandomVariable {
+import org.apache.commons.math3.special.Erf;
+
+public class NormalRandomVariable extends RandomVariable implements ContinuousDistribution, SummableDistribution {
+
+    private static final double SQRT2 = Math.sqrt(2.0);
 
     private final double mean;
     private final double sd;
@@ -29,7 +33,88 @@ public class NormalRandomVariable extends RandomVariable {
 
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
-        return Quantity.of(r.nextGaussian() * this.sd + this.mean, this.unit);
+        return Quantity.of(r.nextNormal() * this.sd + this.mean, this.unit);
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final int size = batch.size();
+        r.nextNormals(out, size);
+        for (int i = 0; i < size; i++) {
+            out[i] = out[i] * this.sd + this.mean;
+        }
+    }
+
+    /**
+     * Distribution function of the standard normal distribution.
+     */
+    static double standardCdf(final double z) {
+        return 0.5 * Erf.erfc(-z / SQRT2);
+    }
+
+    /**
+     * Quantile function of the standard normal distribution.
+     */
+    static double standardQuantile(final double p) {
+        return -SQRT2 * Erf.erfcInv(2.0 * p);
+    }
+
+    @Override
+    public double cdf(final double x) {
+        if (this.sd == 0.0) {
+            return x < this.mean ? 0.0 : 1.0;
+        }
+        return standardCdf((x - this.mean) / this.sd);
+    }
+
+    @Override
+    public double quantile(final double p) {
+        if (this.sd == 0.0) {
+            return this.mean;
+        }
+        return this.mean + this.sd * standardQuantile(p);
+    }
+
+    @Override
+    public double survival(final double x) {
+        if (this.sd == 0.0) {
+            return x < this.mean ? 1.0 : 0.0;
+        }
+        // the distribution is symmetric
+        return standardCdf((this.mean - x) / this.sd);
+    }
+
+    @Override
+    public double inverseSurvival(final double p) {
+        if (this.sd == 0.0) {
+            return this.mean;
+        }
+        return this.mean - this.sd * standardQuantile(p);
+    }
+
+    @Override
+    public RandomVariable bound(final double lowerBound, final double upperBound) {
+        return new TruncatedRandomVariable(this, this, lowerBound, upperBound);
+    }
+
+    @Override
+    public double mean() {
+        return this.mean;
+    }
+
+    @Override
+    public double variance() {
+        return this.sd * this.sd;
+    }
+
+    @Override
+    public double standardizedThirdMomentBound() {
+        return 2.0 * Math.sqrt(2.0 / Math.PI);
+    }
+
+    @Override
+    public boolean isSumNormal() {
+        return true;
     }
 
     @Override
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Operands of an n-ary node ({@link RandomVariableNarySum}, {@link RandomVariableNaryProduct}). When a node is
+ * extended by further operands, the new node can reuse the buffer of the old one as long as nobody else extended
+ * it before. This way a chain like {@code a.plus(b).plus(c)...} needs amortized constant time per operand, like
+ * appending to a list. The first {@code count} entries of a buffer are never changed.
+ */
+final class OperandChain {
+
+    private RandomVariable[] items;
+    private int size;
+
+    OperandChain(final List<? extends RandomVariable> operands) {
+        this.items = operands.toArray(new RandomVariable[Math.max(4, operands.size())]);
+        this.size = operands.size();
+    }
+
+    /**
+     * Appends the given operands if the node with the given operand count was the last one to extend this chain.
+     * @return The buffer with the appended operands, or null if the chain was extended by another node.
+     */
+    synchronized RandomVariable[] tryAppend(final int count, final List<RandomVariable> operands) {
+        if (count != this.size) {
+            return null;
+        }
+        final int newSize = this.size + operands.size();
+        if (newSize > this.items.length) {
+            this.items = Arrays.copyOf(this.items, Math.max(newSize, 2 * this.items.length));
+        }
+        for (final RandomVariable v : operands) {
+            this.items[this.size++] = v;
+        }
+        return this.items;
+    }
+
+    synchronized RandomVariable[] getItems() {
+        return this.items;
+    }
+
+}
@@ -19,6 +19,21 @@ public class PersistentRandomVariable extends RandomVariable {
 
     private final RandomVariable base;
     private final VarId name;
+    private SlotCache slotCache;
+
+    /**
+     * The slot of the variable in the last used table. Immutable, so that it can be shared between threads
+     * without synchronization.
+     */
+    private static final class SlotCache {
+        private final VarSlots slots;
+        private final int slot;
+
+        SlotCache(final VarSlots slots, final int slot) {
+            this.slots = slots;
+            this.slot = slot;
+        }
+    }
 
     PersistentRandomVariable(VarId name, final RandomVariable randomVariable) {
         this.name = name;
@@ -28,18 +43,49 @@ public class PersistentRandomVariable extends RandomVariable {
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
         try {
-            if (!run.hasPersistentValue(this.name)) {
+            final int slot = this.slotIn(run.getSlots());
+            if (!run.hasPersistentValue(slot)) {
                 final Quantity v = this.base.observe(r, run);
-                run.persist(this.name, v);
+                run.persist(slot, v.getNumber(), v.getUnit());
                 return v;
             } else {
-                return run.getPersistentValue(this.name);
+                return run.getPersistentValue(slot);
+            }
+        } catch (final Throwable t) {
+            throw new RuntimeException("problem with " + this.name, t);
+        }
+    }
+
+    private int slotIn(final VarSlots slots) {
+        final SlotCache c = this.slotCache;
+        if (c != null && c.slots == slots) {
+            return c.slot;
+        }
+        final int slot = slots.slotOf(this.name);
+        this.slotCache = new SlotCache(slots, slot);
+        return slot;
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        try {
+            double[] column = batch.getPersistentColumn(this.name);
+            if (column == null) {
+                column = new double[batch.size()];
+                this.base.observeBatch(r, batch, column);
+                batch.persist(this.name, column, this.getUnit());
             }
+            System.arraycopy(column, 0, out, 0, batch.size());
         } catch (final Throwable t) {
             throw new RuntimeException("problem with " + this.name, t);
         }
     }
 
+    @Override
+    int compile(final ProgramBuilder b) {
+        return b.compilePersistent(this.name, this.base);
+    }
+
     @Override
     public QUnit getUnit() {
         return this.base.getUnit();
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lowers a graph of random variables to a flat list of instructions over numbered double registers.
+ * Every variable returns the register that contains its values, persistent variables are compiled only once
+ * and their register is shared by all users.
+ * For the stratified {@link SamplingMode}s, every continuous leaf distribution that is evaluated once per sample
+ * gets its own dimension of the point set.
+ */
+final class ProgramBuilder {
+
+    /**
+     * Longest chain of operands that is compiled to binary instructions, see {@link #emitChain}.
+     */
+    static final int MAX_BINARY_CHAIN = 16;
+
+    private final List<QUnit> registerUnits = new ArrayList<>();
+    private final List<Instruction> root = new ArrayList<>();
+    private final Map<VarId, Integer> persistentRegisters = new HashMap<>();
+    private final SamplingMode samplingMode;
+    private List<Instruction> current = this.root;
+    private int dimensionCount;
+
+    public ProgramBuilder() {
+        this(SamplingMode.MONTE_CARLO);
+    }
+
+    public ProgramBuilder(final SamplingMode samplingMode) {
+        this.samplingMode = samplingMode;
+    }
+
+    public int compile(final RandomVariable v) {
+        // blocks can be executed several times per sample, so they need independent random numbers
+        if (this.samplingMode != SamplingMode.MONTE_CARLO
+                && this.current == this.root
+                && v instanceof ContinuousDistribution) {
+            final int target = this.newRegister(v.getUnit());
+            this.emit(new Instructions.Quantile((ContinuousDistribution) v, this.dimensionCount++, target));
+            return target;
+        }
+        return v.compile(this);
+    }
+
+    /**
+     * Compiles the given variable into a separate block that is not executed as part of the current
+     * instruction sequence. Persistent variables are still compiled into the main sequence, so that
+     * executing the block repeatedly does not change them.
+     */
+    public InstructionBlock compileBlock(final RandomVariable v) {
+        final List<Instruction> saved = this.current;
+        this.current = new ArrayList<>();
+        try {
+            final int result = this.compile(v);
+            return new InstructionBlock(this.current.toArray(new Instruction[this.current.size()]), result);
+        } finally {
+            this.current = saved;
+        }
+    }
+
+    public int compilePersistent(final VarId name, final RandomVariable base) {
+        final Integer existing = this.persistentRegisters.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        final List<Instruction> saved = this.current;
+        this.current = this.root;
+        try {
+            final int register = this.compile(base);
+            this.emit(new Instructions.Persist(name, register, this.getUnit(register)));
+            this.persistentRegisters.put(name, register);
+            return register;
+        } finally {
+            this.current = saved;
+        }
+    }
+
+    public int newRegister(final QUnit unit) {
+        this.registerUnits.add(unit);
+        return this.registerUnits.size() - 1;
+    }
+
+    public QUnit getUnit(final int register) {
+        return this.registerUnits.get(register);
+    }
+
+    public void emit(final Instruction instruction) {
+        this.current.add(instruction);
+    }
+
+    /**
+     * Ensures that the two registers have the same unit. Done once at compile time instead of for every sample.
+     */
+    public void checkSameUnit(final int r1, final int r2) {
+        if (!this.getUnit(r1).equals(this.getUnit(r2))) {
+            throw new AssertionError("incompatible units: " + this.getUnit(r1) + " vs " + this.getUnit(r2));
+        }
+    }
+
+    /**
+     * Combines the registers from left to right with the operator ({@code PLUS} or {@code TIMES}) and returns the
+     * register with the result. Short chains become {@link Instructions.Binary} instructions, so that they can be
+     * part of generated code. Long chains (e.g. from {@link TimeSeries#collapse}) become a single
+     * {@link Instructions.Accumulate}, that needs no register for every intermediate result.
+     */
+    int emitChain(final Instructions.Operator op, final int[] inputs, final QUnit unit) {
+        if (inputs.length == 1 || inputs.length > MAX_BINARY_CHAIN) {
+            final int target = this.newRegister(unit);
+            this.emit(new Instructions.Accumulate(op, inputs, target));
+            return target;
+        }
+        int result = inputs[0];
+        for (int k = 1; k < inputs.length; k++) {
+            final QUnit u = op == Instructions.Operator.TIMES
+                    ? this.getUnit(result).times(this.getUnit(inputs[k]))
+                    : this.getUnit(result);
+            final int target = this.newRegister(u);
+            this.emit(new Instructions.Binary(op, result, inputs[k], target));
+            result = target;
+        }
+        return result;
+    }
+
+    public CompiledProgram build(final int[] outputs) {
+        return new CompiledProgram(
+                this.root.toArray(new Instruction[this.root.size()]),
+                this.registerUnits.size(),
+                outputs,
+                this.dimensionCount);
+    }
+
+}
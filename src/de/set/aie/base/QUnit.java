@@ -16,84 +16,160 @@
 package de.set.aie.base;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class QUnit {
+/**
+ * The unit of a quantity, a product of powers of base units (e.g. EUR/h). Base units are numbered in a registry,
+ * and a unit is stored as the vector of exponents of the base units. Units are interned, so that equal units are
+ * the same object, and the results of {@link #times(QUnit)} and {@link #div(QUnit)} are cached.
+ */
+public final class QUnit {
+
+    private static final Map<String, Integer> BASE_UNIT_IDS = new ConcurrentHashMap<>();
+    private static final List<String> BASE_UNIT_NAMES = new ArrayList<>();
+    private static final Map<Exponents, QUnit> UNITS = new ConcurrentHashMap<>();
+    private static final Map<String, QUnit> NAMED_UNITS = new ConcurrentHashMap<>();
+    private static final QUnit SCALAR = intern(new int[0]);
+
+    private final int[] exponents;
+    private final int hash;
+    private final String string;
+    private final Map<QUnit, QUnit> products = new ConcurrentHashMap<>();
+    private final Map<QUnit, QUnit> quotients = new ConcurrentHashMap<>();
+
+    /**
+     * Exponent vector as a map key, without trailing zeros.
+     */
+    private static final class Exponents {
+        private final int[] values;
+
+        Exponents(final int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.values);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Exponents && Arrays.equals(this.values, ((Exponents) o).values);
+        }
+    }
+
+    private QUnit(final int[] exponents) {
+        this.exponents = exponents;
+        this.hash = Arrays.hashCode(exponents);
+        this.string = format(exponents);
+    }
 
-    private final List<String> numer;
-    private final List<String> denom;
+    private static QUnit intern(final int[] exponents) {
+        int length = exponents.length;
+        while (length > 0 && exponents[length - 1] == 0) {
+            length--;
+        }
+        final Exponents key = new Exponents(Arrays.copyOf(exponents, length));
+        return UNITS.computeIfAbsent(key, (Exponents k) -> new QUnit(k.values));
+    }
 
-    private QUnit(final List<String> n, final List<String> d) {
-        final Iterator<String> iter = n.iterator();
-        while (iter.hasNext()) {
-            final String v = iter.next();
-            if (d.contains(v)) {
-                d.remove(v);
-                iter.remove();
+    private static int baseUnitId(final String name) {
+        return BASE_UNIT_IDS.computeIfAbsent(name, (String n) -> {
+            synchronized (BASE_UNIT_NAMES) {
+                BASE_UNIT_NAMES.add(n);
+                return BASE_UNIT_NAMES.size() - 1;
             }
+        });
+    }
+
+    private static String baseUnitName(final int id) {
+        synchronized (BASE_UNIT_NAMES) {
+            return BASE_UNIT_NAMES.get(id);
         }
-        Collections.sort(n);
-        Collections.sort(d);
-        this.numer = n;
-        this.denom = d;
     }
 
     public static QUnit of(final String name) {
-        return new QUnit(Collections.singletonList(name), Collections.emptyList());
+        return NAMED_UNITS.computeIfAbsent(name, (String n) -> {
+            final int[] exponents = new int[baseUnitId(n) + 1];
+            exponents[exponents.length - 1] = 1;
+            return intern(exponents);
+        });
     }
 
     public static QUnit scalar() {
-        return new QUnit(Collections.emptyList(), Collections.emptyList());
+        return SCALAR;
     }
 
     @Override
     public int hashCode() {
-        return this.numer.hashCode() + 23 * this.denom.hashCode();
+        return this.hash;
     }
 
     @Override
     public boolean equals(final Object o) {
-        if (!(o instanceof QUnit)) {
-            return false;
-        }
-        final QUnit other = (QUnit) o;
-        return this.numer.equals(other.numer) && this.denom.equals(other.denom);
+        // units are interned
+        return this == o;
     }
 
     @Override
     public String toString() {
+        return this.string;
+    }
+
+    private static String format(final int[] exponents) {
+        // base units sorted by name, repeated according to the exponent
+        final Map<String, Integer> sorted = new TreeMap<>();
+        for (int i = 0; i < exponents.length; i++) {
+            if (exponents[i] != 0) {
+                sorted.put(baseUnitName(i), exponents[i]);
+            }
+        }
+        final List<String> numer = new ArrayList<>();
+        final List<String> denom = new ArrayList<>();
+        for (final Map.Entry<String, Integer> e : sorted.entrySet()) {
+            for (int i = 0; i < Math.abs(e.getValue()); i++) {
+                (e.getValue() > 0 ? numer : denom).add(e.getKey());
+            }
+        }
         final String ns;
-        if (this.numer.isEmpty()) {
-            ns = this.denom.isEmpty() ? "" : "1";
+        if (numer.isEmpty()) {
+            ns = denom.isEmpty() ? "" : "1";
         } else {
-            ns = String.join("*", this.numer);
+            ns = String.join("*", numer);
         }
-        if (this.denom.isEmpty()) {
+        if (denom.isEmpty()) {
             return ns;
         } else {
-            return ns + "/" + String.join("*", this.denom);
+            return ns + "/" + String.join("*", denom);
         }
     }
 
     public QUnit times(final QUnit unit) {
-        final List<String> n = this.combine(this.numer, unit.numer);
-        final List<String> d = this.combine(this.denom, unit.denom);
-        return new QUnit(n, d);
+        final QUnit cached = this.products.get(unit);
+        if (cached != null) {
+            return cached;
+        }
+        return this.products.computeIfAbsent(unit, (QUnit u) -> this.combine(u, 1));
     }
 
     public QUnit div(final QUnit unit) {
-        final List<String> n = this.combine(this.numer, unit.denom);
-        final List<String> d = this.combine(this.denom, unit.numer);
-        return new QUnit(n, d);
+        final QUnit cached = this.quotients.get(unit);
+        if (cached != null) {
+            return cached;
+        }
+        return this.quotients.computeIfAbsent(unit, (QUnit u) -> this.combine(u, -1));
     }
 
-    private List<String> combine(final List<String> l1, final List<String> l2) {
-        final List<String> combined = new ArrayList<>();
-        combined.addAll(l1);
-        combined.addAll(l2);
-        return combined;
+    private QUnit combine(final QUnit other, final int sign) {
+        final int[] combined = Arrays.copyOf(this.exponents, Math.max(this.exponents.length, other.exponents.length));
+        for (int i = 0; i < other.exponents.length; i++) {
+            combined[i] += sign * other.exponents[i];
+        }
+        return intern(combined);
     }
 
 }
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A mergeable sketch of a distribution of numbers that answers quantile queries with bounded memory (a KLL sketch,
+ * see Karnin, Lang and Liberty: "Optimal Quantile Approximation in Streams"). The numbers are kept in levels, an
+ * item on level h stands for 2^h of the added numbers. When a level is full, it is sorted and every second item is
+ * moved to the next level. The memory needed grows only with the logarithm of the count, and the rank error is
+ * about 1.5 % for the default k of 200. Up to k numbers, the sketch is exact.
+ * <p>
+ * Mean, minimum and maximum are tracked exactly. The sketch is deterministic: which half of a level is kept is
+ * decided by a pseudo random generator with a fixed start value, so that the same numbers added and merged in the
+ * same order give the same result.
+ */
+final class QuantileSketch {
+
+    static final int DEFAULT_K = 200;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 8;
+
+    private final int k;
+    private final List<double[]> levels = new ArrayList<>();
+    private int[] sizes = new int[0];
+    private int[] capacities = new int[0];
+    private long randomState = 0x9E3779B97F4A7C15L;
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    QuantileSketch(final int k) {
+        assert k >= 8;
+        this.k = k;
+        this.addLevel();
+    }
+
+    public void add(final double value) {
+        this.count++;
+        final double delta = value - this.mean;
+        this.mean += delta / this.count;
+        this.m2 += delta * (value - this.mean);
+        this.min = Math.min(this.min, value);
+        this.max = Math.max(this.max, value);
+
+        this.append(0, value);
+        if (this.sizes[0] >= this.capacities[0]) {
+            this.compress();
+        }
+    }
+
+    /**
+     * Adds all numbers in the given range of the array.
+     */
+    public void addAll(final double[] values, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            this.add(values[i]);
+        }
+    }
+
+    /**
+     * Adds the numbers of the other sketch to this one. The other sketch is not changed.
+     */
+    public void merge(final QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        final long n = this.count + other.count;
+        final double delta = other.mean - this.mean;
+        this.m2 += other.m2 + delta * delta * ((double) this.count * other.count / n);
+        this.mean += delta * other.count / n;
+        this.count = n;
+        this.min = Math.min(this.min, other.min);
+        this.max = Math.max(this.max, other.max);
+
+        for (int h = 0; h < other.levels.size(); h++) {
+            final double[] items = other.levels.get(h);
+            for (int i = 0; i < other.sizes[h]; i++) {
+                this.append(h, items[i]);
+            }
+        }
+        this.compress();
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public Mean getMean() {
+        return this.count == 0 ? Mean.undefined() : new Mean(this.count, this.mean, this.m2);
+    }
+
+    public double getMin() {
+        return this.min;
+    }
+
+    public double getMax() {
+        return this.max;
+    }
+
+    /**
+     * Returns the approximate quantile: the smallest number such that more than the fraction p of all numbers is
+     * less than or equal to it. For an exact sketch, this is the element at index floor(p * count) of the sorted
+     * numbers.
+     */
+    public double quantile(final double p) {
+        assert this.count > 0;
+        int total = 0;
+        for (final int size : this.sizes) {
+            total += size;
+        }
+        final double[] values = new double[total];
+        final long[] weights = new long[total];
+        int n = 0;
+        for (int h = 0; h < this.levels.size(); h++) {
+            final double[] items = this.levels.get(h);
+            for (int i = 0; i < this.sizes[h]; i++) {
+                values[n] = items[i];
+                weights[n] = 1L << h;
+                n++;
+            }
+        }
+        final Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (final Integer a, final Integer b) -> Double.compare(values[a], values[b]));
+        final long targetRank = (long) Math.floor(p * this.count);
+        long cumulative = 0;
+        for (final Integer i : order) {
+            cumulative += weights[i];
+            if (cumulative > targetRank) {
+                return values[i];
+            }
+        }
+        return this.max;
+    }
+
+    private void addLevel() {
+        final int height = this.levels.size() + 1;
+        this.sizes = Arrays.copyOf(this.sizes, height);
+        // the capacities depend on the number of levels, the lower the level, the smaller
+        this.capacities = new int[height];
+        for (int h = 0; h < height; h++) {
+            this.capacities[h] = Math.max(MIN_CAPACITY, (int) Math.ceil(this.k * Math.pow(CAPACITY_DECAY, height - 1 - h)));
+        }
+        this.levels.add(new double[this.capacities[height - 1]]);
+    }
+
+    private void append(final int level, final double value) {
+        while (level >= this.levels.size()) {
+            this.addLevel();
+        }
+        double[] items = this.levels.get(level);
+        if (this.sizes[level] == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+            this.levels.set(level, items);
+        }
+        items[this.sizes[level]++] = value;
+    }
+
+    private int nextBit() {
+        // xorshift64
+        long x = this.randomState;
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        this.randomState = x;
+        return (int) (x >>> 63);
+    }
+
+    /**
+     * Compacts levels, from the bottom, until every level is within its capacity.
+     */
+    private void compress() {
+        for (int h = 0; h < this.levels.size(); h++) {
+            if (this.sizes[h] < this.capacities[h]) {
+                continue;
+            }
+            final double[] items = this.levels.get(h);
+            final int size = this.sizes[h];
+            Arrays.sort(items, 0, size);
+            // an odd item stays on this level
+            final int compacted = size & ~1;
+            final int offset = this.nextBit();
+            for (int i = offset; i < compacted; i += 2) {
+                this.append(h + 1, items[i]);
+            }
+            if (compacted < size) {
+                items[0] = items[compacted];
+            }
+            this.sizes[h] = size - compacted;
+        }
+    }
+
+}
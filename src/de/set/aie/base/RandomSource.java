@@ -30,6 +30,10 @@ public interface RandomSource {
                 return r.nextInt(bound);
             }
             @Override
+            public long nextLong() {
+                return r.nextLong();
+            }
+            @Override
             public double nextGaussian() {
                 return r.nextGaussian();
             }
@@ -40,6 +44,22 @@ public interface RandomSource {
         };
     }
 
+    /**
+     * Returns a random source that does not need synchronization, see {@link SplittableRandomSource}.
+     */
+    public static RandomSource splittable(long seed) {
+        return new SplittableRandomSource(seed);
+    }
+
+    /**
+     * Returns the random source for the stream with the given index. The stream only depends on the seed and
+     * the index, so work that is split into indexed parts gets the same random numbers regardless of the
+     * order or the threads the parts are executed in.
+     */
+    public static RandomSource forStream(long seed, long index) {
+        return new SplittableRandomSource(SplittableRandomSource.streamSeed(seed, index));
+    }
+
     public abstract double nextDouble();
 
     public abstract int nextInt(int bound);
@@ -48,6 +68,33 @@ public interface RandomSource {
 
     public abstract RandomSource spawnChild();
 
+    /**
+     * Returns a uniformly distributed long. The default implementation combines two calls of
+     * {@link #nextInt(int)}, implementations should override it when they can do better.
+     */
+    public default long nextLong() {
+        return ((long) this.nextInt(1 << 16) << 48)
+            ^ ((long) this.nextInt(1 << 24) << 24)
+            ^ this.nextInt(1 << 24);
+    }
+
+    /**
+     * Returns a standard normally distributed number. Uses the ziggurat method, that is considerably faster
+     * than the polar method of {@link #nextGaussian()}.
+     */
+    public default double nextNormal() {
+        return Ziggurat.nextNormal(this);
+    }
+
+    /**
+     * Fills the first count entries of the array with standard normally distributed numbers.
+     */
+    public default void nextNormals(final double[] out, final int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = this.nextNormal();
+        }
+    }
+
     public default<T> T pickAtRandom(T[] array) {
         return array[this.nextInt(array.length)];
     }
@@ -60,6 +107,14 @@ public interface RandomSource {
         return this.nextDouble() < propabilityForTrue;
     }
 
+    /**
+     * Returns the number of successes in n independent trials with success probability p, in constant
+     * expected time (see {@link BinomialSampler}).
+     */
+    public default long nextBinomial(long n, double p) {
+        return BinomialSampler.sample(this, n, p);
+    }
+
     public default long round(double number) {
         double floor = Math.floor(number);
         return (long) floor + (nextBool(number - floor) ? 1 : 0);
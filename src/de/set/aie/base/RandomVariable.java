@@ -18,25 +18,50 @@ package de.set.aie.base;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Random;
 
 public abstract class RandomVariable {
 
     public abstract Quantity observe(RandomSource r, final SimulationRun run);
 
+    /**
+     * Observes a whole block of samples at once and writes their numbers to the first batch.size() elements of out.
+     * The default implementation observes the samples one by one, subclasses should override it with a
+     * loop over primitive arrays where possible.
+     */
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        for (int i = 0; i < batch.size(); i++) {
+            out[i] = this.observe(r, batch.getRun(i)).getNumber();
+        }
+    }
+
+    /**
+     * Lowers this variable to instructions of a {@link CompiledProgram} and returns the register with its values.
+     * The default implementation uses {@link #observeBatch(RandomSource, SimulationBatch, double[])}.
+     */
+    int compile(final ProgramBuilder b) {
+        final int target = b.newRegister(this.getUnit());
+        b.emit(new Instructions.Observe(this, target));
+        return target;
+    }
+
     public void simulateTo(final File file, final long seed) throws IOException {
-        final RandomSource r = RandomSource.wrap(new Random(seed));
+        final RandomSource r = RandomSource.splittable(seed);
         try (FileOutputStream out = new FileOutputStream(file)) {
+            final SimulationRun run = new SimulationRun();
             for (int i = 0; i < 10_000; i++) {
-                final Quantity q = this.observe(r, new SimulationRun());
+                run.reset();
+                final Quantity q = this.observe(r, run);
                 final String s = Double.toString(q.getNumber()).replace('.', ',') + ";" + q.getUnit() + "\n";
                 out.write(s.getBytes("UTF-8"));
             }
         }
     }
 
+    /**
+     * Returns the sum of both variables. Chains of additions are merged into one {@link RandomVariableNarySum}.
+     */
     public RandomVariable plus(final RandomVariable other) {
-        return new RandomVariableSum(this, other);
+        return RandomVariableNarySum.of(this, other);
     }
 
     public RandomVariable minus(final RandomVariable other) {
@@ -47,8 +72,12 @@ public abstract class RandomVariable {
         return new RandomVariableMax(this, other);
     }
 
+    /**
+     * Returns the product of both variables. Chains of multiplications are merged into one
+     * {@link RandomVariableNaryProduct}.
+     */
     public RandomVariable times(final RandomVariable other) {
-        return new RandomVariableProduct(this, other);
+        return RandomVariableNaryProduct.of(this, other);
     }
 
     public RandomVariable times(final Quantity factor) {
@@ -67,6 +96,15 @@ public abstract class RandomVariable {
         return new RandomVariableSumOfN(this, new FixedRandomVariable(Quantity.of(count, QUnit.scalar())));
     }
 
+    /**
+     * Like {@link #sumOfN(RandomVariable)}, but for large counts the sum may be sampled with a normal
+     * approximation, as long as its error (difference of the distribution functions) stays below the given bound.
+     * Sums of normal distributions are always sampled in one step, because that is exact.
+     */
+    public RandomVariable sumOfN(final RandomVariable count, final double maxApproximationError) {
+        return new RandomVariableSumOfN(this, count, maxApproximationError);
+    }
+
     public RandomVariable div(final RandomVariable other) {
         return new RandomVariableQuotient(this, other);
     }
@@ -80,7 +118,7 @@ public abstract class RandomVariable {
     }
 
     public RandomVariable bound(final int lowerBound, final int upperBound) {
-        return new RangeBoundRandomVariable(this, lowerBound, upperBound);
+        return this.bound((double) lowerBound, (double) upperBound);
     }
 
     public RandomVariable lowerBound(final double lowerBound) {
@@ -97,13 +135,51 @@ public abstract class RandomVariable {
 
     public abstract QUnit getUnit();
 
+    /**
+     * Returns the unit of both variables, for operations that need equal units.
+     */
+    static QUnit sameUnit(final RandomVariable r1, final RandomVariable r2) {
+        if (!r1.getUnit().equals(r2.getUnit())) {
+            throw new AssertionError("incompatible units: " + r1.getUnit() + " vs " + r2.getUnit());
+        }
+        return r1.getUnit();
+    }
+
     public abstract VarKind getType();
 
     public Sample sample(final long seed, final int sampleCount) {
         final double[] numbers = new double[sampleCount];
-        final RandomSource r = RandomSource.wrap(new Random(seed));
-        for (int i = 0; i < sampleCount; i++) {
-            numbers[i] = this.observe(r, new SimulationRun()).getNumber();
+        final RandomSource r = RandomSource.splittable(seed);
+        final double[] buffer = new double[Math.min(sampleCount, SimulationBatch.DEFAULT_SIZE)];
+        for (int i = 0; i < sampleCount; i += buffer.length) {
+            final int size = Math.min(buffer.length, sampleCount - i);
+            this.observeBatch(r, new SimulationBatch(size), buffer);
+            System.arraycopy(buffer, 0, numbers, i, size);
+        }
+        return new Sample(numbers, this.getUnit());
+    }
+
+    /**
+     * Samples this variable with the given {@link SamplingMode}. For {@link SamplingMode#MONTE_CARLO}, this is the
+     * same as {@link #sample(long, int)}.
+     */
+    public Sample sample(final long seed, final int sampleCount, final SamplingMode samplingMode) {
+        if (samplingMode == SamplingMode.MONTE_CARLO) {
+            return this.sample(seed, sampleCount);
+        }
+        final ProgramBuilder b = new ProgramBuilder(samplingMode);
+        final CompiledProgram program = b.build(new int[] {b.compile(this)});
+        final UniformPoints points = UniformPoints.create(samplingMode, seed, program.getDimensionCount(), sampleCount);
+        final VarSlots slots = new VarSlots();
+        final double[][] registers = program.newRegisters(SimulationBatch.DEFAULT_SIZE);
+        final double[] numbers = new double[sampleCount];
+        for (int i = 0; i < sampleCount; i += SimulationBatch.DEFAULT_SIZE) {
+            final int size = Math.min(SimulationBatch.DEFAULT_SIZE, sampleCount - i);
+            program.execute(
+                    RandomSource.forStream(seed, i / SimulationBatch.DEFAULT_SIZE),
+                    new SimulationBatch(size, slots, i, points),
+                    registers);
+            System.arraycopy(registers[program.getOutputRegister(0)], 0, numbers, i, size);
         }
         return new Sample(numbers, this.getUnit());
     }
@@ -113,12 +189,15 @@ public abstract class RandomVariable {
     }
 
     public Mean mean(final long seed, final int sampleCount) {
-        double sum = 0.0;
-        final RandomSource r = RandomSource.wrap(new Random(seed));
-        for (int i = 0; i < sampleCount; i++) {
-            sum += this.observe(r, new SimulationRun()).getNumber();
+        Mean ret = Mean.undefined();
+        final RandomSource r = RandomSource.splittable(seed);
+        final double[] buffer = new double[Math.min(sampleCount, SimulationBatch.DEFAULT_SIZE)];
+        for (int i = 0; i < sampleCount; i += buffer.length) {
+            final int size = Math.min(buffer.length, sampleCount - i);
+            this.observeBatch(r, new SimulationBatch(size), buffer);
+            ret = ret.add(Mean.of(buffer, 0, size));
         }
-        return new Mean(sum, sampleCount);
+        return ret;
     }
 
 }
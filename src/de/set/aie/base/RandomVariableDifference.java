@@ -19,20 +19,43 @@ public class RandomVariableDifference extends RandomVariable {
 
     private final RandomVariable r1;
     private final RandomVariable r2;
+    private final QUnit unit;
 
     public RandomVariableDifference(final RandomVariable r1, final RandomVariable r2) {
         this.r1 = r1;
         this.r2 = r2;
+        this.unit = sameUnit(r1, r2);
     }
 
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
-        return this.r1.observe(r, run).minus(this.r2.observe(r, run));
+        return Quantity.of(this.r1.observe(r, run).getNumber() - this.r2.observe(r, run).getNumber(), this.unit);
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final int size = batch.size();
+        final double[] other = new double[size];
+        this.r1.observeBatch(r, batch, out);
+        this.r2.observeBatch(r, batch, other);
+        for (int i = 0; i < size; i++) {
+            out[i] = out[i] - other[i];
+        }
+    }
+
+    @Override
+    int compile(final ProgramBuilder b) {
+        final int in1 = b.compile(this.r1);
+        final int in2 = b.compile(this.r2);
+        b.checkSameUnit(in1, in2);
+        final int target = b.newRegister(b.getUnit(in1));
+        b.emit(new Instructions.Binary(Instructions.Operator.MINUS, in1, in2, target));
+        return target;
     }
 
     @Override
     public QUnit getUnit() {
-        return this.r1.getUnit();
+        return this.unit;
     }
 
     @Override
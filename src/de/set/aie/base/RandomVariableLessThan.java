@@ -24,13 +24,39 @@ public class RandomVariableLessThan extends RandomVariable {
     private final RandomVariable r2;
 
     public RandomVariableLessThan(final RandomVariable r1, final RandomVariable r2) {
+        if (!r1.getUnit().equals(r2.getUnit())) {
+            throw new IllegalArgumentException("Incompatible units: " + r1.getUnit() + " vs " + r2.getUnit());
+        }
         this.r1 = r1;
         this.r2 = r2;
     }
 
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
-        return this.r1.observe(r, run).compareTo(this.r2.observe(r, run)) < 0 ? ONE : ZERO;
+        return Double.compare(this.r1.observe(r, run).getNumber(), this.r2.observe(r, run).getNumber()) < 0 ? ONE : ZERO;
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final int size = batch.size();
+        final double[] other = new double[size];
+        this.r1.observeBatch(r, batch, out);
+        this.r2.observeBatch(r, batch, other);
+        for (int i = 0; i < size; i++) {
+            out[i] = out[i] < other[i] ? 1.0 : 0.0;
+        }
+    }
+
+    @Override
+    int compile(final ProgramBuilder b) {
+        final int in1 = b.compile(this.r1);
+        final int in2 = b.compile(this.r2);
+        if (!b.getUnit(in1).equals(b.getUnit(in2))) {
+            throw new IllegalArgumentException("Incompatible units: " + b.getUnit(in1) + " vs " + b.getUnit(in2));
+        }
+        final int target = b.newRegister(QUnit.scalar());
+        b.emit(new Instructions.Binary(Instructions.Operator.LESS_THAN, in1, in2, target));
+        return target;
     }
 
     @Override
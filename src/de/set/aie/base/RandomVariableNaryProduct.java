@@ -0,0 +1,136 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Product of any number of variables, the counterpart of {@link RandomVariableNarySum} for
+ * {@link RandomVariable#times(RandomVariable)}. The unit is the product of the units of the operands.
+ */
+public class RandomVariableNaryProduct extends RandomVariable {
+
+    private final OperandChain chain;
+    private final RandomVariable[] operands;
+    private final int count;
+    private final QUnit unit;
+
+    public RandomVariableNaryProduct(final List<? extends RandomVariable> operands) {
+        assert !operands.isEmpty();
+        this.chain = new OperandChain(operands);
+        this.operands = this.chain.getItems();
+        this.count = operands.size();
+        QUnit u = this.operands[0].getUnit();
+        for (int k = 1; k < this.count; k++) {
+            u = u.times(this.operands[k].getUnit());
+        }
+        this.unit = u;
+    }
+
+    private RandomVariableNaryProduct(
+            final OperandChain chain, final RandomVariable[] operands, final int count, final QUnit unit) {
+        this.chain = chain;
+        this.operands = operands;
+        this.count = count;
+        this.unit = unit;
+    }
+
+    /**
+     * Returns the product of both variables, with the operands of products merged into the result.
+     */
+    static RandomVariableNaryProduct of(final RandomVariable r1, final RandomVariable r2) {
+        final List<RandomVariable> more = new ArrayList<>();
+        addOperands(more, r2);
+        if (!(r1 instanceof RandomVariableNaryProduct)) {
+            more.add(0, r1);
+            return new RandomVariableNaryProduct(more);
+        }
+        final RandomVariableNaryProduct left = (RandomVariableNaryProduct) r1;
+        QUnit unit = left.unit;
+        for (final RandomVariable v : more) {
+            unit = unit.times(v.getUnit());
+        }
+        final RandomVariable[] appended = left.chain.tryAppend(left.count, more);
+        if (appended != null) {
+            return new RandomVariableNaryProduct(left.chain, appended, left.count + more.size(), unit);
+        }
+        final List<RandomVariable> all = new ArrayList<>();
+        addOperands(all, left);
+        all.addAll(more);
+        return new RandomVariableNaryProduct(all);
+    }
+
+    private static void addOperands(final List<RandomVariable> target, final RandomVariable v) {
+        if (v instanceof RandomVariableNaryProduct) {
+            final RandomVariableNaryProduct n = (RandomVariableNaryProduct) v;
+            for (int k = 0; k < n.count; k++) {
+                target.add(n.operands[k]);
+            }
+        } else {
+            target.add(v);
+        }
+    }
+
+    int getOperandCount() {
+        return this.count;
+    }
+
+    @Override
+    public Quantity observe(final RandomSource r, final SimulationRun run) {
+        double product = this.operands[0].observe(r, run).getNumber();
+        for (int k = 1; k < this.count; k++) {
+            product *= this.operands[k].observe(r, run).getNumber();
+        }
+        return Quantity.of(product, this.unit);
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final int size = batch.size();
+        this.operands[0].observeBatch(r, batch, out);
+        if (this.count == 1) {
+            return;
+        }
+        final double[] other = new double[size];
+        for (int k = 1; k < this.count; k++) {
+            this.operands[k].observeBatch(r, batch, other);
+            for (int i = 0; i < size; i++) {
+                out[i] *= other[i];
+            }
+        }
+    }
+
+    @Override
+    int compile(final ProgramBuilder b) {
+        final int[] inputs = new int[this.count];
+        for (int k = 0; k < inputs.length; k++) {
+            inputs[k] = b.compile(this.operands[k]);
+        }
+        return b.emitChain(Instructions.Operator.TIMES, inputs, this.unit);
+    }
+
+    @Override
+    public QUnit getUnit() {
+        return this.unit;
+    }
+
+    @Override
+    public VarKind getType() {
+        return VarKind.C;
+    }
+
+}
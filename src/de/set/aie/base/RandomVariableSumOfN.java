@@ -15,30 +15,89 @@
  */
 package de.set.aie.base;
 
+/**
+ * Sum of a random number of independent draws of a variable. When the summand has known moments
+ * ({@link SummableDistribution}) and the count is large enough, the sum is sampled in one step, see
+ * {@link CompoundSum}, so that the effort per sample does not depend on the count.
+ */
 public class RandomVariableSumOfN extends RandomVariable {
 
     private final RandomVariable toSum;
     private final RandomVariable count;
+    private final CompoundSum compound;
+    private final QUnit unit;
 
     public RandomVariableSumOfN(final RandomVariable toSum, final RandomVariable count) {
+        this(toSum, count, 0.0);
+    }
+
+    /**
+     * Constructor.
+     * @param maxApproximationError The largest allowed difference between the distribution function of the
+     *      normal approximation for the sum and the exact one. With 0, only exact aggregations are used.
+     */
+    public RandomVariableSumOfN(final RandomVariable toSum, final RandomVariable count,
+            final double maxApproximationError) {
         this.toSum = toSum;
         this.count = count;
+        this.compound = CompoundSum.of(toSum, maxApproximationError);
+        this.unit = count.getUnit().times(toSum.getUnit());
     }
 
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
         final Quantity count = this.count.observe(r, run);
         final long max = Math.round(count.getNumber());
+        if (this.compound != null && this.compound.canAggregate(max)) {
+            return Quantity.of(this.compound.sample(r, max), this.unit);
+        }
         double sum = 0.0;
         for (long i = 0; i < max; i++) {
             sum += this.toSum.observe(r, run).getNumber();
         }
-        return Quantity.of(sum, this.getUnit());
+        return Quantity.of(sum, this.unit);
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final int size = batch.size();
+        final long[] counts = new long[size];
+        long maxCount = 0;
+        this.count.observeBatch(r, batch, out);
+        for (int i = 0; i < size; i++) {
+            counts[i] = Math.round(out[i]);
+            if (this.compound != null && this.compound.canAggregate(counts[i])) {
+                out[i] = this.compound.sample(r, counts[i]);
+                counts[i] = 0;
+            } else {
+                out[i] = 0.0;
+            }
+            maxCount = Math.max(maxCount, counts[i]);
+        }
+        // in every round, one summand is observed for all rows that still need one
+        final double[] summand = new double[size];
+        for (long round = 0; round < maxCount; round++) {
+            this.toSum.observeBatch(r, batch, summand);
+            for (int i = 0; i < size; i++) {
+                if (round < counts[i]) {
+                    out[i] += summand[i];
+                }
+            }
+        }
+    }
+
+    @Override
+    int compile(final ProgramBuilder b) {
+        final int cnt = b.compile(this.count);
+        final InstructionBlock block = b.compileBlock(this.toSum);
+        final int target = b.newRegister(b.getUnit(cnt).times(b.getUnit(block.getResult())));
+        b.emit(new Instructions.SumOfN(cnt, block, this.compound, target));
+        return target;
     }
 
     @Override
     public QUnit getUnit() {
-        return this.count.getUnit().times(this.toSum.getUnit());
+        return this.unit;
     }
 
     @Override
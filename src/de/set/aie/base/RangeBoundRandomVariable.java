@@ -50,6 +50,49 @@ public class RangeBoundRandomVariable extends RandomVariable {
         }
     }
 
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final int size = batch.size();
+        this.base.observeBatch(r, batch, out);
+        int outOfRange = this.countOutOfRange(out, size);
+        // same number of retries as in observe, but every retry is done for the whole batch
+        final double[] retry = new double[size];
+        for (int count = 0; count <= 10 && outOfRange > 0; count++) {
+            this.base.observeBatch(r, batch, retry);
+            for (int i = 0; i < size; i++) {
+                if (this.isOutOfRange(out[i]) && !this.isOutOfRange(retry[i])) {
+                    out[i] = retry[i];
+                    outOfRange--;
+                }
+            }
+        }
+        for (int i = 0; i < size && outOfRange > 0; i++) {
+            out[i] = Math.min(Math.max(out[i], this.lower), this.upper);
+        }
+    }
+
+    @Override
+    int compile(final ProgramBuilder b) {
+        final InstructionBlock block = b.compileBlock(this.base);
+        final int target = b.newRegister(b.getUnit(block.getResult()));
+        b.emit(new Instructions.Bound(block, this.lower, this.upper, target));
+        return target;
+    }
+
+    private int countOutOfRange(final double[] values, final int size) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (this.isOutOfRange(values[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isOutOfRange(final double value) {
+        return value < this.lower || value > this.upper;
+    }
+
     @Override
     public QUnit getUnit() {
         return this.base.getUnit();
@@ -17,28 +17,41 @@ package de.set.aie.base;
 
 import java.util.Arrays;
 
+/**
+ * Summary of the distribution of a variable. Backed either by all sampled numbers, or by a {@link QuantileSketch}
+ * that needs only bounded memory and gives approximate quantiles.
+ */
 public class Sample {
 
     private final double[] numbers;
+    private final QuantileSketch sketch;
     private final QUnit unit;
 
     Sample(final double[] numbers, final QUnit unit) {
         this.numbers = numbers;
+        this.sketch = null;
         this.unit = unit;
         Arrays.sort(numbers);
     }
 
+    Sample(final QuantileSketch sketch, final QUnit unit) {
+        assert sketch.getCount() > 0;
+        this.numbers = null;
+        this.sketch = sketch;
+        this.unit = unit;
+    }
+
     @Override
     public String toString() {
         final StringBuilder ret = new StringBuilder();
         ret.append(format("Mean:    ", this.meanQ())).append('\n');
-        ret.append(format("Min:     ", Quantity.of(this.numbers[0], this.unit))).append('\n');
-        ret.append(format("5% Quant:", Quantity.of(this.numbers[this.numbers.length / 20], this.unit))).append('\n');
-        ret.append(format("1. Quart:", Quantity.of(this.numbers[this.numbers.length / 4], this.unit))).append('\n');
+        ret.append(format("Min:     ", Quantity.of(this.min(), this.unit))).append('\n');
+        ret.append(format("5% Quant:", Quantity.of(this.quantile(1, 20), this.unit))).append('\n');
+        ret.append(format("1. Quart:", Quantity.of(this.quantile(1, 4), this.unit))).append('\n');
         ret.append(format("Median:  ", Quantity.of(this.median(), this.unit))).append('\n');
-        ret.append(format("3. Quart:", Quantity.of(this.numbers[this.numbers.length * 3 / 4], this.unit))).append('\n');
-        ret.append(format("95% Quan:", Quantity.of(this.numbers[this.numbers.length * 19 / 20], this.unit))).append('\n');
-        ret.append(format("Max:     ", Quantity.of(this.numbers[this.numbers.length - 1], this.unit))).append('\n');
+        ret.append(format("3. Quart:", Quantity.of(this.quantile(3, 4), this.unit))).append('\n');
+        ret.append(format("95% Quan:", Quantity.of(this.quantile(19, 20), this.unit))).append('\n');
+        ret.append(format("Max:     ", Quantity.of(this.max(), this.unit))).append('\n');
         return ret.toString();
     }
 
@@ -46,16 +59,31 @@ public class Sample {
         return String.format("%s %17s", string, q);
     }
 
+    private double quantile(final int numerator, final int denominator) {
+        if (this.sketch != null) {
+            return this.sketch.quantile((double) numerator / denominator);
+        }
+        return this.numbers[this.numbers.length * numerator / denominator];
+    }
+
+    private double min() {
+        return this.sketch != null ? this.sketch.getMin() : this.numbers[0];
+    }
+
+    private double max() {
+        return this.sketch != null ? this.sketch.getMax() : this.numbers[this.numbers.length - 1];
+    }
+
     public Quantity meanQ() {
         return Quantity.of(this.mean().get(), this.unit);
     }
 
     public Mean mean() {
-        return Mean.of(this.numbers);
+        return this.sketch != null ? this.sketch.getMean() : Mean.of(this.numbers);
     }
 
     public double median() {
-        return this.numbers[this.numbers.length / 2];
+        return this.quantile(1, 2);
     }
 
 }
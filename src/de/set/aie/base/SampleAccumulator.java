@@ -0,0 +1,38 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * Receives sampled values while they are created, so that statistics can be computed without keeping all numbers,
+ * see {@link Model.Instance#accumulate}. Every accumulator is only used by one thread at a time. The accumulators
+ * of several threads are merged at the end.
+ *
+ * @param <A> The type of the accumulator itself.
+ */
+public interface SampleAccumulator<A extends SampleAccumulator<A>> {
+
+    /**
+     * Adds a block of samples. The values of the i-th variable are in the i-th column, the first rows entries of
+     * every column are valid. The arrays may be reused after the call.
+     */
+    public abstract void addBlock(double[][] columns, int rows);
+
+    /**
+     * Adds everything the other accumulator received to this one.
+     */
+    public abstract void merge(A other);
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.Arrays;
+
+/**
+ * A variable whose values have already been sampled, one value per sample index. Used to reuse the samples of
+ * the parts of a model that do not change between evaluations. Can only be observed in the context of a
+ * {@link SimulationBatch}, because the row determines the value. Rows after the last sample, as they occur in
+ * the last batch, are filled with zero.
+ */
+final class SampleColumnRandomVariable extends RandomVariable {
+
+    private final double[] values;
+    private final QUnit unit;
+    private final VarKind type;
+
+    SampleColumnRandomVariable(final double[] values, final QUnit unit, final VarKind type) {
+        this.values = values;
+        this.unit = unit;
+        this.type = type;
+    }
+
+    @Override
+    public Quantity observe(final RandomSource r, final SimulationRun run) {
+        final int row = run.getRow();
+        if (row < 0) {
+            throw new IllegalStateException("sampled values can only be observed in a batch");
+        }
+        return Quantity.of(row < this.values.length ? this.values[row] : 0.0, this.unit);
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final int available = Math.max(0, Math.min(batch.size(), this.values.length - batch.getFirstRow()));
+        System.arraycopy(this.values, batch.getFirstRow(), out, 0, available);
+        Arrays.fill(out, available, batch.size(), 0.0);
+    }
+
+    @Override
+    public QUnit getUnit() {
+        return this.unit;
+    }
+
+    @Override
+    public VarKind getType() {
+        return this.type;
+    }
+
+}
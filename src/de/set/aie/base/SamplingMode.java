@@ -0,0 +1,46 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * Determines how the random numbers for the leaf distributions of a model are chosen. In the stratified modes,
+ * every continuous leaf distribution (see {@link ContinuousDistribution}) gets its own dimension of a point set
+ * in the unit cube and is sampled by its quantile function at these points. Such point sets cover the unit cube
+ * more evenly than independent random numbers, so estimates like means converge faster. Other nodes (discrete
+ * distributions, resampling of bounds, sums of a random number of terms) still use independent random numbers.
+ */
+public enum SamplingMode {
+
+    /**
+     * Independent random numbers for every sample. The error of an estimated mean decreases with the square root
+     * of the sample count.
+     */
+    MONTE_CARLO,
+
+    /**
+     * Latin hypercube sampling: for n samples, each dimension is divided into n intervals of equal probability,
+     * and each interval is hit exactly once, in a random order per dimension. As the design depends on n, the first
+     * samples of a larger sample are not a smaller sample.
+     */
+    LATIN_HYPERCUBE,
+
+    /**
+     * A Sobol sequence, scrambled with a random digital shift per dimension so that the estimates are unbiased.
+     * Works best when the sample count is a power of two.
+     */
+    SOBOL
+
+}
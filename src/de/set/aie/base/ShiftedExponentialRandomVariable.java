@@ -15,7 +15,8 @@
  */
 package de.set.aie.base;
 
-public class ShiftedExponentialRandomVariable extends RandomVariable {
+public class ShiftedExponentialRandomVariable extends RandomVariable
+        implements ContinuousDistribution, SummableDistribution {
 
     private final double lambda;
     private final double shift;
@@ -33,9 +34,76 @@ public class ShiftedExponentialRandomVariable extends RandomVariable {
 
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
+        return Quantity.of(this.sample(r), this.getUnit());
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        for (int i = 0; i < batch.size(); i++) {
+            out[i] = this.sample(r);
+        }
+    }
+
+    private double sample(final RandomSource r) {
         final double sampled = Math.log(1.0 - r.nextDouble()) / -this.lambda;
-        final double shifted = this.directionInverse ? this.shift - sampled : this.shift + sampled;
-        return Quantity.of(shifted, this.getUnit());
+        return this.directionInverse ? this.shift - sampled : this.shift + sampled;
+    }
+
+    @Override
+    public double cdf(final double x) {
+        if (this.directionInverse) {
+            return x >= this.shift ? 1.0 : Math.exp(-this.lambda * (this.shift - x));
+        } else {
+            return x <= this.shift ? 0.0 : -Math.expm1(-this.lambda * (x - this.shift));
+        }
+    }
+
+    @Override
+    public double quantile(final double p) {
+        if (this.directionInverse) {
+            return this.shift + Math.log(p) / this.lambda;
+        } else {
+            return this.shift - Math.log1p(-p) / this.lambda;
+        }
+    }
+
+    @Override
+    public double survival(final double x) {
+        if (this.directionInverse) {
+            return x >= this.shift ? 0.0 : -Math.expm1(-this.lambda * (this.shift - x));
+        } else {
+            return x <= this.shift ? 1.0 : Math.exp(-this.lambda * (x - this.shift));
+        }
+    }
+
+    @Override
+    public double inverseSurvival(final double p) {
+        if (this.directionInverse) {
+            return this.shift + Math.log1p(-p) / this.lambda;
+        } else {
+            return this.shift - Math.log(p) / this.lambda;
+        }
+    }
+
+    @Override
+    public RandomVariable bound(final double lowerBound, final double upperBound) {
+        return new TruncatedRandomVariable(this, this, lowerBound, upperBound);
+    }
+
+    @Override
+    public double mean() {
+        return this.directionInverse ? this.shift - 1.0 / this.lambda : this.shift + 1.0 / this.lambda;
+    }
+
+    @Override
+    public double variance() {
+        return 1.0 / (this.lambda * this.lambda);
+    }
+
+    @Override
+    public double standardizedThirdMomentBound() {
+        // E|X - mean|^3 of the exponential distribution is (12 / e - 2) / lambda^3
+        return 12.0 / Math.E - 2.0;
     }
 
     @Override
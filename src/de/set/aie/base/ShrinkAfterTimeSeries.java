@@ -19,7 +19,7 @@ public class ShrinkAfterTimeSeries extends TimeSeries {
 
     @Override
     public Function<Model.Instance, RandomVariable> getFor(int time) {
-        return (Model.Instance inst) -> {
+        return memoize(time, (Model.Instance inst) -> {
             if (time == 0) {
                 return base.getFor(time).apply(inst);
             } else {
@@ -29,6 +29,22 @@ public class ShrinkAfterTimeSeries extends TimeSeries {
                         this.getFor(time - 1).apply(inst).times(inst.get(shrinkRate))
                 );
             }
+        });
+    }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        TrajectoryKernel b = c.kernel(base);
+        TrajectoryInput until = c.input(yearsUntil);
+        TrajectoryInput rate = c.input(shrinkRate);
+        return (TrajectoryContext ctx, double[] out) -> {
+            b.fill(ctx, out);
+            for (int t = 1; t < out.length; t++) {
+                // wie im Graph: vor dem Zeitpunkt wird die Basis genutzt, danach der geschrumpfte Vorgängerwert
+                if (!(until.get(ctx) < t)) {
+                    out[t] = out[t - 1] * rate.get(ctx);
+                }
+            }
         };
     }
 }
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A block of simulation runs that is evaluated column by column instead of sample by sample (see
+ * {@link RandomVariable#observeBatch(RandomSource, SimulationBatch, double[])}).
+ * Persistent values are kept as one column per variable, so that all nodes of a block see the same values.
+ * For nodes that only know how to observe single samples, a {@link SimulationRun} per row is created on demand
+ * and kept in sync with the columns.
+ */
+public class SimulationBatch {
+
+    /**
+     * Default number of samples that is evaluated together.
+     */
+    public static final int DEFAULT_SIZE = 256;
+
+    private final int size;
+    private final Map<VarId, double[]> columns = new HashMap<>();
+    private final Map<VarId, QUnit> units = new HashMap<>();
+    private final VarSlots slots;
+    private final int firstRow;
+    private final UniformPoints points;
+    private SimulationRun[] runs;
+
+    public SimulationBatch(final int size) {
+        this(size, new VarSlots());
+    }
+
+    SimulationBatch(final int size, final VarSlots slots) {
+        this(size, slots, 0);
+    }
+
+    SimulationBatch(final int size, final VarSlots slots, final int firstRow) {
+        this(size, slots, firstRow, null);
+    }
+
+    SimulationBatch(final int size, final VarSlots slots, final int firstRow, final UniformPoints points) {
+        assert size > 0;
+        this.size = size;
+        this.slots = slots;
+        this.firstRow = firstRow;
+        this.points = points;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the overall sample index of the first row of this batch.
+     */
+    int getFirstRow() {
+        return this.firstRow;
+    }
+
+    /**
+     * Returns the points for the stratified {@link SamplingMode}s, or null for independent random numbers.
+     */
+    UniformPoints getPoints() {
+        return this.points;
+    }
+
+    public boolean hasPersistentColumn(final VarId name) {
+        return this.columns.containsKey(name);
+    }
+
+    /**
+     * Returns the persisted values for the given variable, or null if it has not been persisted in this batch yet.
+     */
+    public double[] getPersistentColumn(final VarId name) {
+        return this.columns.get(name);
+    }
+
+    /**
+     * Returns true iff the variable has been persisted for the given row, either as a column or sample by sample.
+     */
+    boolean hasPersistentValue(final VarId name, final int row) {
+        if (this.columns.containsKey(name)) {
+            return true;
+        }
+        return this.runs != null && this.runs[row] != null && this.runs[row].hasPersistentValue(name);
+    }
+
+    /**
+     * Returns the persisted number of the variable in the given row, see {@link #hasPersistentValue(VarId, int)}.
+     */
+    double getPersistentNumber(final VarId name, final int row) {
+        final double[] column = this.columns.get(name);
+        return column != null ? column[row] : this.runs[row].getPersistentValue(name).getNumber();
+    }
+
+    /**
+     * Persists the given column for the variable. Rows that already contain a value for the variable in their
+     * {@link SimulationRun} (because it was observed sample by sample) keep that value, the column is
+     * updated accordingly.
+     */
+    public void persist(final VarId name, final double[] column, final QUnit unit) {
+        assert !this.columns.containsKey(name);
+        assert column.length >= this.size;
+        if (this.runs != null) {
+            for (int i = 0; i < this.size; i++) {
+                final SimulationRun run = this.runs[i];
+                if (run == null) {
+                    continue;
+                }
+                if (run.hasPersistentValue(name)) {
+                    column[i] = run.getPersistentValue(name).getNumber();
+                } else {
+                    run.persist(name, Quantity.of(column[i], unit));
+                }
+            }
+        }
+        this.columns.put(name, column);
+        this.units.put(name, unit);
+    }
+
+    /**
+     * Returns the simulation run for a single row of this batch. The run contains all values that have been
+     * persisted in the batch so far, and values persisted later are added to it.
+     */
+    public SimulationRun getRun(final int index) {
+        if (this.runs == null) {
+            this.runs = new SimulationRun[this.size];
+        }
+        SimulationRun run = this.runs[index];
+        if (run == null) {
+            run = new SimulationRun(this.slots);
+            run.setRow(this.firstRow + index);
+            for (final Map.Entry<VarId, double[]> e : this.columns.entrySet()) {
+                run.persist(e.getKey(), Quantity.of(e.getValue()[index], this.units.get(e.getKey())));
+            }
+            this.runs[index] = run;
+        }
+        return run;
+    }
+
+}
@@ -15,51 +15,148 @@
  */
 package de.set.aie.base;
 
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * The values persisted while observing a single sample. Values are stored in arrays, indexed by the slots of a
+ * {@link VarSlots} table, with a bitset for the slots that contain a value. A run can be {@link #reset() reset}
+ * and reused for the next sample.
+ */
 public class SimulationRun {
 
-    private final Map<VarId, Quantity> values = new LinkedHashMap<>();
-    private final Map<Object, Object> objects = new LinkedHashMap<>();
+    private final VarSlots slots;
+    private double[] values = new double[16];
+    private QUnit[] units = new QUnit[16];
+    private long[] present = new long[1];
+    private int[] order = new int[16];
+    private int count;
+    private Map<Object, Object> objects;
+    private int row = -1;
+
+    public SimulationRun() {
+        this(new VarSlots());
+    }
+
+    SimulationRun(final VarSlots slots) {
+        this.slots = slots;
+    }
+
+    VarSlots getSlots() {
+        return this.slots;
+    }
+
+    /**
+     * Returns the overall sample index of this run when it belongs to a {@link SimulationBatch}, or -1 otherwise.
+     */
+    int getRow() {
+        return this.row;
+    }
+
+    void setRow(final int row) {
+        this.row = row;
+    }
+
+    /**
+     * Removes all persisted values and objects, so that the run can be used for the next sample.
+     */
+    public void reset() {
+        for (int i = 0; i < this.count; i++) {
+            final int slot = this.order[i];
+            this.present[slot >>> 6] = 0L;
+            this.units[slot] = null;
+        }
+        this.count = 0;
+        if (this.objects != null) {
+            this.objects.clear();
+        }
+    }
 
     public boolean hasPersistentValue(VarId name) {
-        return this.values.containsKey(name);
+        return this.hasPersistentValue(this.slots.slotOf(name));
+    }
+
+    boolean hasPersistentValue(final int slot) {
+        final int word = slot >>> 6;
+        return word < this.present.length && (this.present[word] & (1L << slot)) != 0;
     }
 
     public void persist(VarId name, Quantity v) {
-        assert !this.values.containsKey(name);
-        this.values.put(name, v);
+        this.persist(this.slots.slotOf(name), v.getNumber(), v.getUnit());
+    }
+
+    void persist(final int slot, final double value, final QUnit unit) {
+        assert !this.hasPersistentValue(slot);
+        if (slot >= this.values.length) {
+            final int newLength = Math.max(slot + 1, 2 * this.values.length);
+            this.values = Arrays.copyOf(this.values, newLength);
+            this.units = Arrays.copyOf(this.units, newLength);
+        }
+        final int word = slot >>> 6;
+        if (word >= this.present.length) {
+            this.present = Arrays.copyOf(this.present, Math.max(word + 1, 2 * this.present.length));
+        }
+        if (this.count >= this.order.length) {
+            this.order = Arrays.copyOf(this.order, 2 * this.order.length);
+        }
+        this.values[slot] = value;
+        this.units[slot] = unit;
+        this.present[word] |= 1L << slot;
+        this.order[this.count++] = slot;
     }
 
     public Quantity getPersistentValue(VarId name) {
-        final Quantity q = this.values.get(name);
-        if (q == null) {
+        final int slot = this.slots.slotOf(name);
+        if (!this.hasPersistentValue(slot)) {
             throw new AssertionError("variable was not persisted: " + name);
         }
-        return q;
+        return Quantity.of(this.values[slot], this.units[slot]);
+    }
+
+    Quantity getPersistentValue(final int slot) {
+        assert this.hasPersistentValue(slot);
+        return Quantity.of(this.values[slot], this.units[slot]);
+    }
+
+    /**
+     * Returns the number persisted in the given slot, the slot has to contain a value.
+     */
+    double getPersistentNumber(final int slot) {
+        assert this.hasPersistentValue(slot);
+        return this.values[slot];
     }
 
     public boolean hasPersistentObject(Object name) {
-        return this.objects.containsKey(name);
+        return this.objects != null && this.objects.containsKey(name);
     }
 
     public void persistObject(Object name, Object v) {
-        assert !this.values.containsKey(name);
+        if (this.objects == null) {
+            this.objects = new HashMap<>();
+        }
         this.objects.put(name, v);
     }
 
     public Object getPersistentObject(Object name) {
-        final Object q = this.objects.get(name);
+        final Object q = this.objects == null ? null : this.objects.get(name);
         if (q == null) {
             throw new AssertionError("object was not persisted: " + name);
         }
         return q;
     }
 
+    /**
+     * Returns the names of the persisted values, in the order they were persisted.
+     */
     public Set<? extends VarId> getPersistentValueNames() {
-        return this.values.keySet();
+        final Set<VarId> ret = new LinkedHashSet<>();
+        for (int i = 0; i < this.count; i++) {
+            ret.add(this.slots.nameOf(this.order[i]));
+        }
+        return ret;
     }
 
 }
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Estimates the expected value of partial perfect information (EVPPI) of a variable from one joint sample of the
+ * variable and the value variables, instead of sampling the model again for every fixed value. The conditional
+ * expectations of the value variables given the variable are estimated by nonparametric regression: the sample
+ * is sorted by the variable and cut into bins of about the same size, and the mean of every bin is used. Inside
+ * a bin, the best choice is determined on one half of the rows and evaluated on the other half.
+ * <p>
+ * To get an error estimate, the sample is split into independent groups, and the estimate is computed for every
+ * group. The returned {@link Mean} contains the group estimates as observations.
+ */
+final class SingleLoopVoiEstimator {
+
+    private final int groups;
+
+    SingleLoopVoiEstimator(final int groups) {
+        assert groups > 0;
+        this.groups = groups;
+    }
+
+    /**
+     * Returns the EVPPI of the variable with the given samples.
+     *
+     * @param x The samples of the variable.
+     * @param values The samples of the value variables, one array per choice, in the same rows as x.
+     * @param bestChoice The index of the choice that is best without information.
+     */
+    public Mean estimate(final double[] x, final double[][] values, final int bestChoice) {
+        final int groupSize = x.length / this.groups;
+        assert groupSize > 0;
+        final double[] estimates = new double[this.groups];
+        for (int g = 0; g < this.groups; g++) {
+            estimates[g] = this.estimateGroup(x, values, bestChoice, g * groupSize, (g + 1) * groupSize);
+        }
+        return Mean.of(estimates);
+    }
+
+    private double estimateGroup(
+            final double[] x, final double[][] values, final int bestChoice, final int from, final int to) {
+        final int n = to - from;
+        final Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = from + i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((final Integer i) -> x[i]));
+
+        final int binSize = Math.max(2, (int) Math.round(Math.sqrt(n)));
+        final double[][] sums = new double[2][values.length];
+        double gain = 0.0;
+        int binStart = 0;
+        for (int i = 0; i < n; i++) {
+            final int row = order[i];
+            final double[] half = sums[(i - binStart) & 1];
+            for (int c = 0; c < values.length; c++) {
+                half[c] += values[c][row] - values[bestChoice][row];
+            }
+            final int count = i + 1 - binStart;
+            // equal values stay in the same bin, so that a discrete variable gets one bin per value
+            final boolean lastOfValue = i + 1 == n || x[order[i + 1]] != x[row];
+            if (lastOfValue && (count >= binSize || i + 1 == n)) {
+                // the choice is made with one half of the bin and evaluated with the other half, otherwise the
+                // noise in the bin means would always look like a gain
+                gain += sums[1][argMax(sums[0])] + sums[0][argMax(sums[1])];
+                Arrays.fill(sums[0], 0.0);
+                Arrays.fill(sums[1], 0.0);
+                binStart = i + 1;
+            }
+        }
+        return Math.max(0.0, gain / n);
+    }
+
+    private static int argMax(final double[] sums) {
+        int ret = 0;
+        for (int c = 1; c < sums.length; c++) {
+            if (sums[c] > sums[ret]) {
+                ret = c;
+            }
+        }
+        return ret;
+    }
+
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scrambled Sobol sequence, see {@link SamplingMode#SOBOL}. The points are enumerated in Gray code order, so that
+ * the point for a row can be computed directly and the following points with one xor each.
+ * The first dimension is the van der Corput sequence, the others use the primitive polynomials over GF(2) in order
+ * of their degree. The initial direction numbers are chosen by a fixed pseudo random sequence instead of a tuned
+ * table, which makes the two-dimensional projections of high dimensions somewhat less even.
+ */
+final class SobolPoints extends UniformPoints {
+
+    private static final int BITS = 52;
+    private static final double SCALE = 0x1.0p-52;
+    private static final long INITIAL_NUMBER_SEED = 0x50B01L;
+
+    private static final List<long[]> DIRECTIONS = new ArrayList<>();
+    private static final List<Long> POLYNOMIALS = new ArrayList<>();
+
+    private final long[][] directions;
+    private final long[] shifts;
+
+    SobolPoints(final long seed, final int dimensions) {
+        this.directions = directions(dimensions);
+        this.shifts = new long[dimensions];
+        final RandomSource r = RandomSource.forStream(seed, -1L);
+        for (int d = 0; d < dimensions; d++) {
+            this.shifts[d] = r.nextLong() >>> (64 - BITS);
+        }
+    }
+
+    @Override
+    void fill(final int dimension, final int firstRow, final double[] out, final int size) {
+        final long[] v = this.directions[dimension];
+        final long shift = this.shifts[dimension];
+        long x = 0;
+        int gray = firstRow ^ (firstRow >>> 1);
+        for (int j = 0; gray != 0; j++, gray >>>= 1) {
+            if ((gray & 1) != 0) {
+                x ^= v[j];
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            // x ^ shift has at most 52 bits, so adding one half is exact and the result is below 1
+            out[i] = ((x ^ shift) + 0.5) * SCALE;
+            x ^= v[Integer.numberOfTrailingZeros(firstRow + i + 1)];
+        }
+    }
+
+    private static synchronized long[][] directions(final int dimensions) {
+        while (DIRECTIONS.size() < dimensions) {
+            DIRECTIONS.add(computeDirections(DIRECTIONS.size()));
+        }
+        return DIRECTIONS.subList(0, dimensions).toArray(new long[dimensions][]);
+    }
+
+    private static long[] computeDirections(final int dimension) {
+        final long[] v = new long[BITS];
+        if (dimension == 0) {
+            for (int k = 0; k < BITS; k++) {
+                v[k] = 1L << (BITS - 1 - k);
+            }
+            return v;
+        }
+        while (POLYNOMIALS.size() < dimension) {
+            addNextPrimitivePolynomial();
+        }
+        final long polynomial = POLYNOMIALS.get(dimension - 1);
+        final int degree = degree(polynomial);
+        final RandomSource r = RandomSource.forStream(INITIAL_NUMBER_SEED, dimension);
+        for (int k = 0; k < Math.min(degree, BITS); k++) {
+            // odd and below 2^(k+1)
+            final long m = k == 0 ? 1 : (((long) r.nextInt(1 << k)) << 1) | 1;
+            v[k] = m << (BITS - 1 - k);
+        }
+        for (int k = degree; k < BITS; k++) {
+            long next = v[k - degree] ^ (v[k - degree] >>> degree);
+            for (int j = 1; j < degree; j++) {
+                if ((polynomial >>> (degree - j) & 1) != 0) {
+                    next ^= v[k - j];
+                }
+            }
+            v[k] = next;
+        }
+        return v;
+    }
+
+    private static void addNextPrimitivePolynomial() {
+        long candidate = POLYNOMIALS.isEmpty() ? 3 : POLYNOMIALS.get(POLYNOMIALS.size() - 1) + 2;
+        while (!isPrimitive(candidate)) {
+            candidate += 2;
+        }
+        POLYNOMIALS.add(candidate);
+    }
+
+    /**
+     * A polynomial of degree s is primitive iff x has order 2^s - 1 modulo the polynomial.
+     */
+    static boolean isPrimitive(final long polynomial) {
+        final int degree = degree(polynomial);
+        final long order = (1L << degree) - 1;
+        final long x = reduce(2, polynomial, degree);
+        if (power(x, order, polynomial, degree) != 1) {
+            return false;
+        }
+        long rest = order;
+        for (long q = 2; q * q <= rest; q++) {
+            if (rest % q == 0) {
+                if (power(x, order / q, polynomial, degree) == 1) {
+                    return false;
+                }
+                while (rest % q == 0) {
+                    rest /= q;
+                }
+            }
+        }
+        return rest == 1 || power(x, order / rest, polynomial, degree) != 1;
+    }
+
+    private static long power(final long base, final long exponent, final long polynomial, final int degree) {
+        long result = 1;
+        long b = base;
+        for (long e = exponent; e != 0; e >>>= 1) {
+            if ((e & 1) != 0) {
+                result = multiply(result, b, polynomial, degree);
+            }
+            b = multiply(b, b, polynomial, degree);
+        }
+        return result;
+    }
+
+    private static long multiply(final long a, final long b, final long polynomial, final int degree) {
+        long result = 0;
+        long shifted = a;
+        for (long rest = b; rest != 0; rest >>>= 1) {
+            if ((rest & 1) != 0) {
+                result ^= shifted;
+            }
+            shifted = reduce(shifted << 1, polynomial, degree);
+        }
+        return result;
+    }
+
+    private static long reduce(final long a, final long polynomial, final int degree) {
+        long result = a;
+        while (result != 0 && degree(result) >= degree) {
+            result ^= polynomial << (degree(result) - degree);
+        }
+        return result;
+    }
+
+    private static int degree(final long polynomial) {
+        return 63 - Long.numberOfLeadingZeros(polynomial);
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.SplittableRandom;
+
+/**
+ * A {@link RandomSource} based on {@link SplittableRandom}. In contrast to {@link java.util.Random} it needs no
+ * atomic operations, and independent streams can be derived deterministically from a seed and an index
+ * (see {@link RandomSource#forStream(long, long)}).
+ * Like all random sources, an instance must only be used by a single thread.
+ */
+final class SplittableRandomSource implements RandomSource {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final SplittableRandom random;
+    private double nextNextGaussian;
+    private boolean haveNextNextGaussian;
+
+    SplittableRandomSource(final long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private SplittableRandomSource(final SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Returns the seed for the stream with the given index.
+     */
+    static long streamSeed(final long seed, final long index) {
+        return mix64(mix64(seed) + (index + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * The finalizer of SplitMix64 (variant 13 by David Stafford).
+     */
+    private static long mix64(final long z0) {
+        long z = z0;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public double nextDouble() {
+        return this.random.nextDouble();
+    }
+
+    @Override
+    public int nextInt(final int bound) {
+        return this.random.nextInt(bound);
+    }
+
+    @Override
+    public long nextLong() {
+        return this.random.nextLong();
+    }
+
+    @Override
+    public double nextGaussian() {
+        // polar method, like in java.util.Random
+        if (this.haveNextNextGaussian) {
+            this.haveNextNextGaussian = false;
+            return this.nextNextGaussian;
+        }
+        double v1;
+        double v2;
+        double s;
+        do {
+            v1 = 2 * this.random.nextDouble() - 1;
+            v2 = 2 * this.random.nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        final double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        this.nextNextGaussian = v2 * multiplier;
+        this.haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+    @Override
+    public RandomSource spawnChild() {
+        return new SplittableRandomSource(this.random.split());
+    }
+
+}
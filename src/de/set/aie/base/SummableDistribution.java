@@ -0,0 +1,42 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * A distribution with known moments, so that the sum of many independent draws can be sampled in one step
+ * instead of drawing every summand, see {@link CompoundSum}.
+ */
+interface SummableDistribution {
+
+    double mean();
+
+    double variance();
+
+    /**
+     * Returns an upper bound for E|X - mean|^3 / sd^3. It determines the error of the normal approximation for
+     * the sum of n draws (Berry-Esseen theorem). A conservative bound only leads to more exact summation.
+     */
+    double standardizedThirdMomentBound();
+
+    /**
+     * Returns true when the sum of independent draws has exactly a normal distribution (with the summed mean
+     * and variance), so that no approximation is needed at all.
+     */
+    default boolean isSumNormal() {
+        return false;
+    }
+
+}
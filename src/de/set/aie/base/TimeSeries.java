@@ -3,7 +3,10 @@ package de.set.aie.base;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 /**
@@ -13,6 +16,8 @@ import java.util.function.Function;
  */
 public abstract class TimeSeries {
 
+    private final ConcurrentHashMap<Integer, UniqueId> idForTime = new ConcurrentHashMap<>();
+
     /**
      * Summiert die Werte der Zeitreihe für den übergebenen Zeitraum auf.
      *
@@ -22,11 +27,12 @@ public abstract class TimeSeries {
     public final Function<Model.Instance, RandomVariable> collapse(int fromTime, int toTime) {
         assert fromTime <= toTime;
         return (Model.Instance inst) -> {
-            RandomVariable sum = getFor(fromTime).apply(inst);
-            for (int i = fromTime + 1; i <= toTime; i++) {
-                sum = sum.plus(getFor(i).apply(inst));
+            // ein flacher Summenknoten statt einer Kette aus binären Summen
+            List<RandomVariable> summands = new ArrayList<>();
+            for (int i = fromTime; i <= toTime; i++) {
+                summands.add(getFor(i).apply(inst));
             }
-            return sum;
+            return new RandomVariableNarySum(summands);
         };
     }
 
@@ -34,35 +40,35 @@ public abstract class TimeSeries {
      * Komponentenweise Summe aus zwei Zeitreihen.
      */
     public final TimeSeries plus(TimeSeries other) {
-        return new CombinedTimeSeries(this, other, RandomVariable::plus);
+        return new CombinedTimeSeries(this, other, RandomVariable::plus, (double a, double b) -> a + b);
     }
 
     /**
      * Komponentenweise Differenz aus zwei Zeitreihen.
      */
     public final TimeSeries minus(TimeSeries other) {
-        return new CombinedTimeSeries(this, other, RandomVariable::minus);
+        return new CombinedTimeSeries(this, other, RandomVariable::minus, (double a, double b) -> a - b);
     }
 
     /**
      * Komponentenweises Maximum aus zwei Zeitreihen.
      */
     public final TimeSeries notLessThan(TimeSeries other) {
-        return new CombinedTimeSeries(this, other, RandomVariable::max);
+        return new CombinedTimeSeries(this, other, RandomVariable::max, Math::max);
     }
 
     /**
      * Quotient aus einer Zeitreihe und einer Zufallsvariable.
      */
     public TimeSeries div(VarId factor) {
-        return new TransformedTimeSeriesVar(this, factor, RandomVariable::div);
+        return new TransformedTimeSeriesVar(this, factor, RandomVariable::div, (double a, double b) -> a / b);
     }
 
     /**
      * Produkt aus einer Zeitreihe und einer Zufallsvariable.
      */
     public TimeSeries times(VarId factor) {
-        return new TransformedTimeSeriesVar(this, factor, RandomVariable::times);
+        return new TransformedTimeSeriesVar(this, factor, RandomVariable::times, (double a, double b) -> a * b);
     }
 
     /**
@@ -70,7 +76,8 @@ public abstract class TimeSeries {
      */
     public TimeSeries times(double factor) {
         return new TransformedTimeSeriesConst(
-                this, Distributions.fixed(factor, QUnit.scalar()), RandomVariable::times);
+                this, Distributions.fixed(factor, QUnit.scalar()), RandomVariable::times,
+                (double a, double b) -> a * b);
     }
 
     /**
@@ -100,6 +107,62 @@ public abstract class TimeSeries {
      */
     public abstract Function<Model.Instance, ? extends RandomVariable> getFor(int time);
 
+    /**
+     * Liefert den Knoten für den übergebenen Zeitpunkt aus dem Cache der Instanz, beim ersten Zugriff wird er mit
+     * dem Builder erzeugt. Der Knoten wird als {@link TimeSeriesPoint} unter einer internen Id persistiert, damit alle
+     * Nutzer eines Zeitpunkts (z.B. der folgende Zeitpunkt einer rekursiven Zeitreihe) im gleichen Simulationslauf den
+     * gleichen Wert sehen. Dadurch hat eine Zeitreihe über T Zeitpunkte nur O(T) Knoten. Wird der Zeitpunkt als
+     * Variable in ein Modell aufgenommen, wird er dort wie jede andere Definition unter ihrem Namen persistiert.
+     */
+    protected final Function<Model.Instance, RandomVariable> memoize(
+            int time, Function<Model.Instance, RandomVariable> builder) {
+        return (Model.Instance inst) -> inst.getTimeSeriesPoint(this, time, (Model.Instance i) -> {
+            RandomVariable v = builder.apply(i);
+            return v instanceof PersistentRandomVariable || v instanceof TimeSeriesPoint
+                    ? v : new TimeSeriesPoint(getId(time), v);
+        });
+    }
+
+    /**
+     * Simuliert die Zeitreihe für die Zeitpunkte 0 bis periods - 1 als Vektor je Simulationslauf ("Trajektorie").
+     * Die Zufallsvariablen, von denen die Zeitreihe abhängt, werden blockweise berechnet, danach wird jede
+     * Trajektorie in einer Schleife über die Zeitpunkte bestimmt, statt für jeden Zeitpunkt einzeln den Graph
+     * auszuwerten. Die Einheit ist die von {@link #getFor(int)}.
+     *
+     * @return Je Simulationslauf ein Array mit einem Wert je Zeitpunkt.
+     */
+    public double[][] sampleTrajectories(Model.Instance inst, long seed, int sampleCount, int periods) {
+        assert periods > 0;
+        // prüft u.a. die Einheiten
+        getFor(0).apply(inst);
+        TrajectoryCompiler compiler = new TrajectoryCompiler(inst, periods);
+        TrajectoryKernel kernel = compiler.kernel(this);
+        TrajectoryContext context = new TrajectoryContext();
+        double[][] ret = new double[sampleCount][periods];
+        inst.executeBlocks(compiler.build(), seed, sampleCount,
+                (RandomSource r, SimulationBatch batch, double[][] registers, int rows) -> {
+                    context.setBlock(r, batch, registers);
+                    for (int row = 0; row < rows; row++) {
+                        context.setRow(row);
+                        kernel.fill(context, ret[batch.getFirstRow() + row]);
+                    }
+                });
+        return ret;
+    }
+
+    /**
+     * Liefert den Kernel für die Simulation von Trajektorien (siehe
+     * {@link #sampleTrajectories(Model.Instance, long, int, int)}). Standardmäßig wird für jeden Zeitpunkt der
+     * Knoten aus {@link #getFor(int)} genutzt.
+     */
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        return c.graph(this);
+    }
+
+    private UniqueId getId(int time) {
+        return idForTime.computeIfAbsent(time, (Integer i) -> new UniqueId());
+    }
+
     /**
      * Gibt die übergebenen Zeitreihen als CSV aus (jeweils den Mittelwert).
      */
@@ -113,13 +176,20 @@ public abstract class TimeSeries {
                 fw.write(";" + s);
             }
             fw.write("\n");
-            // Zeilen ausgeben
+            // Zeilen ausgeben, dafür jede Zeitreihe einmal über alle Zeitpunkte simulieren
             Model.Instance instance = m.instantiate();
+            List<double[][]> trajectories = new ArrayList<>();
+            for (TimeSeries t : toPrint.values()) {
+                trajectories.add(t.sampleTrajectories(instance, 42, 1000, toTime + 1));
+            }
             for (int i = fromTime; i <= toTime; i++) {
                 fw.write(Integer.toString(i));
-                for (TimeSeries t : toPrint.values()) {
+                for (double[][] trajectory : trajectories) {
                     fw.write(';');
-                    Mean mean = t.getFor(i).apply(instance).sample(42, 1000).mean();
+                    Mean mean = Mean.undefined();
+                    for (double[] run : trajectory) {
+                        mean = mean.add(run[i]);
+                    }
                     fw.write(Double.toString(mean.get()).replace('.', ','));
                 }
                 fw.write("\n");
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * The node of a time series for one point in time, as cached by {@link TimeSeries#memoize}. Its value is persisted
+ * once per simulation run under an internal id, so that all users of the point see the same value. It is not a
+ * {@link PersistentRandomVariable}: when a point is added to a model, it is persisted under the name of the model
+ * variable like any other definition.
+ */
+final class TimeSeriesPoint extends RandomVariable {
+
+    private final PersistentRandomVariable persistent;
+
+    TimeSeriesPoint(final UniqueId id, final RandomVariable base) {
+        this.persistent = new PersistentRandomVariable(id, base);
+    }
+
+    @Override
+    public Quantity observe(final RandomSource r, final SimulationRun run) {
+        return this.persistent.observe(r, run);
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        this.persistent.observeBatch(r, batch, out);
+    }
+
+    @Override
+    int compile(final ProgramBuilder b) {
+        return this.persistent.compile(b);
+    }
+
+    @Override
+    public QUnit getUnit() {
+        return this.persistent.getUnit();
+    }
+
+    @Override
+    public VarKind getType() {
+        return this.persistent.getType();
+    }
+
+}
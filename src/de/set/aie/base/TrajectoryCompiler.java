@@ -0,0 +1,83 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * Creates the {@link TrajectoryKernel}s for a time series and the {@link CompiledProgram} for their scalar inputs.
+ * Series without a kernel of their own are evaluated with the nodes of their graph, one register per period.
+ */
+final class TrajectoryCompiler {
+
+    private final Model.Instance instance;
+    private final int periods;
+    private final ProgramBuilder builder;
+
+    TrajectoryCompiler(final Model.Instance instance, final int periods) {
+        this.instance = instance;
+        this.periods = periods;
+        this.builder = new ProgramBuilder(instance.getSamplingMode());
+    }
+
+    Model.Instance getInstance() {
+        return this.instance;
+    }
+
+    int getPeriods() {
+        return this.periods;
+    }
+
+    /**
+     * Returns a new buffer with one entry per period.
+     */
+    double[] newBuffer() {
+        return new double[this.periods];
+    }
+
+    TrajectoryKernel kernel(final TimeSeries series) {
+        return series.createTrajectoryKernel(this);
+    }
+
+    TrajectoryInput input(final VarId name) {
+        return this.input(this.instance.get(name));
+    }
+
+    TrajectoryInput input(final RandomVariable v) {
+        if (TrajectoryInput.isConstantPerRun(v)) {
+            return new TrajectoryInput(this.builder.compile(v), null);
+        }
+        return new TrajectoryInput(-1, v);
+    }
+
+    /**
+     * Returns a kernel that reads the value of every period from the compiled node of the series.
+     */
+    TrajectoryKernel graph(final TimeSeries series) {
+        final TrajectoryInput[] nodes = new TrajectoryInput[this.periods];
+        for (int t = 0; t < this.periods; t++) {
+            nodes[t] = this.input(series.getFor(t).apply(this.instance));
+        }
+        return (final TrajectoryContext c, final double[] out) -> {
+            for (int t = 0; t < out.length; t++) {
+                out[t] = nodes[t].get(c);
+            }
+        };
+    }
+
+    CompiledProgram build() {
+        return this.builder.build(new int[0]);
+    }
+
+}
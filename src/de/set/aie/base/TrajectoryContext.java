@@ -0,0 +1,60 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * The state of a {@link TrajectoryKernel}: the block of samples, the registers of the program with the scalar inputs,
+ * and the current row.
+ */
+final class TrajectoryContext {
+
+    private RandomSource random;
+    private SimulationBatch batch;
+    private double[][] registers;
+    private int row;
+
+    void setBlock(final RandomSource random, final SimulationBatch batch, final double[][] registers) {
+        this.random = random;
+        this.batch = batch;
+        this.registers = registers;
+    }
+
+    void setRow(final int row) {
+        this.row = row;
+    }
+
+    /**
+     * Returns the random source of the block, for kernels that sample themselves.
+     */
+    RandomSource random() {
+        return this.random;
+    }
+
+    /**
+     * Returns the value of the given register in the current row.
+     */
+    double value(final int register) {
+        return this.registers[register][this.row];
+    }
+
+    /**
+     * Observes the variable for the current row. The values persisted in the block are visible to the variable.
+     */
+    double draw(final RandomVariable v) {
+        return v.observe(this.random, this.batch.getRun(this.row)).getNumber();
+    }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * A scalar input of a {@link TrajectoryKernel}. Persistent variables and constants are computed once per block by
+ * the program of the {@link TrajectoryCompiler}. Other variables are observed again on every call, just like every
+ * use of such a variable in the graph of the time series gives a new value.
+ */
+final class TrajectoryInput {
+
+    private final int register;
+    private final RandomVariable variable;
+
+    TrajectoryInput(final int register, final RandomVariable variable) {
+        this.register = register;
+        this.variable = variable;
+    }
+
+    /**
+     * Returns true for variables that have the same value on every use within a simulation run.
+     */
+    static boolean isConstantPerRun(final RandomVariable v) {
+        return v instanceof PersistentRandomVariable
+                || v instanceof TimeSeriesPoint
+                || v instanceof FixedRandomVariable;
+    }
+
+    double get(final TrajectoryContext c) {
+        return this.register >= 0 ? c.value(this.register) : c.draw(this.variable);
+    }
+
+    boolean isConstantPerRun() {
+        return this.register >= 0;
+    }
+
+    /**
+     * Returns the variable that is observed on every call, or null for inputs that are constant per run.
+     */
+    RandomVariable getVariable() {
+        return this.variable;
+    }
+
+}
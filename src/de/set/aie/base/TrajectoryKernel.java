@@ -15,29 +15,16 @@
  */
 package de.set.aie.base;
 
-public class RandomVariableProduct extends RandomVariable {
-
-    private final RandomVariable r1;
-    private final RandomVariable r2;
-
-    public RandomVariableProduct(final RandomVariable r1, final RandomVariable r2) {
-        this.r1 = r1;
-        this.r2 = r2;
-    }
-
-    @Override
-    public Quantity observe(final RandomSource r, final SimulationRun run) {
-        return this.r1.observe(r, run).times(this.r2.observe(r, run));
-    }
-
-    @Override
-    public QUnit getUnit() {
-        return this.r1.getUnit().times(this.r2.getUnit());
-    }
+/**
+ * Computes the values of a {@link TimeSeries} for all periods of one simulation run at once, see
+ * {@link TimeSeries#sampleTrajectories(Model.Instance, long, int, int)}. Kernels can keep buffers for their inputs,
+ * so a kernel must not be used by several threads at once.
+ */
+interface TrajectoryKernel {
 
-    @Override
-    public VarKind getType() {
-        return VarKind.C;
-    }
+    /**
+     * Writes the values for the periods 0 to out.length - 1 of the current row of the context to out.
+     */
+    public abstract void fill(TrajectoryContext c, double[] out);
 
 }
@@ -1,6 +1,7 @@
 package de.set.aie.base;
 
 import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
 import java.util.function.Function;
 
 /**
@@ -8,21 +9,47 @@ import java.util.function.Function;
  */
 public class TransformedTimeSeriesConst extends TimeSeries {
     private BiFunction<RandomVariable, RandomVariable, RandomVariable> transformer;
+    private DoubleBinaryOperator primitiveTransformer;
     private TimeSeries s1;
     private RandomVariable otherVar;
 
     public TransformedTimeSeriesConst(TimeSeries s1, RandomVariable otherVar,
                                       BiFunction<RandomVariable, RandomVariable, RandomVariable> transformer) {
+        this(s1, otherVar, transformer, null);
+    }
+
+    /**
+     * Konstruktor mit zusätzlicher Verknüpfung der Zahlenwerte, die für Trajektorien genutzt wird.
+     */
+    public TransformedTimeSeriesConst(TimeSeries s1, RandomVariable otherVar,
+                                      BiFunction<RandomVariable, RandomVariable, RandomVariable> transformer,
+                                      DoubleBinaryOperator primitiveTransformer) {
         this.transformer = transformer;
+        this.primitiveTransformer = primitiveTransformer;
         this.s1 = s1;
         this.otherVar = otherVar;
     }
 
     @Override
     public Function<Model.Instance, RandomVariable> getFor(int time) {
-        return (Model.Instance inst) ->
+        return memoize(time, (Model.Instance inst) ->
                 transformer.apply(
                         s1.getFor(time).apply(inst),
-                        otherVar);
+                        otherVar));
+    }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        if (primitiveTransformer == null) {
+            return super.createTrajectoryKernel(c);
+        }
+        TrajectoryKernel k1 = c.kernel(s1);
+        TrajectoryInput other = c.input(otherVar);
+        return (TrajectoryContext ctx, double[] out) -> {
+            k1.fill(ctx, out);
+            for (int t = 0; t < out.length; t++) {
+                out[t] = primitiveTransformer.applyAsDouble(out[t], other.get(ctx));
+            }
+        };
     }
 }
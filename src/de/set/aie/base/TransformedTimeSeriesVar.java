@@ -1,6 +1,7 @@
 package de.set.aie.base;
 
 import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
 import java.util.function.Function;
 
 /**
@@ -9,21 +10,47 @@ import java.util.function.Function;
  */
 public class TransformedTimeSeriesVar extends TimeSeries {
     private BiFunction<RandomVariable, RandomVariable, RandomVariable> transformer;
+    private DoubleBinaryOperator primitiveTransformer;
     private TimeSeries s1;
     private VarId otherVarName;
 
     public TransformedTimeSeriesVar(TimeSeries s1, VarId otherVarName,
                                     BiFunction<RandomVariable, RandomVariable, RandomVariable> transformer) {
+        this(s1, otherVarName, transformer, null);
+    }
+
+    /**
+     * Konstruktor mit zusätzlicher Verknüpfung der Zahlenwerte, die für Trajektorien genutzt wird.
+     */
+    public TransformedTimeSeriesVar(TimeSeries s1, VarId otherVarName,
+                                    BiFunction<RandomVariable, RandomVariable, RandomVariable> transformer,
+                                    DoubleBinaryOperator primitiveTransformer) {
         this.transformer = transformer;
+        this.primitiveTransformer = primitiveTransformer;
         this.s1 = s1;
         this.otherVarName = otherVarName;
     }
 
     @Override
     public Function<Model.Instance, RandomVariable> getFor(int time) {
-        return (Model.Instance inst) ->
+        return memoize(time, (Model.Instance inst) ->
                 transformer.apply(
                         s1.getFor(time).apply(inst),
-                        inst.get(otherVarName));
+                        inst.get(otherVarName)));
+    }
+
+    @Override
+    TrajectoryKernel createTrajectoryKernel(TrajectoryCompiler c) {
+        if (primitiveTransformer == null) {
+            return super.createTrajectoryKernel(c);
+        }
+        TrajectoryKernel k1 = c.kernel(s1);
+        TrajectoryInput other = c.input(otherVarName);
+        return (TrajectoryContext ctx, double[] out) -> {
+            k1.fill(ctx, out);
+            for (int t = 0; t < out.length; t++) {
+                out[t] = primitiveTransformer.applyAsDouble(out[t], other.get(ctx));
+            }
+        };
     }
 }
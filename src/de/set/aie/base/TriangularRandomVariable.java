@@ -15,7 +15,7 @@
  */
 package de.set.aie.base;
 
-public class TriangularRandomVariable extends RandomVariable {
+public class TriangularRandomVariable extends RandomVariable implements ContinuousDistribution, SummableDistribution {
 
     private final Quantity lower;
     private final Quantity mode;
@@ -44,18 +44,75 @@ public class TriangularRandomVariable extends RandomVariable {
 
     @Override
     public Quantity observe(final RandomSource r, final SimulationRun run) {
+        return Quantity.of(this.sample(r), this.getUnit());
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        for (int i = 0; i < batch.size(); i++) {
+            out[i] = this.sample(r);
+        }
+    }
+
+    private double sample(final RandomSource r) {
+        return this.quantile(r.nextDouble());
+    }
+
+    @Override
+    public double cdf(final double x) {
+        final double a = this.lower.getNumber();
+        final double b = this.upper.getNumber();
+        final double c = this.mode.getNumber();
+        if (x <= a) {
+            return 0.0;
+        } else if (x < c) {
+            return (x - a) * (x - a) / ((b - a) * (c - a));
+        } else if (x < b) {
+            return 1.0 - (b - x) * (b - x) / ((b - a) * (b - c));
+        } else {
+            return 1.0;
+        }
+    }
+
+    @Override
+    public double quantile(final double p) {
         final double a = this.lower.getNumber();
         final double b = this.upper.getNumber();
         final double c = this.mode.getNumber();
         final double F = (c - a) / (b - a);
-        final double rand = Math.random();
-        if (rand < F) {
-            return Quantity.of(a + Math.sqrt(rand * (b - a) * (c - a)), this.getUnit());
+        if (p < F) {
+            return a + Math.sqrt(p * (b - a) * (c - a));
         } else {
-            return Quantity.of(b - Math.sqrt((1 - rand) * (b - a) * (b - c)), this.getUnit());
+            return b - Math.sqrt((1 - p) * (b - a) * (b - c));
         }
     }
 
+    @Override
+    public RandomVariable bound(final double lowerBound, final double upperBound) {
+        return new TruncatedRandomVariable(this, this, lowerBound, upperBound);
+    }
+
+    @Override
+    public double mean() {
+        return (this.lower.getNumber() + this.mode.getNumber() + this.upper.getNumber()) / 3.0;
+    }
+
+    @Override
+    public double variance() {
+        final double a = this.lower.getNumber();
+        final double c = this.mode.getNumber();
+        final double b = this.upper.getNumber();
+        return (a * a + b * b + c * c - a * b - a * c - b * c) / 18.0;
+    }
+
+    @Override
+    public double standardizedThirdMomentBound() {
+        // E|X - mean|^3 <= max|X - mean| * variance for a bounded distribution
+        final double mean = this.mean();
+        final double maxDeviation = Math.max(mean - this.lower.getNumber(), this.upper.getNumber() - mean);
+        return maxDeviation / Math.sqrt(this.variance());
+    }
+
     @Override
     public QUnit getUnit() {
         return this.mode.getUnit();
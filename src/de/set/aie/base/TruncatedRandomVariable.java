@@ -0,0 +1,127 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * A {@link ContinuousDistribution} restricted to a range. Values are sampled with the quantile function from the
+ * part of the distribution inside of the range, so every value needs a single random number, and the shape
+ * of the distribution inside of the range is kept. A range in the upper tail is sampled with the survival function
+ * instead, because the distribution function is rounded to 1 there. If the range has no probability mass, the
+ * value is clamped to the nearer bound, like in {@link RangeBoundRandomVariable}.
+ */
+class TruncatedRandomVariable extends RandomVariable implements ContinuousDistribution {
+
+    private final RandomVariable base;
+    private final ContinuousDistribution distribution;
+    private final double lower;
+    private final double upper;
+    /**
+     * True if the range starts above the median. Then pLower and pUpper are the values of the survival function
+     * instead of the distribution function.
+     */
+    private final boolean upperTail;
+    private final double pLower;
+    private final double pUpper;
+    private final double mass;
+
+    TruncatedRandomVariable(final RandomVariable base, final ContinuousDistribution distribution,
+            final double lower, final double upper) {
+        this.base = base;
+        this.distribution = distribution;
+        this.lower = lower;
+        this.upper = upper;
+        final double cdfLower = lower == Double.NEGATIVE_INFINITY ? 0.0 : distribution.cdf(lower);
+        this.upperTail = cdfLower > 0.5;
+        if (this.upperTail) {
+            this.pLower = distribution.survival(lower);
+            this.pUpper = upper == Double.POSITIVE_INFINITY ? 0.0 : distribution.survival(upper);
+            this.mass = this.pLower - this.pUpper;
+        } else {
+            this.pLower = cdfLower;
+            this.pUpper = upper == Double.POSITIVE_INFINITY ? 1.0 : distribution.cdf(upper);
+            this.mass = this.pUpper - this.pLower;
+        }
+    }
+
+    @Override
+    public Quantity observe(final RandomSource r, final SimulationRun run) {
+        return Quantity.of(this.sample(r), this.getUnit());
+    }
+
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        for (int i = 0; i < batch.size(); i++) {
+            out[i] = this.sample(r);
+        }
+    }
+
+    private double sample(final RandomSource r) {
+        return this.quantile(r.nextDouble());
+    }
+
+    @Override
+    public double cdf(final double x) {
+        if (!(this.mass > 0.0)) {
+            // all the mass is on a bound
+            return x < this.quantile(0.5) ? 0.0 : 1.0;
+        }
+        if (x < this.lower) {
+            return 0.0;
+        }
+        if (x >= this.upper) {
+            return 1.0;
+        }
+        if (this.upperTail) {
+            return (this.pLower - this.distribution.survival(x)) / this.mass;
+        }
+        return (this.distribution.cdf(x) - this.pLower) / this.mass;
+    }
+
+    @Override
+    public double quantile(final double p) {
+        final double value;
+        if (!(this.mass > 0.0)) {
+            value = this.distribution.quantile(p);
+        } else if (this.upperTail) {
+            value = this.distribution.inverseSurvival(this.pLower - p * this.mass);
+        } else {
+            value = this.distribution.quantile(this.pLower + p * this.mass);
+        }
+        // the clamping also catches rounding errors of the quantile function
+        return Math.min(Math.max(value, this.lower), this.upper);
+    }
+
+    @Override
+    public RandomVariable bound(final double lowerBound, final double upperBound) {
+        final double newLower = Math.max(this.lower, lowerBound);
+        final double newUpper = Math.min(this.upper, upperBound);
+        if (newLower > newUpper) {
+            return super.bound(lowerBound, upperBound);
+        }
+        return new TruncatedRandomVariable(this.base, this.distribution, newLower, newUpper);
+    }
+
+    @Override
+    public QUnit getUnit() {
+        return this.base.getUnit();
+    }
+
+    @Override
+    public VarKind getType() {
+        return this.base.getType();
+    }
+
+}
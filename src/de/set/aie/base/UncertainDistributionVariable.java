@@ -19,10 +19,17 @@ public class UncertainDistributionVariable extends RandomVariable {
 
     private final RandomVariable index;
     private final RandomVariable[] dists;
+    private final QUnit unit;
 
     public UncertainDistributionVariable(final RandomVariable index, final RandomVariable... dists) {
         this.index = index;
         this.dists = dists;
+        this.unit = dists[0].getUnit();
+        for (final RandomVariable dist : dists) {
+            if (!dist.getUnit().equals(this.unit)) {
+                throw new AssertionError("incompatible units: " + this.unit + " vs " + dist.getUnit());
+            }
+        }
     }
 
     @Override
@@ -31,9 +38,62 @@ public class UncertainDistributionVariable extends RandomVariable {
         return this.dists[i].observe(r, run);
     }
 
+    @Override
+    public void observeBatch(final RandomSource r, final SimulationBatch batch, final double[] out) {
+        final int size = batch.size();
+        final int[] indices = new int[size];
+        final boolean[] used = new boolean[this.dists.length];
+        this.index.observeBatch(r, batch, out);
+        for (int i = 0; i < size; i++) {
+            indices[i] = (int) Math.round(out[i]);
+            used[indices[i]] = true;
+        }
+        final double[] values = new double[size];
+        for (int d = 0; d < this.dists.length; d++) {
+            if (!used[d]) {
+                continue;
+            }
+            this.dists[d].observeBatch(r, batch, values);
+            for (int i = 0; i < size; i++) {
+                if (indices[i] == d) {
+                    out[i] = values[i];
+                }
+            }
+        }
+    }
+
+    @Override
+    int compile(final ProgramBuilder b) {
+        final int idx = b.compile(this.index);
+        final int[] choices = new int[this.dists.length];
+        for (int i = 0; i < choices.length; i++) {
+            choices[i] = b.compile(this.dists[i]);
+        }
+        final int target = b.newRegister(b.getUnit(choices[0]));
+        b.emit(new Instructions.Pick(idx, choices, target));
+        return target;
+    }
+
+    /**
+     * When the index is persistent, resampling a value out of range keeps the chosen distribution. Then
+     * the bound can be applied to each distribution, so that distributions that support it are truncated
+     * directly.
+     */
+    @Override
+    public RandomVariable bound(final double lowerBound, final double upperBound) {
+        if (!TrajectoryInput.isConstantPerRun(this.index)) {
+            return super.bound(lowerBound, upperBound);
+        }
+        final RandomVariable[] bounded = new RandomVariable[this.dists.length];
+        for (int i = 0; i < bounded.length; i++) {
+            bounded[i] = this.dists[i].bound(lowerBound, upperBound);
+        }
+        return new UncertainDistributionVariable(this.index, bounded);
+    }
+
     @Override
     public QUnit getUnit() {
-        return this.dists[0].getUnit();
+        return this.unit;
     }
 
     @Override
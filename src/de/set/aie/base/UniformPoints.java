@@ -0,0 +1,64 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+/**
+ * Points in the unit cube for the stratified {@link SamplingMode}s. Dimension d of the point for row i is used for
+ * the d-th continuous leaf distribution in the i-th sample.
+ */
+abstract class UniformPoints {
+
+    private static final double LARGEST_BELOW_ONE = Math.nextDown(1.0);
+
+    /**
+     * Creates the points for a sample of the given size, or returns null for {@link SamplingMode#MONTE_CARLO} or
+     * when there is no dimension at all. The points only depend on the seed, not on the order in which they are
+     * requested.
+     */
+    static UniformPoints create(final SamplingMode mode, final long seed, final int dimensions, final int count) {
+        if (dimensions == 0) {
+            return null;
+        }
+        switch (mode) {
+        case MONTE_CARLO:
+            return null;
+        case LATIN_HYPERCUBE:
+            return new LatinHypercubePoints(seed, dimensions, count);
+        case SOBOL:
+            return new SobolPoints(seed, dimensions);
+        default:
+            throw new AssertionError("unknown sampling mode " + mode);
+        }
+    }
+
+    /**
+     * Writes the given dimension of the points for the rows firstRow to firstRow + size - 1 to out. All numbers
+     * are strictly between 0 and 1, so that they can be passed to quantile functions of unbounded distributions.
+     */
+    abstract void fill(int dimension, int firstRow, double[] out, int size);
+
+    /**
+     * Returns a uniformly distributed number strictly between 0 and 1.
+     */
+    static double openUnit(final RandomSource r) {
+        return ((r.nextLong() >>> 11) + 0.5) * 0x1.0p-53;
+    }
+
+    static double belowOne(final double d) {
+        return Math.min(d, LARGEST_BELOW_ONE);
+    }
+
+}
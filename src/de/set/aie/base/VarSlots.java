@@ -0,0 +1,64 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense integer slots to variable ids, so that a {@link SimulationRun} can store its persisted values in
+ * arrays instead of maps. Every {@link Model.Instance} has its own table, and all runs for the instance share it.
+ * Slots are never removed, the table grows with the variables that are persisted.
+ */
+final class VarSlots {
+
+    private final ConcurrentHashMap<VarId, Integer> slots = new ConcurrentHashMap<>();
+    private volatile VarId[] names = new VarId[16];
+    private int count;
+
+    /**
+     * Returns the slot for the given id, and assigns a new one if the id has none yet.
+     */
+    public int slotOf(final VarId name) {
+        final Integer slot = this.slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        return this.assignSlot(name);
+    }
+
+    private synchronized int assignSlot(final VarId name) {
+        final Integer slot = this.slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        final int newSlot = this.count;
+        VarId[] n = this.names;
+        if (newSlot >= n.length) {
+            n = Arrays.copyOf(n, 2 * n.length);
+        }
+        n[newSlot] = name;
+        this.names = n;
+        this.count++;
+        this.slots.put(name, newSlot);
+        return newSlot;
+    }
+
+    public VarId nameOf(final int slot) {
+        return this.names[slot];
+    }
+
+}
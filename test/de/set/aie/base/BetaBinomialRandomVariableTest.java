@@ -0,0 +1,84 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static de.set.aie.base.BlockDistributedRandomVariableTest.sample;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BetaBinomialRandomVariableTest {
+
+    private static void checkMoments(final double[] samples, final int n, final double a, final double b,
+            final double shift) {
+        final double expectedMean = n * a / (a + b) + shift;
+        final double expectedVariance = n * a * b * (a + b + n) / ((a + b) * (a + b) * (a + b + 1));
+        final double mean = Mean.of(samples).get();
+        double sumSq = 0.0;
+        for (final double d : samples) {
+            sumSq += (d - mean) * (d - mean);
+        }
+        final double sd = Math.sqrt(expectedVariance);
+        assertEquals(expectedMean, mean, 5 * sd / Math.sqrt(samples.length));
+        assertEquals(expectedVariance, sumSq / samples.length, 0.03 * expectedVariance);
+    }
+
+    @Test
+    public void testMomentsWithSampler() {
+        final BetaBinomialRandomVariable v = new BetaBinomialRandomVariable(200, 3, 8, 5, QUnit.of("Kunden"));
+        checkMoments(sample(v, QUnit.of("Kunden")), 200, 3, 8, 5);
+    }
+
+    @Test
+    public void testMomentsWithSmallShapes() {
+        final BetaBinomialRandomVariable v = new BetaBinomialRandomVariable(50, 0.5, 0.7, 0, QUnit.scalar());
+        checkMoments(sample(v, QUnit.scalar()), 50, 0.5, 0.7, 0);
+    }
+
+    @Test
+    public void testMomentsWithTable() {
+        final BetaBinomialRandomVariable v =
+                new BetaBinomialRandomVariable(5000, 4, 21, 3, QUnit.of("Kunden")).withInverseCdfTable();
+        checkMoments(sample(v, QUnit.of("Kunden")), 5000, 4, 21, 3);
+    }
+
+    @Test
+    public void testTableAndSamplerAgree() {
+        final BetaBinomialRandomVariable v = new BetaBinomialRandomVariable(300, 2, 5, 0, QUnit.scalar());
+        final double[] sampled = sample(v, QUnit.scalar());
+        final double[] fromTable = sample(v.withInverseCdfTable(), QUnit.scalar());
+        Arrays.sort(sampled);
+        Arrays.sort(fromTable);
+        for (final double quantile : new double[] {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99}) {
+            final int index = (int) (quantile * sampled.length);
+            assertEquals(sampled[index], fromTable[index], 2.0);
+        }
+    }
+
+    @Test
+    public void testExtrapolateFromSample() {
+        final BetaBinomialRandomVariable v = Distributions.extrapolateFromSample(10_000, 100, 20, QUnit.of("Kunden"));
+        final double[] samples = sample(v, QUnit.of("Kunden"));
+        for (final double d : samples) {
+            assertTrue(d >= 20 && d <= 9920);
+        }
+        checkMoments(samples, 9900, 21, 81, 20);
+    }
+
+}
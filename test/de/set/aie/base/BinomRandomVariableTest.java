@@ -18,6 +18,9 @@ package de.set.aie.base;
 import static de.set.aie.base.BlockDistributedRandomVariableTest.checkCountBetween;
 import static de.set.aie.base.BlockDistributedRandomVariableTest.sample;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -59,4 +62,73 @@ public class BinomRandomVariableTest {
         checkCountBetween(samples, 99.5, Double.POSITIVE_INFINITY, 0, 0);
     }
 
+    /**
+     * Compares the frequencies of the values with the binomial distribution, with a chi square test
+     * (alpha about 0.001). Cells with small expected counts are merged.
+     */
+    private static void checkBinomialFit(final long n, final double p, final long seed) {
+        final int count = 200_000;
+        final RandomSource r = RandomSource.wrap(new Random(seed));
+        final int[] observed = new int[(int) n + 1];
+        for (int i = 0; i < count; i++) {
+            observed[(int) r.nextBinomial(n, p)]++;
+        }
+        final double[] pmf = new double[(int) n + 1];
+        final boolean useUpper = p > 0.5;
+        final double pp = useUpper ? 1.0 - p : p;
+        pmf[0] = Math.pow(1.0 - pp, n);
+        for (int k = 0; k < n; k++) {
+            pmf[k + 1] = pmf[k] * (n - k) / (k + 1) * pp / (1.0 - pp);
+        }
+        double chiSquare = 0.0;
+        int cells = 0;
+        double expectedRest = 0.0;
+        int observedRest = 0;
+        for (int k = 0; k <= n; k++) {
+            final double expected = count * pmf[useUpper ? (int) n - k : k];
+            if (expected < 5.0) {
+                expectedRest += expected;
+                observedRest += observed[k];
+            } else {
+                chiSquare += (observed[k] - expected) * (observed[k] - expected) / expected;
+                cells++;
+            }
+        }
+        if (expectedRest > 0.0) {
+            chiSquare += (observedRest - expectedRest) * (observedRest - expectedRest) / Math.max(expectedRest, 5.0);
+            cells++;
+        }
+        final int df = cells - 1;
+        assertTrue("chi square " + chiSquare + " for " + df + " degrees of freedom",
+                chiSquare < df + 3.1 * Math.sqrt(2.0 * df) + 5.0);
+    }
+
+    @Test
+    public void testFitSmallMean() {
+        checkBinomialFit(40, 0.1, 1);
+        checkBinomialFit(1000, 0.005, 2);
+    }
+
+    @Test
+    public void testFitLargeMean() {
+        checkBinomialFit(100, 0.4, 3);
+        checkBinomialFit(500, 0.5, 4);
+        checkBinomialFit(300, 0.85, 5);
+    }
+
+    @Test
+    public void testLargeCountMeanAndVariance() {
+        final BinomRandomVariable v = new BinomRandomVariable(
+                Distributions.fixed(Quantity.of(1_000_000, "customers")),
+                Distributions.fixed(Quantity.of(0.03, QUnit.scalar())));
+        final double[] samples = sample(v, QUnit.of("customers"));
+        final Mean mean = Mean.of(samples);
+        double sumSq = 0.0;
+        for (final double d : samples) {
+            sumSq += (d - mean.get()) * (d - mean.get());
+        }
+        assertEquals(30_000.0, mean.get(), 2.0);
+        assertEquals(29_100.0, sumSq / samples.length, 600.0);
+    }
+
 }
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import de.set.aie.base.Model.Instance;
+
+public class BlockSplitterTest {
+
+    @Test
+    public void testEveryBlockIsRunExactlyOnce() throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            for (final ExecutorService executor : new ExecutorService[] {null, ForkJoinPool.commonPool(), pool}) {
+                final AtomicIntegerArray calls = new AtomicIntegerArray(1000);
+                BlockSplitter.run(calls.length(), executor, calls::incrementAndGet);
+                for (int i = 0; i < calls.length(); i++) {
+                    assertEquals(1, calls.get(i));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTaskStateIsCreatedOncePerTask() throws Exception {
+        final AtomicInteger tasks = new AtomicInteger();
+        final AtomicIntegerArray calls = new AtomicIntegerArray(1000);
+        BlockSplitter.runTasks(calls.length(), null, () -> {
+            tasks.incrementAndGet();
+            return calls::incrementAndGet;
+        });
+        assertEquals(1, tasks.get());
+        for (int i = 0; i < calls.length(); i++) {
+            assertEquals(1, calls.get(i));
+        }
+    }
+
+    @Test
+    public void testTaskSizeAdaptsToCostPerBlock() {
+        assertEquals(1, BlockSplitter.blocksPerTask(10 * BlockSplitter.TARGET_TASK_NANOS));
+        assertEquals(10, BlockSplitter.blocksPerTask(BlockSplitter.TARGET_TASK_NANOS / 10));
+        assertEquals(BlockSplitter.TARGET_TASK_NANOS, BlockSplitter.blocksPerTask(0));
+    }
+
+    @Test
+    public void testSamplesDoNotDependOnExecutor() throws Exception {
+        final Model m = new Model();
+        m.add(VarId.of("x"), Distributions.normal(0, 10, QUnit.scalar()));
+        m.add(VarId.of("y"), (final Instance i) -> i.get(VarId.of("x")).plus(Distributions.normal(-1, 1, QUnit.scalar())));
+        final VarId[] vars = {VarId.of("y")};
+        final double[] sequential = m.instantiate().createSamples(3, 5_000, null, vars).get(vars[0]);
+        final ForkJoinPool smallPool = new ForkJoinPool(2);
+        final ExecutorService threads = Executors.newCachedThreadPool();
+        try {
+            assertArrayEquals(sequential, m.instantiate().createSamples(3, 5_000, vars).get(vars[0]), 0.0);
+            assertArrayEquals(sequential, m.instantiate().createSamples(3, 5_000, smallPool, vars).get(vars[0]), 0.0);
+            assertArrayEquals(sequential, m.instantiate().createSamples(3, 5_000, threads, vars).get(vars[0]), 0.0);
+        } finally {
+            smallPool.shutdown();
+            threads.shutdown();
+        }
+    }
+
+}
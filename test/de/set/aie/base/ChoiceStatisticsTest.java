@@ -0,0 +1,75 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import de.set.aie.base.Model.Instance;
+
+public class ChoiceStatisticsTest {
+
+    private static Model createModel() {
+        final Model m = new Model();
+        m.add(VarId.of("x"), Distributions.normal(-10, 30, QUnit.of("EUR")));
+        m.add(VarId.of("a"), (final Instance i) -> i.get(VarId.of("x")).times(2.0));
+        m.add(VarId.of("b"), (final Instance i) -> i.get(VarId.of("x")).plus(Distributions.normal(20, 30, QUnit.of("EUR"))));
+        m.add(VarId.of("c"), Distributions.fixed(0, QUnit.of("EUR")));
+        return m;
+    }
+
+    @Test
+    public void testSameResultsAsWithSamples() throws Exception {
+        final VarId[] choices = {VarId.of("a"), VarId.of("b"), VarId.of("c")};
+        final Instance inst = createModel().instantiate();
+        final Map<VarId, double[]> samples = inst.createSamples(3, 10_000, choices);
+        final ChoiceStatistics stats = inst.accumulate(3, 10_000, ForkJoinPool.commonPool(),
+                () -> new ChoiceStatistics(choices.length, 2), choices);
+
+        final double[] b = samples.get(VarId.of("b"));
+        final double[] c = samples.get(VarId.of("c"));
+        final double[] loss = new double[b.length];
+        for (int i = 0; i < loss.length; i++) {
+            loss[i] = b[i] - c[i];
+        }
+        for (int k = 0; k < choices.length; k++) {
+            final Mean expected = Mean.of(samples.get(choices[k]));
+            assertEquals(expected.get(), stats.getMean(k).get(), 1e-9);
+            assertEquals(expected.getVariance(), stats.getMean(k).getVariance(), 1e-6);
+        }
+        assertEquals(1, stats.getBestChoice());
+        assertEquals(Mean.of(loss).get(), stats.getLossOfReference().get(), 1e-9);
+        assertEquals(Mean.of(loss).getVariance(), stats.getLossOfReference().getVariance(), 1e-6);
+    }
+
+    @Test
+    public void testResultDoesNotDependOnExecutor() throws Exception {
+        final VarId[] choices = {VarId.of("a"), VarId.of("b")};
+        final Instance inst = createModel().instantiate();
+        final ChoiceStatistics parallel = inst.accumulate(4, 50_000, ForkJoinPool.commonPool(),
+                () -> new ChoiceStatistics(choices.length, 0), choices);
+        final ChoiceStatistics sequential = inst.accumulate(4, 50_000, null,
+                () -> new ChoiceStatistics(choices.length, 0), choices);
+        assertEquals(sequential.getMean(1).get(), parallel.getMean(1).get(), 0.0);
+        assertEquals(sequential.getLossOfReference().getVariance(), parallel.getLossOfReference().getVariance(), 0.0);
+        assertEquals(50_000, parallel.getMean(0).getCount());
+    }
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.set.aie.base.Model.Instance;
+
+@SuppressWarnings("nls")
+public class CompiledProgramTest {
+
+    private static final double DELTA = 0.0000001;
+
+    private static double[][] execute(final Instance inst, final int size, final VarId... vars) {
+        return execute(inst.compile(vars), size);
+    }
+
+    private static double[][] execute(final CompiledProgram p, final int size) {
+        final double[][] registers = p.newRegisters(size);
+        p.execute(RandomSource.wrap(new Random(42)), new SimulationBatch(size), registers);
+        final double[][] ret = new double[p.getOutputCount()][];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = registers[p.getOutputRegister(i)];
+        }
+        return ret;
+    }
+
+    private static double mean(final double[] values) {
+        return Mean.of(values).get();
+    }
+
+    @Test
+    public void testPersistentVariablesAreShared() {
+        final Model m = new Model();
+        m.add(VarId.of("x"), Distributions.normal(0, 10, QUnit.of("EUR")));
+        m.add(VarId.of("y"), (final Instance i) -> i.get(VarId.of("x")).times(2.0));
+        m.add(VarId.of("z"), (final Instance i) -> i.get(VarId.of("y")).minus(i.get(VarId.of("x"))));
+        final double[][] values = execute(m.instantiate(), 100, VarId.of("x"), VarId.of("y"), VarId.of("z"));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(2 * values[0][i], values[1][i], DELTA);
+            assertEquals(values[0][i], values[2][i], DELTA);
+        }
+    }
+
+    @Test
+    public void testDistributionsMatchObserve() {
+        final Model m = new Model();
+        m.add(VarId.of("n"), Distributions.normal(1, 5, QUnit.scalar()).bound(2, 4));
+        m.add(VarId.of("cond"), Distributions.conditional(0.25,
+                Distributions.fixed(10, QUnit.of("h")), Distributions.fixed(20, QUnit.of("h"))));
+        m.add(VarId.of("sum"), (final Instance i) ->
+            Distributions.fixed(1, QUnit.of("h")).sumOfN(Distributions.fixed(7, QUnit.scalar())));
+        m.add(VarId.of("binom"), Distributions.binom(50, Distributions.fixed(0.2, QUnit.scalar()), QUnit.scalar()));
+        final double[][] values = execute(m.instantiate(), 20_000,
+                VarId.of("n"), VarId.of("cond"), VarId.of("sum"), VarId.of("binom"));
+        for (final double d : values[0]) {
+            assertTrue(d >= 2.0 && d <= 4.0);
+        }
+        assertEquals(3.0, mean(values[0]), 0.05);
+        assertEquals(17.5, mean(values[1]), 0.1);
+        assertEquals(7.0, mean(values[2]), DELTA);
+        assertEquals(10.0, mean(values[3]), 0.1);
+    }
+
+    @Test
+    public void testCustomVariablesFallBackToObserve() {
+        final Model m = new Model();
+        m.add(VarId.of("stub"), new StubRV(1, 2, 3));
+        m.add(VarId.of("plusOne"), (final Instance i) ->
+            i.get(VarId.of("stub")).plus(Distributions.fixed(1, QUnit.scalar())));
+        final double[][] values = execute(m.instantiate(), 3, VarId.of("plusOne"), VarId.of("stub"));
+        assertEquals(2.0, values[0][0], DELTA);
+        assertEquals(3.0, values[0][1], DELTA);
+        assertEquals(4.0, values[0][2], DELTA);
+        assertEquals(3.0, values[1][2], DELTA);
+    }
+
+    @Test
+    public void testUnitsAreCheckedWhenCompiling() {
+        final Model m = new Model();
+        m.addRaw(VarId.of("a"), Distributions.fixed(1, QUnit.of("EUR")));
+        m.addRaw(VarId.of("b"), Distributions.fixed(1, QUnit.of("h")));
+        m.addRaw(VarId.of("sum"), (final Instance i) -> i.get(VarId.of("a")).plus(i.get(VarId.of("b"))));
+        try {
+            m.instantiate().compile(VarId.of("sum"));
+            fail("expected exception");
+        } catch (final AssertionError e) {
+        }
+    }
+
+    private static Model createArithmeticModel(final int chainLength) {
+        final Model m = new Model();
+        m.add(VarId.of("a"), Distributions.normal(10, 20, QUnit.of("EUR")));
+        m.add(VarId.of("b"), Distributions.normal(-5, 5, QUnit.of("EUR")));
+        m.add(VarId.of("c"), Distributions.normal(1, 2, QUnit.scalar()));
+        m.addRaw(VarId.of("chain"), (final Instance i) -> {
+            RandomVariable v = i.get(VarId.of("a"));
+            for (int k = 0; k < chainLength; k++) {
+                v = v.plus(i.get(VarId.of("b"))).times(0.5).max(i.get(VarId.of("b")))
+                    .minus(i.get(VarId.of("a")).div(i.get(VarId.of("c"))));
+            }
+            return v;
+        });
+        m.addRaw(VarId.of("less"), (final Instance i) ->
+            i.get(VarId.of("c")).lessThan(Distributions.fixed(1.5, QUnit.scalar())));
+        m.addRaw(VarId.of("bounded"), (final Instance i) ->
+            i.get(VarId.of("b")).plus(Distributions.normal(0, 1, QUnit.of("EUR"))).times(2.0).bound(-5, 0));
+        m.addRaw(VarId.of("sum"), (final Instance i) ->
+            Distributions.normal(0, 1, QUnit.of("h")).times(3.0).sumOfN(Distributions.fixed(4, QUnit.scalar())));
+        return m;
+    }
+
+    private static void checkGeneratedCodeMatchesInterpreter(final int chainLength) {
+        final VarId[] vars = {
+            VarId.of("chain"), VarId.of("less"), VarId.of("bounded"), VarId.of("sum"), VarId.of("a")
+        };
+        final CompiledProgram interpreted = createArithmeticModel(chainLength).instantiate().compile(vars);
+        final CompiledProgram generated = interpreted.withGeneratedCode();
+        final double[][] expected = execute(interpreted, 1000);
+        final double[][] actual = execute(generated, 1000);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 0.0);
+        }
+    }
+
+    @Test
+    public void testGeneratedCodeMatchesInterpreter() {
+        checkGeneratedCodeMatchesInterpreter(3);
+    }
+
+    @Test
+    public void testGeneratedCodeForLongChains() {
+        // longer than a single loop and larger than a single generated method
+        checkGeneratedCodeMatchesInterpreter(200);
+    }
+
+    @Test
+    public void testSumsAndProductsBecomeGeneratedCode() {
+        if (!KernelGenerator.isAvailable()) {
+            // no code generation on Java 8
+            return;
+        }
+        final Model m = new Model();
+        m.add(VarId.of("x"), Distributions.normal(1, 2, QUnit.scalar()));
+        m.add(VarId.of("y"), Distributions.normal(3, 4, QUnit.scalar()));
+        m.addRaw(VarId.of("z"), (final Instance i) ->
+            i.get(VarId.of("x")).plus(i.get(VarId.of("y"))).plus(i.get(VarId.of("x"))).times(i.get(VarId.of("y"))));
+        final CompiledProgram interpreted = m.instantiate().compile(VarId.of("z"));
+        final CompiledProgram generated = interpreted.withGeneratedCode();
+        boolean hasKernel = false;
+        for (final Instruction i : generated.getInstructions()) {
+            assertTrue(i.getClass().getName(), !(i instanceof Instructions.Binary));
+            assertTrue(i.getClass().getName(), !(i instanceof Instructions.Accumulate));
+            hasKernel |= i.getClass().getName().contains("GeneratedKernel");
+        }
+        assertTrue(hasKernel);
+        assertArrayEquals(execute(interpreted, 1000)[0], execute(generated, 1000)[0], 0.0);
+    }
+
+    @Test
+    public void testGeneratedCodeWithCustomVariables() {
+        final Model m = new Model();
+        m.add(VarId.of("stub"), new StubRV(1, 2, 3));
+        m.add(VarId.of("plusOne"), (final Instance i) ->
+            i.get(VarId.of("stub")).plus(Distributions.fixed(1, QUnit.scalar())).times(2.0));
+        final CompiledProgram p = m.instantiate().compile(VarId.of("plusOne")).withGeneratedCode();
+        final double[][] values = execute(p, 3);
+        assertEquals(4.0, values[0][0], DELTA);
+        assertEquals(6.0, values[0][1], DELTA);
+        assertEquals(8.0, values[0][2], DELTA);
+    }
+
+    @Test
+    public void testModelWithGeneratedCodeCreatesSameSamples() throws Exception {
+        final Model m = createArithmeticModel(2);
+        final Map<VarId, double[]> expected = m.instantiate().createSamples(123, 1000, VarId.of("chain"));
+        m.setUseGeneratedCode(true);
+        final Map<VarId, double[]> actual = m.instantiate().createSamples(123, 1000, VarId.of("chain"));
+        assertArrayEquals(expected.get(VarId.of("chain")), actual.get(VarId.of("chain")), 0.0);
+    }
+
+}
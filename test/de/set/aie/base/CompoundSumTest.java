@@ -0,0 +1,124 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CompoundSumTest {
+
+    @Test
+    public void testOnlyExactCasesWithoutAllowedError() {
+        final QUnit u = QUnit.scalar();
+        assertEquals(0, CompoundSum.of(Distributions.normal(1, 3, u), 0.0).getMinCount());
+        assertEquals(0, CompoundSum.of(Distributions.fixed(2, u), 0.0).getMinCount());
+        assertEquals(Long.MAX_VALUE, CompoundSum.of(Distributions.empirical(u, 1, 2, 3), 0.0).getMinCount());
+        // persistente Variablen haben in jedem Summanden den gleichen Wert
+        assertNull(CompoundSum.of(new PersistentRandomVariable(VarId.of("x"), Distributions.normal(1, 3, u)), 0.1));
+    }
+
+    @Test
+    public void testMinCountFollowsBerryEsseenBound() {
+        final EmpiricalRandomVariable v = new EmpiricalRandomVariable(QUnit.scalar(), 0, 1);
+        // symmetrische Zweipunktverteilung: E|X - mean|^3 / sd^3 = 1
+        assertEquals(1.0, v.standardizedThirdMomentBound(), 1e-12);
+        final long n = CompoundSum.of(v, 0.01).getMinCount();
+        assertEquals(Math.ceil(47.48 * 47.48), n, 0.0);
+        assertTrue(CompoundSum.BERRY_ESSEEN_CONSTANT / Math.sqrt(n) <= 0.01);
+    }
+
+    @Test
+    public void testSumOfNormalsHasSummedMoments() {
+        final NormalRandomVariable summand = Distributions.normal(0, 4, QUnit.scalar());
+        final RandomVariable sum = summand.sumOfN(10_000);
+        final Mean m = Mean.of(sampleValues(sum));
+        assertEquals(10_000 * summand.mean(), m.get(), 5.0);
+        assertEquals(Math.sqrt(10_000 * summand.variance()), Math.sqrt(m.getVariance()), 2.0);
+        // auch die kompilierte Form zieht die Summe in einem Schritt
+        final Mean compiled = sum.sample(123, 2000).mean();
+        assertEquals(10_000 * summand.mean(), compiled.get(), 5.0);
+        assertEquals(Math.sqrt(10_000 * summand.variance()), Math.sqrt(compiled.getVariance()), 2.0);
+    }
+
+    @Test
+    public void testApproximationOnlyForLargeCounts() {
+        final QUnit u = QUnit.scalar();
+        final EmpiricalRandomVariable dice = new EmpiricalRandomVariable(u, 1, 2, 3, 4, 5, 6);
+        final RandomVariable small = dice.sumOfN(Distributions.fixed(2, u), 0.05);
+        final RandomVariable large = dice.sumOfN(Distributions.fixed(5000, u), 0.05);
+        // zwei Würfel werden weiterhin einzeln gezogen, die Summe ist ganzzahlig
+        for (final double v : sampleValues(small)) {
+            assertEquals(Math.rint(v), v, 0.0);
+        }
+        final Mean m = Mean.of(sampleValues(large));
+        assertEquals(5000 * 3.5, m.get(), 5.0);
+        assertEquals(Math.sqrt(5000 * dice.variance()), Math.sqrt(m.getVariance()), 5.0);
+    }
+
+    @Test
+    public void testAggregatedDealsForLargeCounts() {
+        final QUnit eur = QUnit.of("EUR");
+        final VarId count = VarId.of("count");
+        final VarId size = VarId.of("size");
+        final VarId factor = VarId.of("factor");
+        final VarId duration = VarId.of("duration");
+        final DealsOverTimeSeries s = new DealsOverTimeSeries(
+                new ConcreteTimeSeries(ConcreteTimeSeries.Repeat.LAST, Arrays.asList(count)),
+                size, factor, duration, 0.01);
+        final Model m = new Model();
+        m.add(count, Distributions.fixed(1_000_000, QUnit.scalar()));
+        // der Betrag wird je Deal neu gezogen
+        m.addRaw(size, (final Model.Instance i) -> Distributions.normal(90, 110, eur));
+        m.add(factor, Distributions.fixed(0.2, QUnit.scalar()));
+        m.add(duration, Distributions.fixed(1.5, QUnit.scalar()));
+        final Model.Instance inst = m.instantiate();
+        final double[][] trajectories = s.sampleTrajectories(inst, 42, 200, 3);
+        final Mean year0 = Mean.of(column(trajectories, 0));
+        final Mean year2 = Mean.of(column(trajectories, 2));
+        assertEquals(1_000_000 * 100.0, year0.get(), 10_000.0);
+        // Jahr 2: neue Deals plus Wartung aller Deals aus Jahr 1 und der Hälfte der Deals aus Jahr 0
+        assertEquals(1_000_000 * 100.0 * (1 + 0.2 + 0.1), year2.get(), 10_000.0);
+
+        final SimulationRun run = new SimulationRun();
+        final double graph = s.getFor(2).apply(inst).observe(RandomSource.splittable(1), run).getNumber();
+        assertEquals(1_000_000 * 100.0 * (1 + 0.2 + 0.1), graph, 100_000.0);
+    }
+
+    private static double[] column(final double[][] values, final int index) {
+        final double[] ret = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ret[i] = values[i][index];
+        }
+        return ret;
+    }
+
+    private static double[] sampleValues(final RandomVariable v) {
+        final RandomSource r = RandomSource.splittable(123);
+        final SimulationRun run = new SimulationRun();
+        final double[] ret = new double[2000];
+        for (int i = 0; i < ret.length; i++) {
+            run.reset();
+            ret[i] = v.observe(r, run).getNumber();
+        }
+        return ret;
+    }
+
+}
@@ -4,6 +4,8 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static org.junit.Assert.assertEquals;
 
@@ -55,4 +57,36 @@ public class DealsOverTimeSeriesTest {
         checkPersistent(s.getFor(0).apply(inst), 0, run);
     }
 
+    @Test
+    public void testDealCountsAreRequestedOncePerYear() {
+        AtomicInteger requests = new AtomicInteger();
+        TimeSeries dealsPerYear = new TimeSeries() {
+            @Override
+            public Function<Model.Instance, RandomVariable> getFor(int time) {
+                requests.incrementAndGet();
+                return (Model.Instance inst) -> Distributions.fixed(2, QUnit.scalar());
+            }
+        };
+        VarId size = VarId.of("size");
+        VarId factor = VarId.of("factor");
+        VarId duration = VarId.of("duration");
+        DealsOverTimeSeries s = new DealsOverTimeSeries(dealsPerYear, size, factor, duration);
+        Model m = new Model();
+        m.add(size, Distributions.fixed(100, QUnit.of("EUR")));
+        m.add(factor, Distributions.fixed(0.5, QUnit.scalar()));
+        m.add(duration, Distributions.fixed(3, QUnit.scalar()));
+        Model.Instance inst = m.instantiate();
+        SimulationRun run = new SimulationRun();
+        RandomSource rs = RandomSource.wrap(new Random(123));
+        // zwei Deals je Jahr mit 100 EUR im ersten Jahr und 50 EUR in den drei Folgejahren
+        double[] expected = {200, 300, 400, 500, 500};
+        for (int time = expected.length - 1; time >= 0; time--) {
+            assertEquals(expected[time], s.getFor(time).apply(inst).observe(rs, run).getNumber(), DELTA);
+        }
+        for (int time = 0; time < 100; time++) {
+            s.getFor(time).apply(inst);
+        }
+        assertEquals(100, requests.get());
+    }
+
 }
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+import de.set.aie.base.Model.Instance;
+
+public class DependencyGraphTest {
+
+    private static final Predicate<Object> VARIABLES_REUSABLE = (final Object node) -> node instanceof VarId;
+
+    private static DependencyGraph graphFor(final Model m) throws Exception {
+        return m.instantiate().materializeAll().getDependencyGraph();
+    }
+
+    @Test
+    public void testDependenciesAreRecordedDuringCreation() throws Exception {
+        final Model m = new Model();
+        m.add(VarId.of("a"), Distributions.normal(0, 1, QUnit.scalar()));
+        m.add(VarId.of("b"), (final Instance i) -> i.get(VarId.of("a")).plus(Distributions.fixed(1, QUnit.scalar())));
+        m.add(VarId.of("c"), (final Instance i) -> i.get(VarId.of("b")).times(i.get(VarId.of("a"))));
+        final DependencyGraph g = graphFor(m);
+        assertEquals(new HashSet<>(Arrays.asList(VarId.of("a"), VarId.of("b"))), g.getDependencies(VarId.of("c")));
+        assertEquals(Collections.singleton(VarId.of("a")), g.getDependencies(VarId.of("b")));
+        assertEquals(Collections.emptySet(), g.getDependencies(VarId.of("a")));
+        assertTrue(g.isUsed(VarId.of("a")));
+        assertFalse(g.isUsed(VarId.of("c")));
+    }
+
+    @Test
+    public void testOnlyDownstreamIsAffected() throws Exception {
+        final Model m = new Model();
+        m.add(VarId.of("a"), Distributions.normal(0, 1, QUnit.scalar()));
+        m.add(VarId.of("b"), (final Instance i) -> i.get(VarId.of("a")).times(2.0));
+        m.add(VarId.of("c"), (final Instance i) -> i.get(VarId.of("b")).times(3.0));
+        m.add(VarId.of("d"), (final Instance i) -> i.get(VarId.of("a")).times(4.0));
+        final DependencyGraph g = graphFor(m);
+        assertEquals(new HashSet<>(Arrays.asList(VarId.of("b"), VarId.of("c"))),
+                g.getAffectedBy(VarId.of("b"), VARIABLES_REUSABLE));
+        assertEquals(new HashSet<>(Arrays.asList(VarId.of("a"), VarId.of("b"), VarId.of("c"), VarId.of("d"))),
+                g.getAffectedBy(VarId.of("a"), VARIABLES_REUSABLE));
+    }
+
+    @Test
+    public void testUsersOfSharedObjectsAreAffected() throws Exception {
+        final Model m = new Model();
+        m.add(VarId.of("r"), Distributions.normal(0, 1, QUnit.scalar()));
+        m.addObject("o", (final Instance i) -> Distributions.normal(5, 6, QUnit.scalar()));
+        m.add(VarId.of("x"), (final Instance i) ->
+            i.get(VarId.of("r")).plus(i.<RandomVariable>getObject("o")));
+        m.add(VarId.of("y"), (final Instance i) -> i.<RandomVariable>getObject("o").times(2.0));
+        m.add(VarId.of("z"), Distributions.normal(0, 1, QUnit.scalar()));
+        final DependencyGraph g = graphFor(m);
+        assertEquals(new HashSet<>(Arrays.asList(VarId.of("r"), VarId.of("x"), "o", VarId.of("y"))),
+                g.getAffectedBy(VarId.of("r"), VARIABLES_REUSABLE));
+    }
+
+}
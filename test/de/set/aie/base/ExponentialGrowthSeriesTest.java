@@ -2,9 +2,17 @@ package de.set.aie.base;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class ExponentialGrowthSeriesTest {
 
@@ -53,4 +61,66 @@ public class ExponentialGrowthSeriesTest {
         checkPersistent(s.getFor(3).apply(inst), 162, run2);
     }
 
+    @Test
+    public void testNodesAreBuiltOncePerInstance() {
+        VarId base = VarId.of("base");
+        VarId exp = VarId.of("exp");
+        ExponentialGrowthSeries s = new ExponentialGrowthSeries(base, exp);
+        Model m = new Model();
+        m.add(base, Distributions.normal(10, 20, QUnit.scalar()));
+        m.add(exp, Distributions.normal(1.0, 1.1, QUnit.scalar()));
+        Model.Instance inst = m.instantiate();
+        assertSame(s.getFor(30).apply(inst), s.getFor(30).apply(inst));
+        // die Summe über alle Zeitpunkte nutzt die Knoten gemeinsam, also linear viele Instruktionen
+        m.addRaw(VarId.of("sum"), s.collapse(0, 99));
+        int instructions = m.instantiate().compile(VarId.of("sum")).getInstructions().length;
+        assertTrue("instructions: " + instructions, instructions < 10 * 100);
+    }
+
+    @Test
+    public void testConsecutivePointsSharePrefix() throws Exception {
+        VarId base = VarId.of("base");
+        VarId exp = VarId.of("exp");
+        ExponentialGrowthSeries s = new ExponentialGrowthSeries(base, exp);
+        TimeSeries diff = s.differential();
+        Model m = new Model();
+        m.add(base, Distributions.normal(10, 20, QUnit.scalar()));
+        // nicht persistent, d.h. ein neuer Wert für jeden Zeitpunkt
+        m.addRaw(exp, Distributions.normal(1.0, 1.2, QUnit.scalar()));
+        m.addRaw(VarId.of("last"), s.getFor(5));
+        m.addRaw(VarId.of("first"), s.getFor(0));
+        m.addRaw(VarId.of("sumOfDiffs"), diff.collapse(1, 5));
+        Map<VarId, double[]> samples = m.instantiate().createSamples(
+                3, 1000, VarId.of("last"), VarId.of("first"), VarId.of("sumOfDiffs"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(samples.get(VarId.of("last"))[i],
+                    samples.get(VarId.of("first"))[i] + samples.get(VarId.of("sumOfDiffs"))[i], DELTA);
+        }
+    }
+
+    @Test
+    public void testPointAsModelVariable() throws Exception {
+        VarId base = VarId.of("base");
+        VarId exp = VarId.of("exp");
+        ExponentialGrowthSeries s = new ExponentialGrowthSeries(base, exp);
+        Model m = new Model();
+        m.add(base, Distributions.normal(10, 20, QUnit.scalar()));
+        m.add(exp, Distributions.normal(1.0, 1.1, QUnit.scalar()));
+        // ein Zeitpunkt als persistente Modellvariable und einer ohne Persistenz
+        m.add(VarId.of("y10"), s.getFor(10));
+        m.addRaw(VarId.of("y5"), s.getFor(5));
+        List<VarId> persistent = m.getAllPersistentVariables();
+        assertTrue(persistent.contains(VarId.of("y10")));
+        assertFalse(persistent.contains(VarId.of("y5")));
+
+        File file = File.createTempFile("series", ".csv");
+        try {
+            m.printDistributions(file, 42);
+            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            assertTrue(content, content.contains("y10"));
+        } finally {
+            file.delete();
+        }
+    }
+
 }
@@ -29,9 +29,9 @@ public class LogNormalRandomVariableTest {
         assertEquals(VarKind.D, v.getType());
         final double[] samples = sample(v, QUnit.of("h")); //$NON-NLS-1$
         checkCountBetween(samples, Double.NEGATIVE_INFINITY, 0.0, 0, 0);
-        checkCountBetween(samples, 0.0, 1.0, 5000, 100);
+        checkCountBetween(samples, 0.0, 1.0, 5000, 280);
         checkCountBetween(samples, 1.0, 100.0, 90000, 500);
-        checkCountBetween(samples, 100.0, Double.POSITIVE_INFINITY, 5000, 100);
+        checkCountBetween(samples, 100.0, Double.POSITIVE_INFINITY, 5000, 280);
     }
 
 }
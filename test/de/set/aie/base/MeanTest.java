@@ -0,0 +1,99 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MeanTest {
+
+    private static double[] numbers(final int count, final long seed) {
+        final Random r = new Random(seed);
+        final double[] ret = new double[count];
+        for (int i = 0; i < count; i++) {
+            ret[i] = 1e6 + r.nextGaussian() * 3.0;
+        }
+        return ret;
+    }
+
+    private static double twoPassVariance(final double[] values) {
+        double sum = 0.0;
+        for (final double d : values) {
+            sum += d;
+        }
+        final double mean = sum / values.length;
+        double sq = 0.0;
+        for (final double d : values) {
+            sq += (d - mean) * (d - mean);
+        }
+        return sq / (values.length - 1);
+    }
+
+    @Test
+    public void testVarianceMatchesTwoPass() {
+        final double[] values = numbers(10_000, 1);
+        final Mean m = Mean.of(values);
+        assertEquals(10_000, m.getCount());
+        assertEquals(twoPassVariance(values), m.getVariance(), 1e-6);
+        assertEquals(Math.sqrt(twoPassVariance(values) / 10_000), m.getStandardError(), 1e-9);
+    }
+
+    @Test
+    public void testMergedEqualsWhole() {
+        final double[] values = numbers(1_000, 2);
+        final Mean whole = Mean.of(values);
+        final Mean merged = Mean.of(values, 0, 123).add(Mean.of(values, 123, 700)).add(Mean.of(values, 700, 1000));
+        assertEquals(whole.getCount(), merged.getCount());
+        assertEquals(whole.get(), merged.get(), 1e-9);
+        assertEquals(whole.getVariance(), merged.getVariance(), 1e-9);
+    }
+
+    @Test
+    public void testSingleObservations() {
+        final double[] values = numbers(500, 3);
+        Mean m = Mean.undefined();
+        for (final double d : values) {
+            m = m.add(d);
+        }
+        assertEquals(Mean.of(values).get(), m.get(), 1e-9);
+        assertEquals(Mean.of(values).getVariance(), m.getVariance(), 1e-9);
+        assertEquals(m.get(), Mean.undefined().add(m).get(), 0.0);
+    }
+
+    @Test
+    public void testConfidenceInterval() {
+        final Mean m = Mean.of(new double[] {1.0, 2.0, 3.0, 4.0});
+        assertEquals(1.96 * Math.sqrt(5.0 / 3.0 / 4.0), m.getConfidenceHalfWidth(0.95), 1e-3);
+        assertTrue(Double.isNaN(Mean.of(new double[] {1.0}).getVariance()));
+    }
+
+    @Test
+    public void testExactValue() {
+        final Mean m = Mean.exact(0.0);
+        assertTrue(m.isExact());
+        assertFalse(Mean.undefined().isExact());
+        assertFalse(Mean.of(new double[] {0.0, 0.0}).isExact());
+        assertEquals(0, m.getCount());
+        assertEquals(0.0, m.get(), 0.0);
+        assertEquals(0.0, m.getConfidenceHalfWidth(0.95), 0.0);
+    }
+
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.set.aie.base.Model.Instance;
+
+public class ModelInstanceTest {
+
+    @Test
+    public void testCycleIsReportedWithChain() {
+        final Model m = new Model();
+        m.addRaw(VarId.of("a"), (final Instance i) -> i.get(VarId.of("b")).plus(Distributions.fixed(1, QUnit.scalar())));
+        m.addRaw(VarId.of("b"), (final Instance i) -> i.get(VarId.of("c")));
+        m.addRaw(VarId.of("c"), (final Instance i) -> i.get(VarId.of("a")));
+        try {
+            m.instantiate().get(VarId.of("a"));
+            fail("expected exception");
+        } catch (final IllegalStateException e) {
+            assertEquals("cyclic definition: a -> b -> c -> a", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testFailedDefinitionIsNotCached() {
+        final AtomicInteger calls = new AtomicInteger();
+        final Model m = new Model();
+        m.addRaw(VarId.of("a"), (final Instance i) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("first call");
+            }
+            return Distributions.fixed(1, QUnit.scalar());
+        });
+        final Instance inst = m.instantiate();
+        try {
+            inst.get(VarId.of("a"));
+            fail("expected exception");
+        } catch (final IllegalStateException e) {
+        }
+        assertEquals(1.0, inst.get(VarId.of("a")).observe(null, new SimulationRun()).getNumber(), 0.0);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testConcurrentGetsBuildOnce() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final Model m = new Model();
+        m.addRaw(VarId.of("a"), (final Instance i) -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                Thread.sleep(50);
+            } catch (final InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return Distributions.fixed(1, QUnit.scalar());
+        });
+        final Instance inst = m.instantiate();
+        final ExecutorService ex = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<RandomVariable>> results = new ArrayList<>();
+            results.add(ex.submit(() -> inst.get(VarId.of("a"))));
+            started.await();
+            for (int t = 0; t < 7; t++) {
+                results.add(ex.submit(() -> inst.get(VarId.of("a"))));
+            }
+            final RandomVariable first = results.get(0).get();
+            for (final Future<RandomVariable> f : results) {
+                assertSame(first, f.get());
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            ex.shutdown();
+        }
+    }
+
+    @Test
+    public void testCycleAcrossThreadsDoesNotDeadlock() throws Exception {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final Model m = new Model();
+        m.addRaw(VarId.of("x"), (final Instance i) -> {
+            awaitQuietly(bothStarted);
+            return i.get(VarId.of("y"));
+        });
+        m.addRaw(VarId.of("y"), (final Instance i) -> {
+            awaitQuietly(bothStarted);
+            return i.get(VarId.of("x"));
+        });
+        final Instance inst = m.instantiate();
+        final ExecutorService ex = Executors.newFixedThreadPool(2);
+        try {
+            final Future<RandomVariable> fx = ex.submit(() -> inst.get(VarId.of("x")));
+            final Future<RandomVariable> fy = ex.submit(() -> inst.get(VarId.of("y")));
+            assertCyclic(fx);
+            assertCyclic(fy);
+        } finally {
+            ex.shutdown();
+        }
+    }
+
+    @Test
+    public void testMaterializeAllBuildsSharedPartsOnce() throws Exception {
+        final AtomicInteger sharedCalls = new AtomicInteger();
+        final Model m = new Model();
+        m.addRaw(VarId.of("shared"), (final Instance i) -> {
+            sharedCalls.incrementAndGet();
+            return Distributions.fixed(2, QUnit.scalar());
+        });
+        for (int k = 0; k < 50; k++) {
+            final double factor = k;
+            m.add(VarId.of("v" + k), (final Instance i) -> i.get(VarId.of("shared")).times(factor));
+        }
+        final Instance inst = m.instantiate().materializeAll();
+        assertEquals(1, sharedCalls.get());
+        assertEquals(98.0, inst.get(VarId.of("v49")).observe(null, new SimulationRun()).getNumber(), 0.0);
+        assertEquals(1, sharedCalls.get());
+    }
+
+    @Test
+    public void testMaterializeAllUsesTheGivenExecutor() throws Exception {
+        final List<String> threads = new ArrayList<>();
+        final Model m = new Model();
+        for (int k = 0; k < 10; k++) {
+            m.addRaw(VarId.of("v" + k), (final Instance i) -> {
+                synchronized (threads) {
+                    threads.add(Thread.currentThread().getName());
+                }
+                return Distributions.fixed(1, QUnit.scalar());
+            });
+        }
+        final ExecutorService executor = Executors.newSingleThreadExecutor((final Runnable r) -> new Thread(r, "own"));
+        try {
+            m.instantiate().materializeAll(executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(10, threads.size());
+        for (final String t : threads) {
+            assertEquals("own", t);
+        }
+    }
+
+    private static void assertCyclic(final Future<RandomVariable> f) throws InterruptedException {
+        try {
+            f.get(10, TimeUnit.SECONDS);
+            fail("expected exception");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertTrue(e.getCause().getMessage(), e.getCause().getMessage().startsWith("cyclic definition: "));
+        } catch (final TimeoutException e) {
+            fail("deadlock");
+        }
+        assertFalse(f.isCancelled());
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        latch.countDown();
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
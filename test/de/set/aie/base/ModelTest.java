@@ -18,8 +18,13 @@ package de.set.aie.base;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
@@ -32,6 +37,7 @@ public class ModelTest {
     private static final class VoiResultChecker implements AnalysisResultHandler {
 
         private Map<VarId, Mean> lastVois;
+        private int lastIter;
 
         @Override
         public void handleValueVariables(Map<VarId, Sample> samples, VarId bestChoice) {
@@ -47,6 +53,7 @@ public class ModelTest {
                 assertThat(m.get(), greaterThanOrEqualTo(0.0));
             }
             this.lastVois = means;
+            this.lastIter = iter;
         }
 
         public void checkVoiIsApprox(VarId name, double expected) {
@@ -84,4 +91,111 @@ public class ModelTest {
         ch.checkVoiIsApprox(VarId.of("val"), 0.0);
     }
 
+    @Test
+    public void testVoiDoesNotDependOnParallelism() throws Exception {
+        final Model m = new Model();
+        m.add(VarId.of("dir"), Distributions.empirical(QUnit.scalar(), -1.0, 1.0));
+        m.add(VarId.of("val"), Distributions.shiftedExp(1.0, 10.0, QUnit.of("EUR")));
+        m.add(VarId.of("combined"), (final Instance i) -> i.get(VarId.of("dir")).times(i.get(VarId.of("val"))));
+        m.add(VarId.of("zero"), Distributions.fixed(Quantity.of(0, QUnit.of("EUR"))));
+
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        final ExecutorService multi = Executors.newFixedThreadPool(4);
+        try {
+            final VoiResultChecker ch1 = new VoiResultChecker();
+            m.analyze(17, AnalysisOptions.defaults().withIterations(40).withExecutor(single),
+                    ch1, VarId.of("combined"), VarId.of("zero"));
+            final VoiResultChecker ch2 = new VoiResultChecker();
+            m.analyze(17, AnalysisOptions.defaults().withIterations(40).withExecutor(multi),
+                    ch2, VarId.of("combined"), VarId.of("zero"));
+            for (final VarId name : ch1.lastVois.keySet()) {
+                assertEquals(ch1.lastVois.get(name).get(), ch2.lastVois.get(name).get(), 0.0);
+            }
+        } finally {
+            single.shutdown();
+            multi.shutdown();
+        }
+    }
+
+    @Test
+    public void testAdaptiveStopping() throws Exception {
+        final Model m = new Model();
+        m.addRaw(VarId.of("dir"), Distributions.empirical(QUnit.scalar(), -1.0, 1.0));
+        m.addRaw(VarId.of("val"), Distributions.fixed(Quantity.of(10.0, QUnit.of("EUR"))));
+        m.addRaw(VarId.of("combined"), (final Instance i) -> i.get(VarId.of("dir")).times(i.get(VarId.of("val"))));
+        m.addRaw(VarId.of("zero"), Distributions.fixed(Quantity.of(0, QUnit.of("EUR"))));
+
+        final VoiResultChecker ch = new VoiResultChecker();
+        m.analyze(132, AnalysisOptions.defaults().withTargetError(0.2, Double.NaN), ch,
+                VarId.of("combined"), VarId.of("zero"));
+        ch.checkVoiIsApprox(VarId.of("dir"), 5.0);
+        assertEquals(0.0, ch.lastVois.get(VarId.of("val")).get(), 0.0);
+        assertTrue(ch.lastVois.get(VarId.of("val")).isExact());
+        assertThat(ch.lastVois.get(VarId.of("dir")).getConfidenceHalfWidth(AnalysisOptions.CONFIDENCE_LEVEL),
+                lessThanOrEqualTo(0.2));
+        assertThat(ch.lastIter, lessThanOrEqualTo(1_000));
+    }
+
+    @Test
+    public void testStoppedVariablesLeaveTheirBudgetToOthers() throws Exception {
+        final Model m = new Model();
+        m.addRaw(VarId.of("dir"), Distributions.empirical(QUnit.scalar(), -1.0, 1.0));
+        m.addRaw(VarId.of("val"), Distributions.fixed(Quantity.of(10.0, QUnit.of("EUR"))));
+        m.addRaw(VarId.of("combined"), (final Instance i) -> i.get(VarId.of("dir")).times(i.get(VarId.of("val"))));
+        m.addRaw(VarId.of("zero"), Distributions.fixed(Quantity.of(0, QUnit.of("EUR"))));
+        // not used by the value variables, so its loss is always 0 and it stops after the first round
+        m.addRaw(VarId.of("unused"), Distributions.normal(0, 1, QUnit.scalar()));
+
+        final VoiResultChecker ch = new VoiResultChecker();
+        m.analyze(132, AnalysisOptions.defaults().withIterations(50).withTargetError(1e-9, Double.NaN), ch,
+                VarId.of("combined"), VarId.of("zero"));
+        final long unusedCount = ch.lastVois.get(VarId.of("unused")).getCount();
+        final long dirCount = ch.lastVois.get(VarId.of("dir")).getCount();
+        assertThat(unusedCount, lessThanOrEqualTo(500L));
+        // budget of 3 * 50 iterations: what "unused" did not need is spent on "dir" and "combined"
+        assertTrue("count " + dirCount, dirCount > 500);
+        assertEquals(3 * 50 * 10, unusedCount + dirCount + ch.lastVois.get(VarId.of("combined")).getCount(), 20);
+        assertThat(ch.lastIter, greaterThanOrEqualTo(50));
+    }
+
+    @Test
+    public void testVariableWithKnownRankIsSampledUntilPreciseEnough() {
+        final double[] high = new double[200];
+        final double[] low = new double[200];
+        for (int i = 0; i < high.length; i++) {
+            high[i] = 10.0 + (i % 2 == 0 ? 1.0 : -1.0);
+            low[i] = i % 2 == 0 ? 1.0 : -1.0;
+        }
+        final Mean[] means = {Mean.of(high), Mean.of(low), Mean.of(low)};
+        final boolean[] active = {true, true, true};
+        final boolean[] uncertain = {true, true, true};
+        Model.updateAllocation(AnalysisOptions.defaults().withTargetError(0.01, Double.NaN), means, active, uncertain);
+        // the rank of the first variable is known, but it has not reached the target error yet
+        assertTrue(active[0]);
+        assertFalse(uncertain[0]);
+        assertTrue(active[1]);
+        assertTrue(uncertain[1]);
+
+        Model.updateAllocation(AnalysisOptions.defaults().withTargetError(1.0, Double.NaN), means, active, uncertain);
+        assertFalse(active[0]);
+        assertFalse(active[1]);
+    }
+
+    @Test
+    public void testSingleLoopEngine() throws Exception {
+        final Model m = new Model();
+        m.add(VarId.of("dir"), Distributions.empirical(QUnit.scalar(), -1.0, 1.0));
+        m.add(VarId.of("val"), Distributions.shiftedExp(1.0, 10.0, QUnit.of("EUR")));
+        m.add(VarId.of("combined"), (final Instance i) -> i.get(VarId.of("dir")).times(i.get(VarId.of("val"))));
+        m.addRaw(VarId.of("zero"), Distributions.fixed(Quantity.of(0, QUnit.of("EUR"))));
+
+        final VoiResultChecker ch = new VoiResultChecker();
+        m.analyze(132, AnalysisOptions.defaults().withEngine(AnalysisOptions.VoiEngine.SINGLE_LOOP), ch,
+                VarId.of("combined"), VarId.of("zero"));
+        ch.checkVoiIsApprox(VarId.of("dir"), 2.5);
+        ch.checkVoiIsApprox(VarId.of("val"), 0.0);
+        assertFalse(ch.lastVois.containsKey(VarId.of("zero")));
+        assertEquals(AnalysisOptions.defaults().getSingleLoopSampleCount(), ch.lastIter);
+    }
+
 }
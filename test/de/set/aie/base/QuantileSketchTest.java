@@ -0,0 +1,115 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import de.set.aie.base.Model.Instance;
+
+public class QuantileSketchTest {
+
+    private static double rankOf(final double[] sorted, final double value) {
+        int idx = Arrays.binarySearch(sorted, value);
+        if (idx < 0) {
+            idx = -idx - 1;
+        }
+        return (double) idx / sorted.length;
+    }
+
+    @Test
+    public void testExactForSmallCounts() {
+        final Random r = new Random(1);
+        final double[] values = new double[150];
+        final QuantileSketch s = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = r.nextGaussian();
+            s.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (final double p : new double[] {0.0, 0.05, 0.25, 0.5, 0.75, 0.95}) {
+            assertEquals(values[(int) (values.length * p)], s.quantile(p), 0.0);
+        }
+        assertEquals(values[0], s.getMin(), 0.0);
+        assertEquals(values[values.length - 1], s.getMax(), 0.0);
+    }
+
+    @Test
+    public void testRankErrorForLargeCounts() {
+        final Random r = new Random(2);
+        final double[] values = new double[1_000_000];
+        final QuantileSketch s = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = r.nextDouble() * r.nextGaussian();
+            s.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (final double p : new double[] {0.05, 0.25, 0.5, 0.75, 0.95}) {
+            assertEquals(p, rankOf(values, s.quantile(p)), 0.02);
+        }
+        assertEquals(Mean.of(values).get(), s.getMean().get(), 1e-9);
+        assertEquals(Mean.of(values).getVariance(), s.getMean().getVariance(), 1e-9);
+    }
+
+    @Test
+    public void testMergedSketches() {
+        final Random r = new Random(3);
+        final double[] values = new double[200_000];
+        final QuantileSketch[] parts = new QuantileSketch[7];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new QuantileSketch();
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(r.nextGaussian());
+            parts[i % parts.length].add(values[i]);
+        }
+        final QuantileSketch merged = new QuantileSketch();
+        for (final QuantileSketch part : parts) {
+            merged.merge(part);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, merged.getCount());
+        for (final double p : new double[] {0.05, 0.25, 0.5, 0.75, 0.95}) {
+            assertEquals(p, rankOf(values, merged.quantile(p)), 0.02);
+        }
+        assertEquals(Mean.of(values).get(), merged.getMean().get(), 1e-9);
+        assertEquals(values[0], merged.getMin(), 0.0);
+    }
+
+    @Test
+    public void testSummarizeMatchesSamples() throws Exception {
+        final Model m = new Model();
+        m.add(VarId.of("x"), Distributions.normal(10, 20, QUnit.of("EUR")));
+        m.add(VarId.of("y"), (final Instance i) -> i.get(VarId.of("x")).times(2.0));
+        final Instance inst = m.instantiate();
+        final double[] samples = inst.createSamples(7, 5_000, VarId.of("y")).get(VarId.of("y"));
+        final Map<VarId, Sample> summary = inst.summarize(7, 5_000, ForkJoinPool.commonPool(),
+                VarId.of("x"), VarId.of("y"));
+        final Sample y = summary.get(VarId.of("y"));
+        assertEquals(Mean.of(samples).get(), y.mean().get(), 1e-9);
+        Arrays.sort(samples);
+        assertEquals(0.5, rankOf(samples, y.median()), 0.02);
+        assertEquals(summary.toString(), inst.summarize(7, 5_000, ForkJoinPool.commonPool(),
+                VarId.of("x"), VarId.of("y")).toString());
+    }
+
+}
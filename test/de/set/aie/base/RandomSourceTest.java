@@ -0,0 +1,153 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.set.aie.base.Model.Instance;
+
+@SuppressWarnings("nls")
+public class RandomSourceTest {
+
+    private static double[] draw(final RandomSource r, final int count) {
+        final double[] ret = new double[count];
+        for (int i = 0; i < count; i++) {
+            ret[i] = r.nextDouble();
+        }
+        return ret;
+    }
+
+    @Test
+    public void testStreamsAreReproducible() {
+        final double[] a = draw(RandomSource.forStream(42, 7), 100);
+        draw(RandomSource.forStream(42, 6), 100);
+        final double[] b = draw(RandomSource.forStream(42, 7), 100);
+        assertArrayEquals(a, b, 0.0);
+    }
+
+    @Test
+    public void testStreamsDiffer() {
+        final double[] a = draw(RandomSource.forStream(42, 0), 10);
+        final double[] b = draw(RandomSource.forStream(42, 1), 10);
+        final double[] c = draw(RandomSource.forStream(43, 0), 10);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(a[i] != b[i]);
+            assertTrue(a[i] != c[i]);
+        }
+    }
+
+    @Test
+    public void testGaussianMoments() {
+        final RandomSource r = RandomSource.splittable(123);
+        final int count = 200_000;
+        double sum = 0;
+        double sumSq = 0;
+        for (int i = 0; i < count; i++) {
+            final double d = r.nextGaussian();
+            sum += d;
+            sumSq += d * d;
+        }
+        assertEquals(0.0, sum / count, 0.01);
+        assertEquals(1.0, sumSq / count, 0.01);
+    }
+
+    @Test
+    public void testSamplesDoNotDependOnSampleCount() throws Exception {
+        final Model m = new Model();
+        m.add(VarId.of("x"), Distributions.normal(0, 10, QUnit.scalar()));
+        m.add(VarId.of("y"), (final Instance i) -> i.get(VarId.of("x")).plus(Distributions.normal(-1, 1, QUnit.scalar())));
+        final Map<VarId, double[]> small = m.instantiate().createSamples(5, 300, VarId.of("y"));
+        final Map<VarId, double[]> large = m.instantiate().createSamples(5, 10_000, VarId.of("y"));
+        for (int i = 0; i < 300; i++) {
+            assertEquals(small.get(VarId.of("y"))[i], large.get(VarId.of("y"))[i], 0.0);
+        }
+    }
+
+    private static double[] normals(final RandomSource r, final int count, final boolean ziggurat) {
+        final double[] ret = new double[count];
+        for (int i = 0; i < count; i++) {
+            ret[i] = ziggurat ? r.nextNormal() : r.nextGaussian();
+        }
+        Arrays.sort(ret);
+        return ret;
+    }
+
+    /**
+     * Two sample Kolmogorov-Smirnov statistic for sorted samples.
+     */
+    private static double ksStatistic(final double[] a, final double[] b) {
+        int i = 0;
+        int j = 0;
+        double max = 0.0;
+        while (i < a.length && j < b.length) {
+            if (a[i] <= b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+            max = Math.max(max, Math.abs((double) i / a.length - (double) j / b.length));
+        }
+        return max;
+    }
+
+    @Test
+    public void testZigguratMatchesPolarMethod() {
+        final int count = 100_000;
+        final double[] ziggurat = normals(RandomSource.splittable(77), count, true);
+        final double[] polar = normals(RandomSource.wrap(new Random(78)), count, false);
+        // critical value for alpha = 0.001
+        assertTrue(ksStatistic(ziggurat, polar) < 1.95 * Math.sqrt(2.0 / count));
+        assertEquals(0.0, Mean.of(ziggurat).get(), 0.015);
+    }
+
+    @Test
+    public void testZigguratTails() {
+        final RandomSource r = RandomSource.splittable(99);
+        final int count = 1_000_000;
+        int beyond3 = 0;
+        int inTail = 0;
+        for (int i = 0; i < count; i++) {
+            final double d = r.nextNormal();
+            if (Math.abs(d) > 3.0) {
+                beyond3++;
+            }
+            if (d > 3.442619855899) {
+                inTail++;
+            }
+        }
+        assertEquals(0.0026998, (double) beyond3 / count, 0.0003);
+        assertEquals(0.0002880, (double) inTail / count, 0.0001);
+    }
+
+    @Test
+    public void testBatchedNormalsMatchSingleNormals() {
+        final double[] batch = new double[1000];
+        RandomSource.splittable(5).nextNormals(batch, 1000);
+        final RandomSource r = RandomSource.splittable(5);
+        for (int i = 0; i < batch.length; i++) {
+            assertEquals(r.nextNormal(), batch[i], 0.0);
+        }
+    }
+
+}
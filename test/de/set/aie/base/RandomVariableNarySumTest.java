@@ -0,0 +1,117 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RandomVariableNarySumTest {
+
+    private static final double DELTA = 0.000001;
+
+    @Test
+    public void testChainsAreFlattened() {
+        final QUnit eur = QUnit.of("EUR");
+        final RandomVariable sum = Distributions.fixed(1, eur)
+                .plus(Distributions.fixed(2, eur))
+                .plus(Distributions.fixed(3, eur).plus(Distributions.fixed(4, eur)));
+        assertTrue(sum instanceof RandomVariableNarySum);
+        assertEquals(4, ((RandomVariableNarySum) sum).getOperandCount());
+        assertEquals(10.0, sum.sample(1, 10).meanQ().getNumber(), DELTA);
+
+        final RandomVariable product = Distributions.fixed(2, eur)
+                .times(Distributions.fixed(3, QUnit.scalar()))
+                .times(Distributions.fixed(4, QUnit.scalar()));
+        assertTrue(product instanceof RandomVariableNaryProduct);
+        assertEquals(3, ((RandomVariableNaryProduct) product).getOperandCount());
+        assertEquals(eur, product.getUnit());
+        assertEquals(24.0, product.sample(1, 10).meanQ().getNumber(), DELTA);
+    }
+
+    @Test
+    public void testOperandsAreObservedFromLeftToRight() {
+        final QUnit eur = QUnit.of("EUR");
+        final RandomVariable a = Distributions.normal(10, 20, eur);
+        final RandomVariable b = Distributions.logNormal(1, 5, eur);
+        final RandomVariable c = Distributions.normal(-3, 3, eur);
+        final RandomVariable flat = a.plus(b).plus(c);
+        // the operands are observed from left to right, like in a chain of binary sums
+        final RandomSource r1 = RandomSource.splittable(42);
+        final RandomSource r2 = RandomSource.splittable(42);
+        final SimulationRun run = new SimulationRun();
+        for (int i = 0; i < 1000; i++) {
+            run.reset();
+            final double expected = a.observe(r2, run).getNumber()
+                    + b.observe(r2, run).getNumber()
+                    + c.observe(r2, run).getNumber();
+            run.reset();
+            assertEquals(expected, flat.observe(r1, run).getNumber(), 0.0);
+        }
+    }
+
+    @Test
+    public void testLongChainDoesNotRecurseDeeply() {
+        RandomVariable sum = Distributions.normal(0, 2, QUnit.scalar());
+        for (int i = 1; i < 100_000; i++) {
+            sum = sum.plus(Distributions.fixed(1, QUnit.scalar()));
+        }
+        assertEquals(100_000, ((RandomVariableNarySum) sum).getOperandCount());
+        assertEquals(99_999 + 1.0, sum.sample(7, 100).meanQ().getNumber(), 0.5);
+    }
+
+    @Test
+    public void testExtendingTheSamePrefixTwice() {
+        final QUnit u = QUnit.scalar();
+        final RandomVariable prefix = Distributions.fixed(1, u).plus(Distributions.fixed(2, u));
+        final RandomVariable first = prefix.plus(Distributions.fixed(10, u));
+        final RandomVariable second = prefix.plus(Distributions.fixed(20, u)).plus(Distributions.fixed(5, u));
+        assertEquals(3.0, prefix.sample(1, 10).meanQ().getNumber(), DELTA);
+        assertEquals(13.0, first.sample(1, 10).meanQ().getNumber(), DELTA);
+        assertEquals(28.0, second.sample(1, 10).meanQ().getNumber(), DELTA);
+    }
+
+    @Test
+    public void testLongChainsAreCompiledToOneInstruction() {
+        final QUnit u = QUnit.scalar();
+        RandomVariable shortSum = Distributions.fixed(0, u);
+        for (int i = 1; i < ProgramBuilder.MAX_BINARY_CHAIN; i++) {
+            shortSum = shortSum.plus(Distributions.fixed(i, u));
+        }
+        RandomVariable longSum = shortSum;
+        for (int i = ProgramBuilder.MAX_BINARY_CHAIN; i < 1000; i++) {
+            longSum = longSum.plus(Distributions.fixed(i, u));
+        }
+        final Model m = new Model();
+        m.addRaw(VarId.of("short"), shortSum);
+        m.addRaw(VarId.of("long"), longSum);
+        final Model.Instance inst = m.instantiate();
+        final Instruction[] shortProgram = inst.compile(VarId.of("short")).getInstructions();
+        assertTrue(shortProgram[shortProgram.length - 1] instanceof Instructions.Binary);
+        final Instruction[] longProgram = inst.compile(VarId.of("long")).getInstructions();
+        assertTrue(longProgram[longProgram.length - 1] instanceof Instructions.Accumulate);
+        assertEquals(999 * 1000 / 2, longSum.sample(1, 10).meanQ().getNumber(), DELTA);
+    }
+
+    @Test(expected = AssertionError.class)
+    public void testIncompatibleOperandIsRejected() {
+        Distributions.fixed(1, QUnit.of("EUR"))
+            .plus(Distributions.fixed(2, QUnit.of("EUR")))
+            .plus(Distributions.fixed(3, QUnit.of("h")));
+    }
+
+}
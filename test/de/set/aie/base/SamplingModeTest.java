@@ -0,0 +1,120 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.set.aie.base.Model.Instance;
+
+public class SamplingModeTest {
+
+    @Test
+    public void testLatinHypercubeHitsEveryStratumOnce() {
+        final int count = 1000;
+        final UniformPoints points = UniformPoints.create(SamplingMode.LATIN_HYPERCUBE, 7, 3, count);
+        for (int d = 0; d < 3; d++) {
+            assertStratified(points, d, count);
+        }
+    }
+
+    @Test
+    public void testSobolPointsAreANet() {
+        final UniformPoints points = UniformPoints.create(SamplingMode.SOBOL, 7, 5, 256);
+        for (int d = 0; d < 5; d++) {
+            assertStratified(points, d, 256);
+        }
+        // the first two dimensions: every square of size 1/16 contains exactly one of 256 points
+        final double[] x = new double[256];
+        final double[] y = new double[256];
+        points.fill(0, 0, x, 256);
+        points.fill(1, 0, y, 256);
+        // the points do not depend on the block they are requested in
+        final double[] part = new double[50];
+        points.fill(1, 100, part, 50);
+        assertArrayEquals(Arrays.copyOfRange(y, 100, 150), part, 0.0);
+        final boolean[] hit = new boolean[256];
+        for (int i = 0; i < 256; i++) {
+            final int cell = (int) (x[i] * 16) * 16 + (int) (y[i] * 16);
+            assertFalse(hit[cell]);
+            hit[cell] = true;
+        }
+    }
+
+    @Test
+    public void testPrimitivePolynomials() {
+        final int[] expectedCounts = {0, 1, 1, 2, 2, 6, 6};
+        for (int degree = 1; degree < expectedCounts.length; degree++) {
+            int count = 0;
+            for (long p = (1L << degree) | 1; p < 1L << (degree + 1); p += 2) {
+                if (SobolPoints.isPrimitive(p)) {
+                    count++;
+                }
+            }
+            assertEquals("degree " + degree, expectedCounts[degree], count);
+        }
+    }
+
+    @Test
+    public void testStratifiedMeansAreMorePrecise() throws Exception {
+        final Model m = new Model();
+        m.add(VarId.of("a"), Distributions.normal(0, 10, QUnit.scalar()));
+        m.add(VarId.of("b"), Distributions.normal(5, 15, QUnit.scalar()).bound(6, 14));
+        m.add(VarId.of("c"), (final Instance i) -> i.get(VarId.of("a")).plus(i.get(VarId.of("b"))));
+        final double expected = m.instantiate().get(VarId.of("c")).mean(1, 2_000_000).get();
+        final double errorMonteCarlo = rootMeanSquareError(m, SamplingMode.MONTE_CARLO, expected);
+        final double errorLatinHypercube = rootMeanSquareError(m, SamplingMode.LATIN_HYPERCUBE, expected);
+        final double errorSobol = rootMeanSquareError(m, SamplingMode.SOBOL, expected);
+        assertTrue(errorMonteCarlo + " vs " + errorLatinHypercube, errorLatinHypercube < errorMonteCarlo / 3);
+        assertTrue(errorMonteCarlo + " vs " + errorSobol, errorSobol < errorMonteCarlo / 3);
+    }
+
+    private static double rootMeanSquareError(final Model m, final SamplingMode mode, final double expected)
+        throws Exception {
+        double sum = 0.0;
+        final int seeds = 30;
+        for (int seed = 0; seed < seeds; seed++) {
+            final Map<VarId, double[]> samples =
+                    m.instantiate(mode).createSamples(seed, 1024, VarId.of("b"), VarId.of("c"));
+            for (final double b : samples.get(VarId.of("b"))) {
+                assertTrue(b >= 6 && b <= 14);
+            }
+            final double error = Mean.of(samples.get(VarId.of("c"))).get() - expected;
+            sum += error * error;
+        }
+        return Math.sqrt(sum / seeds);
+    }
+
+    private static void assertStratified(final UniformPoints points, final int dimension, final int count) {
+        final double[] values = new double[count];
+        points.fill(dimension, 0, values, count);
+        final boolean[] hit = new boolean[count];
+        for (final double v : values) {
+            assertTrue(v > 0.0 && v < 1.0);
+            final int stratum = (int) (v * count);
+            assertFalse(hit[stratum]);
+            hit[stratum] = true;
+        }
+    }
+
+}
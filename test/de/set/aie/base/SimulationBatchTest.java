@@ -0,0 +1,118 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.set.aie.base.Model.Instance;
+
+@SuppressWarnings("nls")
+public class SimulationBatchTest {
+
+    private static final double DELTA = 0.0000001;
+
+    /**
+     * Custom variable without a native batch implementation, so that the row-wise fallback is used.
+     */
+    private static final class RowWiseRV extends RandomVariable {
+        private final RandomVariable base;
+
+        public RowWiseRV(RandomVariable base) {
+            this.base = base;
+        }
+
+        @Override
+        public Quantity observe(RandomSource r, SimulationRun run) {
+            return this.base.observe(r, run);
+        }
+
+        @Override
+        public QUnit getUnit() {
+            return this.base.getUnit();
+        }
+
+        @Override
+        public VarKind getType() {
+            return VarKind.C;
+        }
+    }
+
+    @Test
+    public void testPersistentValuesAreSharedInBatch() {
+        final Model m = new Model();
+        m.add(VarId.of("x"), Distributions.normal(0, 10, QUnit.of("EUR")));
+        m.add(VarId.of("y"), (final Instance i) -> i.get(VarId.of("x")).plus(i.get(VarId.of("x"))));
+        final Instance inst = m.instantiate();
+
+        final SimulationBatch batch = new SimulationBatch(50);
+        final double[] y = new double[50];
+        final double[] x = new double[50];
+        final RandomSource r = RandomSource.wrap(new Random(42));
+        inst.get(VarId.of("y")).observeBatch(r, batch, y);
+        inst.get(VarId.of("x")).observeBatch(r, batch, x);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(2 * x[i], y[i], DELTA);
+            assertEquals(x[i], batch.getRun(i).getPersistentValue(VarId.of("x")).getNumber(), DELTA);
+        }
+    }
+
+    @Test
+    public void testRowWiseFallbackSeesColumns() {
+        final Model m = new Model();
+        m.add(VarId.of("x"), Distributions.normal(0, 10, QUnit.of("EUR")));
+        m.add(VarId.of("y"), (final Instance i) -> new RowWiseRV(i.get(VarId.of("x"))));
+        final Instance inst = m.instantiate();
+
+        final SimulationBatch batch = new SimulationBatch(20);
+        final double[] x = new double[20];
+        final double[] y = new double[20];
+        final RandomSource r = RandomSource.wrap(new Random(42));
+        inst.get(VarId.of("x")).observeBatch(r, batch, x);
+        inst.get(VarId.of("y")).observeBatch(r, batch, y);
+        assertEquals(x[7], y[7], DELTA);
+        assertEquals(x[19], y[19], DELTA);
+    }
+
+    @Test
+    public void testColumnsSeeRowWiseValues() {
+        final Model m = new Model();
+        m.add(VarId.of("x"), Distributions.normal(0, 10, QUnit.of("EUR")));
+        m.add(VarId.of("y"), (final Instance i) -> new RowWiseRV(i.get(VarId.of("x"))));
+        final Instance inst = m.instantiate();
+
+        final SimulationBatch batch = new SimulationBatch(20);
+        final double[] x = new double[20];
+        final double[] y = new double[20];
+        final RandomSource r = RandomSource.wrap(new Random(42));
+        inst.get(VarId.of("y")).observeBatch(r, batch, y);
+        inst.get(VarId.of("x")).observeBatch(r, batch, x);
+        assertEquals(y[3], x[3], DELTA);
+        assertEquals(y[11], x[11], DELTA);
+    }
+
+    @Test
+    public void testBatchMatchesDistribution() {
+        final RandomVariable v = Distributions.normal(10, 20, QUnit.of("h"))
+                .plus(Distributions.fixed(5, QUnit.of("h")))
+                .times(2.0);
+        assertEquals(40.0, v.mean(123, 100_000).get(), 0.1);
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class SimulationRunTest {
+
+    private static final double DELTA = 0.0000001;
+
+    @Test
+    public void testPersistAndGet() {
+        final SimulationRun run = new SimulationRun();
+        assertFalse(run.hasPersistentValue(VarId.of("a")));
+        run.persist(VarId.of("a"), Quantity.of(3, QUnit.of("EUR")));
+        assertTrue(run.hasPersistentValue(VarId.of("a")));
+        assertFalse(run.hasPersistentValue(VarId.of("b")));
+        assertEquals(Quantity.of(3, QUnit.of("EUR")), run.getPersistentValue(VarId.of("a")));
+    }
+
+    @Test
+    public void testNamesInPersistOrder() {
+        final SimulationRun run = new SimulationRun();
+        final VarId u = new UniqueId();
+        run.persist(VarId.of("z"), Quantity.of(1, QUnit.scalar()));
+        run.persist(u, Quantity.of(2, QUnit.scalar()));
+        run.persist(VarId.of("a"), Quantity.of(3, QUnit.scalar()));
+        assertEquals(Arrays.asList(VarId.of("z"), u, VarId.of("a")),
+                new ArrayList<>(run.getPersistentValueNames()));
+    }
+
+    @Test
+    public void testResetRemovesAllValues() {
+        final SimulationRun run = new SimulationRun();
+        for (int i = 0; i < 200; i++) {
+            run.persist(VarId.of("v" + i), Quantity.of(i, QUnit.scalar()));
+        }
+        run.persistObject("o", "x");
+        run.reset();
+        assertTrue(run.getPersistentValueNames().isEmpty());
+        assertFalse(run.hasPersistentValue(VarId.of("v5")));
+        assertFalse(run.hasPersistentValue(VarId.of("v150")));
+        assertFalse(run.hasPersistentObject("o"));
+        run.persist(VarId.of("v150"), Quantity.of(7, QUnit.scalar()));
+        assertEquals(7.0, run.getPersistentValue(VarId.of("v150")).getNumber(), DELTA);
+    }
+
+    @Test
+    public void testPersistentVariableInReusedRun() {
+        final RandomVariable v = PersistentRandomVariable.ensurePersistent(
+                VarId.of("x"), Distributions.normal(0, 100, QUnit.scalar()));
+        final RandomSource r = RandomSource.wrap(new Random(1));
+        final SimulationRun run = new SimulationRun();
+        final double first = v.observe(r, run).getNumber();
+        assertEquals(first, v.observe(r, run).getNumber(), 0.0);
+        run.reset();
+        final double second = v.observe(r, run).getNumber();
+        assertTrue(first != second);
+        assertEquals(second, run.getPersistentValue(VarId.of("x")).getNumber(), 0.0);
+    }
+
+}
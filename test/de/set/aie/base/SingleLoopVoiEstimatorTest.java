@@ -0,0 +1,70 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SingleLoopVoiEstimatorTest {
+
+    @Test
+    public void testContinuousVariable() {
+        // choice 1 is x, choice 0 is zero, so the value of knowing x is E[max(0, x)] = 0.25 for x ~ U(-1, 1)
+        final Random r = new Random(42);
+        final int n = 100_000;
+        final double[] x = new double[n];
+        final double[][] values = new double[2][n];
+        for (int i = 0; i < n; i++) {
+            x[i] = r.nextDouble() * 2 - 1;
+            values[1][i] = x[i] + r.nextGaussian();
+        }
+        final Mean m = new SingleLoopVoiEstimator(10).estimate(x, values, 0);
+        assertEquals(0.25, m.get(), 0.02);
+        assertEquals(10, m.getCount());
+    }
+
+    @Test
+    public void testIrrelevantVariable() {
+        final Random r = new Random(43);
+        final int n = 100_000;
+        final double[] x = new double[n];
+        final double[][] values = new double[2][n];
+        for (int i = 0; i < n; i++) {
+            x[i] = r.nextGaussian();
+            values[0][i] = 1.0 + r.nextGaussian();
+            values[1][i] = r.nextGaussian();
+        }
+        assertEquals(0.0, new SingleLoopVoiEstimator(10).estimate(x, values, 0).get(), 0.02);
+    }
+
+    @Test
+    public void testDiscreteVariableKeepsValuesTogether() {
+        // perfect knowledge of the sign gains 10 in half of the cases
+        final Random r = new Random(44);
+        final int n = 20_000;
+        final double[] x = new double[n];
+        final double[][] values = new double[2][n];
+        for (int i = 0; i < n; i++) {
+            x[i] = r.nextBoolean() ? 1.0 : -1.0;
+            values[1][i] = 10 * x[i];
+        }
+        assertEquals(5.0, new SingleLoopVoiEstimator(10).estimate(x, values, 0).get(), 0.2);
+    }
+
+}
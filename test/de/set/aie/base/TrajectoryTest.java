@@ -0,0 +1,99 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TrajectoryTest {
+
+    @Test
+    public void testPersistentInputsAreSharedByAllPeriods() {
+        Model m = new Model();
+        m.add(VarId.of("base"), Distributions.normal(10, 20, QUnit.scalar()));
+        m.add(VarId.of("growth"), Distributions.normal(1.0, 1.5, QUnit.scalar()));
+        m.addRaw(VarId.of("rawGrowth"), Distributions.normal(1.0, 1.5, QUnit.scalar()));
+        TimeSeries shared = new ExponentialGrowthSeries(VarId.of("base"), VarId.of("growth"));
+        TimeSeries drawnPerPeriod = new ExponentialGrowthSeries(VarId.of("base"), VarId.of("rawGrowth"));
+        double[][] sharedValues = shared.sampleTrajectories(m.instantiate(), 1, 300, 5);
+        double[][] drawnValues = drawnPerPeriod.sampleTrajectories(m.instantiate(), 1, 300, 5);
+        for (int i = 0; i < 300; i++) {
+            double growth = sharedValues[i][1] / sharedValues[i][0];
+            for (int t = 2; t < 5; t++) {
+                assertEquals(growth, sharedValues[i][t] / sharedValues[i][t - 1], 1e-9);
+            }
+            assertTrue(Math.abs(drawnValues[i][2] / drawnValues[i][1] - drawnValues[i][1] / drawnValues[i][0]) > 1e-9);
+        }
+    }
+
+    @Test
+    public void testDealsWriteIntoFollowingYears() {
+        Model m = new Model();
+        m.add(VarId.of("one"), Distributions.fixed(1, QUnit.scalar()));
+        m.add(VarId.of("none"), Distributions.fixed(0, QUnit.scalar()));
+        m.add(VarId.of("size"), Distributions.fixed(100, QUnit.of("EUR")));
+        m.add(VarId.of("factor"), Distributions.fixed(0.2, QUnit.scalar()));
+        m.add(VarId.of("duration"), Distributions.fixed(2, QUnit.scalar()));
+        TimeSeries counts = new ConcreteTimeSeries(ConcreteTimeSeries.Repeat.LAST,
+                Arrays.asList(VarId.of("one"), VarId.of("none"), VarId.of("one"), VarId.of("none")));
+        TimeSeries deals = new DealsOverTimeSeries(
+                counts, VarId.of("size"), VarId.of("factor"), VarId.of("duration")).delay(1);
+        double[][] values = deals.sampleTrajectories(m.instantiate(), 1, 3, 6);
+        for (double[] run : values) {
+            assertArrayEquals(new double[] {0, 100, 20, 120, 20, 20}, run, 1e-9);
+        }
+    }
+
+    @Test
+    public void testTrajectoriesMatchTheGraph() throws Exception {
+        Model m = new Model();
+        m.add(VarId.of("base"), Distributions.normal(10, 20, QUnit.scalar()));
+        m.add(VarId.of("growth"), Distributions.normal(1.0, 1.3, QUnit.scalar()));
+        m.add(VarId.of("until"), Distributions.normal(1, 6, QUnit.scalar()));
+        m.add(VarId.of("shrink"), Distributions.normal(0.5, 0.9, QUnit.scalar()));
+        m.add(VarId.of("linear"), Distributions.normal(1, 3, QUnit.scalar()));
+        m.add(VarId.of("p"), Distributions.fixed(0.3, QUnit.scalar()));
+        TimeSeries growing = new ExponentialGrowthSeries(VarId.of("base"), VarId.of("growth"))
+                .shrinkAfter(VarId.of("until"), VarId.of("shrink"));
+        TimeSeries linear = new LinearGrowthSeries(VarId.of("base"), VarId.of("linear"));
+        TimeSeries series = new ConditionalTimeSeries(m, VarId.of("p"), growing, linear.delay(2))
+                .plus(growing.differential())
+                .notLessThan(linear.times(0.5))
+                .times(VarId.of("growth"));
+        int periods = 8;
+        for (int t = 0; t < periods; t++) {
+            int time = t;
+            m.addRaw(VarId.of("t" + t), (Model.Instance inst) -> series.getFor(time).apply(inst));
+        }
+        double[][] trajectories = series.sampleTrajectories(m.instantiate(), 5, 20_000, periods);
+        for (int t = 0; t < periods; t++) {
+            double[] graph = m.instantiate().createSamples(6, 20_000, VarId.of("t" + t)).get(VarId.of("t" + t));
+            Mean expected = Mean.of(graph);
+            Mean actual = Mean.undefined();
+            for (double[] run : trajectories) {
+                actual = actual.add(run[t]);
+            }
+            double tolerance = 4 * Math.sqrt(expected.getVariance() / 20_000 * 2);
+            assertEquals("period " + t, expected.get(), actual.get(), tolerance);
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2021-2022 SET GmbH, Tobias Baum.
+ *
+ * This file is part of AppliedInformationEconomics.
+ *
+ * AppliedInformationEconomics is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AppliedInformationEconomics is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package de.set.aie.base;
+
+import static de.set.aie.base.BlockDistributedRandomVariableTest.checkCountBetween;
+import static de.set.aie.base.BlockDistributedRandomVariableTest.sample;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.set.aie.base.Distributions.StdDist;
+import de.set.aie.base.Model.Instance;
+
+@SuppressWarnings("nls")
+public class TruncatedRandomVariableTest {
+
+    private static final double DELTA = 0.0000001;
+
+    private static void checkQuantileInvertsCdf(final ContinuousDistribution d, final double... xs) {
+        for (final double x : xs) {
+            assertEquals(x, d.quantile(d.cdf(x)), 0.00001);
+        }
+    }
+
+    @Test
+    public void testQuantileInvertsCdf() {
+        checkQuantileInvertsCdf(new NormalRandomVariable(3, 2, QUnit.scalar()), -2, 0, 3, 4.5, 9);
+        checkQuantileInvertsCdf(new LogNormalRandomVariable(1, 0.5, QUnit.scalar()), 0.5, 2, 2.7, 10);
+        checkQuantileInvertsCdf((ContinuousDistribution) Distributions.shiftedExp(1, 10, QUnit.scalar()), 1.5, 5, 20);
+        checkQuantileInvertsCdf((ContinuousDistribution) Distributions.inverseShiftedExp(1, 10, QUnit.scalar()), -5, 5, 9.5);
+        checkQuantileInvertsCdf((ContinuousDistribution) Distributions.block(2, 6, QUnit.scalar()), -1, 1.5, 2, 4, 6.5, 9);
+        checkQuantileInvertsCdf(TriangularRandomVariable.fromAbsoluteMinMax(
+                Quantity.of(1, QUnit.scalar()), Quantity.of(2, QUnit.scalar()), Quantity.of(5, QUnit.scalar())),
+                1.2, 2, 3, 4.9);
+    }
+
+    @Test
+    public void testLeavesAreTruncatedDirectly() {
+        assertTrue(Distributions.normal(0, 10, QUnit.scalar()).nonNegative() instanceof TruncatedRandomVariable);
+        assertTrue(Distributions.logNormal(1, 10, QUnit.scalar()).bound(2, 5) instanceof TruncatedRandomVariable);
+        assertTrue(Distributions.block(1, 10, QUnit.scalar()).bound(2, 5) instanceof TruncatedRandomVariable);
+        assertFalse(Distributions.normal(0, 10, QUnit.scalar()).plus(Distributions.fixed(1, QUnit.scalar()))
+                .nonNegative() instanceof TruncatedRandomVariable);
+    }
+
+    @Test
+    public void testNoMassOnTheBound() {
+        // most of the mass is below zero, rejection would clamp most values to 0
+        final RandomVariable v = Distributions.normal(-20, -5, QUnit.scalar()).nonNegative();
+        final double[] samples = sample(v, QUnit.scalar());
+        checkCountBetween(samples, Double.NEGATIVE_INFINITY, 0.0, 0, 0);
+        checkCountBetween(samples, 0.0, 0.0000001, 0, 10);
+        // mean of the truncated normal: sd * (phi(a) / (1 - Phi(a)) - a) with a = 12.5 / sd
+        assertEquals(1.377, Mean.of(samples).get(), 0.02);
+    }
+
+    @Test
+    public void testFarUpperTail() {
+        // the distribution function is rounded to 1 at the bound, so it is sampled from the upper tail
+        final RandomVariable v = new NormalRandomVariable(0, 1, QUnit.scalar()).bound(9, Double.POSITIVE_INFINITY);
+        final double[] samples = sample(v, QUnit.scalar());
+        checkCountBetween(samples, Double.NEGATIVE_INFINITY, 9.0, 0, 0);
+        checkCountBetween(samples, 9.0, 9.0000001, 0, 10);
+        // mean of the truncated normal: phi(9) / (1 - Phi(9))
+        assertEquals(9.1085, Mean.of(samples).get(), 0.005);
+        checkQuantileInvertsCdf((ContinuousDistribution) v, 9.05, 9.3);
+    }
+
+    @Test
+    public void testShapeInsideTheRange() {
+        final RandomVariable v = Distributions.block(0, 100, QUnit.scalar()).bound(50, 150);
+        final double[] samples = sample(v, QUnit.scalar());
+        // 45 % of the mass is in [50, 100] and 2.5 % in [100, 150]
+        checkCountBetween(samples, 50.0, 100.0, 94737, 400);
+        checkCountBetween(samples, 100.0, 150.0, 5263, 400);
+    }
+
+    @Test
+    public void testTriangularMatchesUnbounded() {
+        final TriangularRandomVariable t = TriangularRandomVariable.fromAbsoluteMinMax(
+                Quantity.of(0, QUnit.scalar()), Quantity.of(2, QUnit.scalar()), Quantity.of(10, QUnit.scalar()));
+        final double[] samples = sample(t.bound(-5, 20), QUnit.scalar());
+        final double[] unbounded = sample(t, QUnit.scalar());
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(unbounded[i], samples[i], DELTA);
+        }
+    }
+
+    @Test
+    public void testFixedIsClamped() {
+        final RandomVariable v = Distributions.fixed(7, QUnit.scalar()).bound(0, 5);
+        assertEquals(5.0, v.observe(RandomSource.splittable(1), new SimulationRun()).getNumber(), 0.0);
+    }
+
+    @Test
+    public void testUnknownDistributionIsBoundPerDistribution() throws Exception {
+        final Model m = new Model();
+        m.add(VarId.of("x"), Distributions.unknown(
+                EnumSet.of(StdDist.NORMAL, StdDist.BLOCK), Double.NEGATIVE_INFINITY, -10, 10, Double.POSITIVE_INFINITY,
+                QUnit.scalar()).bound(0, 5));
+        final Instance inst = m.instantiate();
+        final Map<VarId, double[]> samples = inst.createSamples(1, 20_000, VarId.of("x"), VarId.of("x_dist"));
+        final double[] x = samples.get(VarId.of("x"));
+        int atBound = 0;
+        for (final double d : x) {
+            assertTrue(d >= 0.0 && d <= 5.0);
+            if (d == 0.0 || d == 5.0) {
+                atBound++;
+            }
+        }
+        assertEquals(0, atBound);
+    }
+
+}
@@ -17,6 +17,8 @@ package de.set.aie.base;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
@@ -81,4 +83,58 @@ public class UnitTest {
         assertNotEquals(u1, u2.div(u1));
     }
 
+    @Test
+    public void testUnitsAreInterned() {
+        final QUnit eur = QUnit.of("EUR");
+        final QUnit h = QUnit.of("h");
+        assertSame(eur, QUnit.of("EUR"));
+        assertSame(eur.div(h), eur.times(h).div(h).div(h));
+        assertSame(QUnit.scalar(), eur.div(eur));
+        assertSame(eur.times(h), h.times(eur));
+        assertSame(QUnit.of("EUR").div(QUnit.of("h")).times(QUnit.of("h")), eur);
+    }
+
+    @Test
+    public void testToStringWithSeveralUnits() {
+        final QUnit u = QUnit.of("m").times(QUnit.of("kg")).div(QUnit.of("s")).div(QUnit.of("s"));
+        assertEquals("kg*m/s*s", u.toString());
+    }
+
+    @Test
+    public void testIncompatibleUnitsAreRejectedAtConstruction() {
+        final RandomVariable eur = Distributions.fixed(1, QUnit.of("EUR"));
+        final FixedRandomVariable h = Distributions.fixed(1, QUnit.of("h"));
+        try {
+            eur.plus(h);
+            fail("expected exception");
+        } catch (final AssertionError e) {
+        }
+        try {
+            eur.lessThan(h);
+            fail("expected exception");
+        } catch (final IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testUnitOfCompositeIsInferredOnce() {
+        final int[] unitCalls = new int[1];
+        final StubRV stub = new StubRV(0.5) {
+            @Override
+            public QUnit getUnit() {
+                unitCalls[0]++;
+                return QUnit.of("EUR");
+            }
+        };
+        final RandomVariable v = stub.plus(Distributions.fixed(0.5, QUnit.of("EUR")))
+                .times(Distributions.fixed(2, QUnit.of("h")));
+        final QUnit expected = QUnit.of("EUR").times(QUnit.of("h"));
+        final int callsAfterConstruction = unitCalls[0];
+        for (int i = 0; i < 10; i++) {
+            assertSame(expected, v.getUnit());
+        }
+        assertEquals(callsAfterConstruction, unitCalls[0]);
+        assertEquals(2.0, v.observe(RandomSource.splittable(1), new SimulationRun()).getNumber(), 0.0);
+    }
+
 }